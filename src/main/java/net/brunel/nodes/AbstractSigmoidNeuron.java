@@ -0,0 +1,209 @@
+package net.brunel.nodes;
+
+import net.brunel.nodes.exceptions.InputDimensionMismatchException;
+import net.brunel.nodes.exceptions.InputException;
+
+/**
+ * The computations of a sigmoid neuron with L2 regularization, independent of
+ * where its weights, bias and accumulated updates are stored, see
+ * {@link SigmoidNeuron} and {@link OffHeapSigmoidNeuron}.
+ */
+public abstract class AbstractSigmoidNeuron implements Node, Function {
+
+	private double configuredUpdateLearningRate;
+	private boolean useConfiguredUpdateLearningRate;
+	private int configuredUpdateDatasetSize;
+	/**
+	 * the weights and the bias with the configured update, computed once by configureUpdate
+	 */
+	private double[] configuredWeights;
+	private double configuredBias;
+	private double lambda=0.0;
+
+	public abstract int getNumberOfInputs();
+
+	/**
+	 * the stored bias, without a configured update
+	 */
+	abstract double getStoredBias();
+
+	/**
+	 * the stored weights, or null if they are not kept in an array
+	 */
+	double[] getStoredWeights() {
+		return null;
+	}
+
+	/**
+	 * the dot product of the stored weights and the input
+	 *
+	 * @param input
+	 */
+	abstract double dotProductWithWeights(double[] input);
+
+	/**
+	 * the dot product of the given weights, which are as many as the inputs,
+	 * and the input
+	 *
+	 * @param weights
+	 * @param input
+	 */
+	double dotProduct(double[] weights, double[] input) {
+		return MyMath.dotProduct(weights, input);
+	}
+
+	/**
+	 * sets the accumulated updates of the weights and the bias to 0
+	 */
+	abstract void clearUpdates();
+
+	@Override
+	public double computeNodeOutput(double[] input) throws InputException {
+		if (input.length != getNumberOfInputs())
+			throw new InputDimensionMismatchException(getNumberOfInputs(), input.length);
+
+		return computeAt(computeWeightedInput(input));
+	}
+
+	@Override
+	public double computeDerivativeValue(double[] input) {
+		return computeDerivativeValue(computeWeightedInput(input));
+	}
+
+	/**
+	 * computes the weighted inputs of four instances at a time, so that every
+	 * weight is loaded once for four instances and the four sums are independent
+	 */
+	@Override
+	public void computeNodeOutputs(double[][] inputs, double[][] outputs, int j) throws InputException {
+		double[] weights = useConfiguredUpdateLearningRate ? configuredWeights : getStoredWeights();
+		if (weights == null) {
+			Node.super.computeNodeOutputs(inputs, outputs, j);
+			return;
+		}
+		double bias = useConfiguredUpdateLearningRate ? configuredBias : getStoredBias();
+		for (double[] input : inputs)
+			if (input.length != weights.length)
+				throw new InputDimensionMismatchException(weights.length, input.length);
+		int i = 0;
+		for (; i + 3 < inputs.length; i += 4) {
+			double[] x0 = inputs[i], x1 = inputs[i + 1], x2 = inputs[i + 2], x3 = inputs[i + 3];
+			double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+			for (int k = 0; k < weights.length; k++) {
+				double w = weights[k];
+				s0 += w * x0[k];
+				s1 += w * x1[k];
+				s2 += w * x2[k];
+				s3 += w * x3[k];
+			}
+			outputs[i][j] = computeAt(s0 + bias);
+			outputs[i + 1][j] = computeAt(s1 + bias);
+			outputs[i + 2][j] = computeAt(s2 + bias);
+			outputs[i + 3][j] = computeAt(s3 + bias);
+		}
+		for (; i < inputs.length; i++)
+			outputs[i][j] = computeAt(dotProduct(weights, inputs[i]) + bias);
+	}
+
+	private double computeWeightedInput(double[] input) {
+		if (useConfiguredUpdateLearningRate)
+			return dotProduct(configuredWeights, input) + configuredBias;
+		return dotProductWithWeights(input) + getStoredBias();
+	}
+
+	@Override
+	public double w(int k) {
+		double returnValue = getWeightFromInput(k);
+		if (useConfiguredUpdateLearningRate) {
+			double oldWeight = returnValue;
+			returnValue += configuredUpdateLearningRate*getUpdateW(k);
+			returnValue = addWeightRegularizationFactor(returnValue, oldWeight, configuredUpdateLearningRate, configuredUpdateDatasetSize);
+		}
+		return returnValue;
+	}
+
+	private double addWeightRegularizationFactor(double returnValue, double weight, double learningRate, int datasetsize) {
+		if (lambda<=0) return returnValue;
+
+		return returnValue - ((learningRate * lambda) / (datasetsize)) * (weight);
+	}
+
+	@Override
+	public double b() {
+		double returnValue = getStoredBias();
+		if (useConfiguredUpdateLearningRate) {
+			returnValue += configuredUpdateLearningRate*getUpdateB();
+		}
+		return returnValue;
+	}
+
+	@Override
+	public void applyW(int dimension, double gradientValue, double learningRate, int datasetsize) {
+		double oldWeight = getWeightFromInput(dimension);
+		setW(dimension, addWeightRegularizationFactor(oldWeight - learningRate*gradientValue, oldWeight, learningRate, datasetsize));
+	}
+
+	@Override
+	public void applyB(double gradientValue, double learningRate) {
+		setB(getStoredBias() - learningRate * gradientValue);
+	}
+
+	@Override
+	public Function getFunction() {
+		return this;
+	}
+
+	@Override
+	public double computeDerivativeValue(double v) {
+		double sigmoid = MyMath.sigmoid(v);
+		return sigmoid*(1-sigmoid);
+	}
+
+	@Override
+	public double computeAt(double v) {
+		return MyMath.sigmoid(v);
+	}
+
+	@Override
+	public void prepareUpdate() {
+
+	}
+
+	@Override
+	public void commitUpdate(double learningRate, int datasetsize) {
+		for (int i = 0; i < getNumberOfInputs(); i++)
+			applyW(i, getUpdateW(i), learningRate, datasetsize);
+		applyB(getUpdateB(), learningRate);
+		clearUpdates();
+		this.useConfiguredUpdateLearningRate=false;
+	}
+
+	@Override
+	public void configureUpdate(double d, int datasetsize) {
+		this.configuredUpdateLearningRate = d;
+		this.configuredUpdateDatasetSize = datasetsize;
+		int numberOfInputs = getNumberOfInputs();
+		if (configuredWeights == null || configuredWeights.length != numberOfInputs)
+			configuredWeights = new double[numberOfInputs];
+		this.useConfiguredUpdateLearningRate = true;
+		for (int i = 0; i < numberOfInputs; i++)
+			configuredWeights[i] = w(i);
+		configuredBias = b();
+	}
+
+	@Override
+	public void resetUpdate() {
+		useConfiguredUpdateLearningRate=false;
+		clearUpdates();
+		configuredUpdateDatasetSize=0;
+	}
+
+	public double getLambda() {
+		return lambda;
+	}
+
+	public void setLambda(double lambda) {
+		this.lambda = lambda;
+	}
+
+}
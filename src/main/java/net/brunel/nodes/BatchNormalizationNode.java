@@ -0,0 +1,341 @@
+package net.brunel.nodes;
+
+import net.brunel.nodes.exceptions.InputDimensionMismatchException;
+import net.brunel.nodes.exceptions.InputException;
+
+/**
+ * One node of a batch normalization layer, which normalizes the output of one
+ * node of the previous layer to zero mean and unit variance and then applies a
+ * learned scale (gamma) and shift (beta).
+ * <p>
+ * The node always normalizes with running estimates of the mean and variance,
+ * so it is a linear function of its single input, with w(index) = gamma/sigma
+ * and b() = beta - gamma*mean/sigma. This is what allows
+ * {@link Network#foldBatchNormalization()} to remove the layer for inference.
+ * While the network trains (from {@link #prepareUpdate()} until the update is
+ * configured, committed or reset), the node collects the exact mean and
+ * variance of the batch, and the commit of the update moves the running
+ * estimates towards them by the momentum, after gamma and beta have been
+ * updated.
+ * <p>
+ * Unlike batch normalization over the statistics of the current batch, no
+ * gradient flows through the mean and the variance: the network propagates the
+ * error of one instance at a time, before the statistics of its batch are known.
+ * The statistics are therefore constants within an iteration, so all gradients
+ * of the iteration, and the learning rates tried by
+ * {@link Network#setIntelligentLearningRate(boolean)}, refer to the same
+ * function. For the same reason, batch normalization is only supported by the
+ * trainings which prepare and commit updates; the steps written directly into
+ * the weights by {@link Network#trainAsynchronous(double[][], double[][], int, int)}
+ * and {@link OnlineLearner} would never update the statistics, so these reject
+ * networks with batch normalization.
+ * <p>
+ * The node depends on one node of the previous layer only, so it contributes
+ * w(index) and b() to {@link Network#getParameters()}.
+ */
+public class BatchNormalizationNode implements LocallyConnectedNode, Function {
+
+	private static final double EPSILON = 1e-5;
+
+	private final int numberOfInputs;
+	private final int index;
+	private final int[] inputIndices;
+	private double momentum = 0.1;
+	private double gamma = 1;
+	private double beta = 0;
+	private double runningMean = 0;
+	private double runningVariance = 1;
+	private boolean collecting;
+
+	/**
+	 * the number, mean and sum of squared deviations of the inputs collected since
+	 * prepareUpdate (Welford's algorithm)
+	 */
+	private long batchCount;
+	private double batchMean;
+	private double batchSquaredDeviations;
+
+	/**
+	 * the accumulated gradients with respect to w(index) and the bias, see #updateW
+	 */
+	private double updateWeight;
+	private double updateBias;
+	private double configuredUpdateLearningRate;
+	private boolean useConfiguredUpdateLearningRate;
+
+	/**
+	 * @param numberOfInputs the width of the previous layer
+	 * @param index the node of the previous layer to normalize
+	 */
+	public BatchNormalizationNode(int numberOfInputs, int index) {
+		this.numberOfInputs = numberOfInputs;
+		this.index = index;
+		this.inputIndices = new int[] { index };
+	}
+
+	/**
+	 * creates a batch normalization layer for a previous layer of the given width
+	 *
+	 * @param numberOfInputs
+	 */
+	public static BatchNormalizationNode[] createLayer(int numberOfInputs) {
+		BatchNormalizationNode[] layer = new BatchNormalizationNode[numberOfInputs];
+		for (int j = 0; j < numberOfInputs; j++)
+			layer[j] = new BatchNormalizationNode(numberOfInputs, j);
+		return layer;
+	}
+
+	@Override
+	public double computeNodeOutput(double[] input) throws InputException {
+		if (input.length != numberOfInputs)
+			throw new InputDimensionMismatchException(numberOfInputs, input.length);
+
+		double x = input[index];
+		if (collecting) {
+			batchCount++;
+			double difference = x - batchMean;
+			batchMean += difference / batchCount;
+			batchSquaredDeviations += difference * (x - batchMean);
+		}
+		return w(index) * x + b();
+	}
+
+	/*
+	 * moves the running estimates towards the collected batch, as the mixture of 
+	 * the distributions weighted by the momentum
+	 */
+	private void updateRunningStatistics() {
+		if (batchCount == 0)
+			return;
+		double difference = batchMean - runningMean;
+		double batchVariance = batchSquaredDeviations / batchCount;
+		runningVariance = (1 - momentum) * (runningVariance + momentum * difference * difference) + momentum * batchVariance;
+		runningMean += momentum * difference;
+	}
+
+	private void clearBatchStatistics() {
+		batchCount = 0;
+		batchMean = 0;
+		batchSquaredDeviations = 0;
+	}
+
+	private double sigma() {
+		return Math.sqrt(runningVariance + EPSILON);
+	}
+
+	/*
+	 * the gradients of gamma and beta, derived from the accumulated gradients of
+	 * the equivalent linear node: d/dgamma = (sum(error*x) - mean*sum(error))/sigma
+	 */
+	private double gammaGradient() {
+		return (updateWeight - runningMean * updateBias) / sigma();
+	}
+
+	private double effectiveGamma() {
+		if (useConfiguredUpdateLearningRate)
+			return gamma - configuredUpdateLearningRate * gammaGradient();
+		return gamma;
+	}
+
+	private double effectiveBeta() {
+		if (useConfiguredUpdateLearningRate)
+			return beta - configuredUpdateLearningRate * updateBias;
+		return beta;
+	}
+
+	@Override
+	public double getWeightFromInput(int c) {
+		return c == index ? gamma / sigma() : 0;
+	}
+
+	@Override
+	public double w(int k) {
+		return k == index ? effectiveGamma() / sigma() : 0;
+	}
+
+	@Override
+	public double b() {
+		return effectiveBeta() - effectiveGamma() * runningMean / sigma();
+	}
+
+	/**
+	 * sets gamma such that w(index) equals the given value with the current
+	 * running statistics
+	 */
+	@Override
+	public void setW(int k, double value) {
+		if (k == index)
+			gamma = value * sigma();
+	}
+
+	/**
+	 * sets beta such that b() equals the given value with the current running
+	 * statistics
+	 */
+	@Override
+	public void setB(double value) {
+		beta = value + gamma * runningMean / sigma();
+	}
+
+	@Override
+	public void updateW(int dimension, double gradientValue) {
+		if (dimension == index)
+			updateWeight += gradientValue;
+	}
+
+	@Override
+	public void updateB(double gradientValue) {
+		updateBias += gradientValue;
+	}
+
+	@Override
+	public double getUpdateW(int dimension) {
+		return dimension == index ? updateWeight : 0;
+	}
+
+	@Override
+	public double getUpdateB() {
+		return updateBias;
+	}
+
+	@Override
+	public void applyW(int dimension, double gradientValue, double learningRate, int datasetsize) {
+		if (dimension == index)
+			gamma -= learningRate * gradientValue / sigma();
+	}
+
+	@Override
+	public void applyB(double gradientValue, double learningRate) {
+		beta -= learningRate * gradientValue;
+		// the mean part of the gamma gradient, see #gammaGradient()
+		gamma += learningRate * runningMean * gradientValue / sigma();
+	}
+
+	@Override
+	public int[] getInputIndices() {
+		return inputIndices;
+	}
+
+	@Override
+	public double localW(int i) {
+		return w(index);
+	}
+
+	@Override
+	public void updateLocalW(int i, double gradientValue) {
+		updateWeight += gradientValue;
+	}
+
+	@Override
+	public void applyLocalW(int i, double gradientValue, double learningRate, int datasetsize) {
+		applyW(index, gradientValue, learningRate, datasetsize);
+	}
+
+	@Override
+	public boolean ownsParameters() {
+		return true;
+	}
+
+	@Override
+	public void prepareUpdate() {
+		collecting = true;
+		clearBatchStatistics();
+	}
+
+	@Override
+	public void commitUpdate(double learningRate, int datasetsize) {
+		// the gradients refer to the statistics of the iteration
+		gamma -= learningRate * gammaGradient();
+		beta -= learningRate * updateBias;
+		updateRunningStatistics();
+		resetUpdate();
+	}
+
+	@Override
+	public void configureUpdate(double d, int datasetsize) {
+		collecting = false;
+		configuredUpdateLearningRate = d;
+		useConfiguredUpdateLearningRate = true;
+	}
+
+	@Override
+	public void resetUpdate() {
+		collecting = false;
+		clearBatchStatistics();
+		useConfiguredUpdateLearningRate = false;
+		updateWeight = 0;
+		updateBias = 0;
+	}
+
+	@Override
+	public Function getFunction() {
+		return this;
+	}
+
+	@Override
+	public double computeDerivativeValue(double[] input) {
+		return 1;
+	}
+
+	@Override
+	public double computeDerivativeValue(double z_l_L) {
+		return 1;
+	}
+
+	@Override
+	public double computeAt(double z_j_L) {
+		return z_j_L;
+	}
+
+	/**
+	 * the node of the previous layer which is normalized
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	public double getGamma() {
+		return gamma;
+	}
+
+	public double getBeta() {
+		return beta;
+	}
+
+	public double getRunningMean() {
+		return runningMean;
+	}
+
+	public double getRunningVariance() {
+		return runningVariance;
+	}
+
+	/**
+	 * overwrites the running estimates, e.g. when restoring a {@link Checkpoint};
+	 * the weights of the node are relative to them, so they are restored first
+	 *
+	 * @param runningMean
+	 * @param runningVariance
+	 */
+	public void setRunningStatistics(double runningMean, double runningVariance) {
+		if (runningVariance < 0)
+			throw new IllegalArgumentException("negative variance " + runningVariance);
+		this.runningMean = runningMean;
+		this.runningVariance = runningVariance;
+	}
+
+	public double getMomentum() {
+		return momentum;
+	}
+
+	/**
+	 * the weight of every committed batch in the running mean and variance, 0.1
+	 * by default; 1 replaces them by the statistics of the last batch
+	 *
+	 * @param momentum
+	 */
+	public void setMomentum(double momentum) {
+		this.momentum = momentum;
+	}
+
+}
@@ -0,0 +1,202 @@
+package net.brunel.nodes;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import net.brunel.nodes.exceptions.InputDimensionMismatchException;
+import net.brunel.nodes.exceptions.InputException;
+
+/**
+ * Reads and decodes batches of {@link BatchSource}s on background threads while
+ * the previous batches are trained, e.g. by
+ * {@link Network#trainBatches(BatchPrefetcher)}.
+ * <p>
+ * Every source is read by its own thread. The batches are decoded into a fixed
+ * number of buffers, which are handed to the consumer through a bounded queue
+ * and returned by {@link #release(Batch)} to be filled again, so at most that
+ * number of batches is held in memory and no instances are allocated after
+ * the start. With several sources, their batches are trained in the order in
+ * which they are decoded.
+ */
+public class BatchPrefetcher implements AutoCloseable {
+
+	/**
+	 * a batch of instances decoded into reusable rows
+	 */
+	public static final class Batch {
+		private final double[][] instanceRows;
+		private final double[][] labelRows;
+		private double[][] instances;
+		private double[][] labels;
+		private Exception failure;
+
+		private Batch(int batchSize, int dimension, int numberOfLabels) {
+			instanceRows = new double[batchSize][dimension];
+			labelRows = new double[batchSize][numberOfLabels];
+		}
+
+		/**
+		 * the instances of the batch, valid until the batch is released
+		 */
+		public double[][] getInstances() {
+			return instances;
+		}
+
+		/**
+		 * the labels of the batch, valid until the batch is released
+		 */
+		public double[][] getLabels() {
+			return labels;
+		}
+
+		public int getSize() {
+			return instances.length;
+		}
+	}
+
+	/**
+	 * the marker of a producer which has read all of its epochs
+	 */
+	private static final Batch END = new Batch(0, 0, 0);
+
+	private final List<? extends BatchSource> sources;
+	private final int batchSize;
+	private final BlockingQueue<Batch> free;
+	private final BlockingQueue<Batch> filled;
+	private final ExecutorService executor;
+	private int runningProducers;
+
+	/**
+	 * starts reading the sources
+	 *
+	 * @param sources sources of the same dimensions
+	 * @param batchSize the number of instances per batch; the last batch of every epoch of a source may be smaller
+	 * @param prefetchedBatches the number of batches which are decoded ahead of the one being trained
+	 * @param numberOfEpochs the number of times every source is read
+	 */
+	public BatchPrefetcher(List<? extends BatchSource> sources, int batchSize, int prefetchedBatches, int numberOfEpochs) throws InputException {
+		if (sources.isEmpty())
+			throw new IllegalArgumentException("No sources");
+		if (batchSize < 1 || prefetchedBatches < 1)
+			throw new IllegalArgumentException("batchSize and prefetchedBatches must be positive");
+		int dimension = sources.get(0).getDimension();
+		int numberOfLabels = sources.get(0).getNumberOfLabels();
+		for (BatchSource source : sources) {
+			if (source.getDimension() != dimension)
+				throw new InputDimensionMismatchException(dimension, source.getDimension());
+			if (source.getNumberOfLabels() != numberOfLabels)
+				throw new InputDimensionMismatchException(numberOfLabels, source.getNumberOfLabels());
+		}
+		this.sources = sources;
+		this.batchSize = batchSize;
+
+		// one buffer per producer on top, so that every producer can decode while the queue is full
+		int numberOfBuffers = prefetchedBatches + sources.size();
+		free = new ArrayBlockingQueue<>(numberOfBuffers);
+		filled = new ArrayBlockingQueue<>(numberOfBuffers + sources.size());
+		for (int b = 0; b < numberOfBuffers; b++)
+			free.add(new Batch(batchSize, dimension, numberOfLabels));
+
+		executor = Executors.newFixedThreadPool(sources.size(), (runnable) -> {
+			Thread thread = new Thread(runnable, "batch-prefetcher");
+			thread.setDaemon(true);
+			return thread;
+		});
+		runningProducers = sources.size();
+		for (BatchSource source : sources)
+			executor.execute(() -> produce(source, numberOfEpochs));
+	}
+
+	private void produce(BatchSource source, int numberOfEpochs) {
+		try {
+			for (int epoch = 0; epoch < numberOfEpochs; epoch++) {
+				if (epoch > 0)
+					source.reset();
+				int size;
+				do {
+					Batch batch = free.take();
+					size = source.read(batch.instanceRows, batch.labelRows);
+					if (size == 0) {
+						free.put(batch);
+						break;
+					}
+					batch.instances = size == batchSize ? batch.instanceRows : Arrays.copyOf(batch.instanceRows, size);
+					batch.labels = size == batchSize ? batch.labelRows : Arrays.copyOf(batch.labelRows, size);
+					filled.put(batch);
+				} while (size == batchSize);
+			}
+			filled.put(END);
+		} catch (InterruptedException e) {
+			// closed
+		} catch (IOException | InputException | RuntimeException e) {
+			Batch failed = new Batch(0, 0, 0);
+			failed.failure = e;
+			filled.offer(failed);
+		}
+	}
+
+	/**
+	 * waits for the next decoded batch, which has to be released after it has
+	 * been trained
+	 *
+	 * @return the next batch, or null if all sources have been read
+	 */
+	public Batch take() throws IOException, InputException, InterruptedException {
+		while (runningProducers > 0) {
+			Batch batch = filled.take();
+			if (batch == END) {
+				runningProducers--;
+				continue;
+			}
+			if (batch.failure != null) {
+				runningProducers = 0;
+				if (batch.failure instanceof IOException)
+					throw (IOException) batch.failure;
+				if (batch.failure instanceof InputException)
+					throw (InputException) batch.failure;
+				throw (RuntimeException) batch.failure;
+			}
+			return batch;
+		}
+		return null;
+	}
+
+	/**
+	 * hands the buffers of a batch back to be filled again
+	 *
+	 * @param batch a batch returned by {@link #take()}
+	 */
+	public void release(Batch batch) {
+		free.add(batch);
+	}
+
+	/**
+	 * stops the background threads and closes the sources
+	 */
+	@Override
+	public void close() throws IOException {
+		executor.shutdownNow();
+		try {
+			executor.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		IOException failure = null;
+		for (BatchSource source : sources) {
+			try {
+				source.close();
+			} catch (IOException e) {
+				failure = e;
+			}
+		}
+		if (failure != null)
+			throw failure;
+	}
+
+}
@@ -0,0 +1,33 @@
+package net.brunel.nodes;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import net.brunel.nodes.exceptions.InputException;
+
+/**
+ * A source of labelled instances which are decoded batch by batch into buffers
+ * provided by the caller, e.g. by a {@link BatchPrefetcher}.
+ */
+public interface BatchSource extends Closeable {
+
+	public int getDimension();
+
+	public int getNumberOfLabels();
+
+	/**
+	 * decodes the next instances into the given rows, which have the length of
+	 * {@link #getDimension()} and {@link #getNumberOfLabels()}
+	 *
+	 * @param instances the rows to overwrite with the instances
+	 * @param labels the rows to overwrite with the labels
+	 * @return the number of rows written, less than their number only at the end of the source, and 0 after it
+	 */
+	public int read(double[][] instances, double[][] labels) throws IOException, InputException;
+
+	/**
+	 * starts reading from the first instance again, e.g. for the next epoch
+	 */
+	public void reset() throws IOException;
+
+}
@@ -0,0 +1,199 @@
+package net.brunel.nodes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import net.brunel.nodes.exceptions.InputException;
+
+/**
+ * The state of a batch training after a given iteration: the parameters of the
+ * network and the state of the learning rate schedule. Updates are committed at
+ * the end of every iteration, so there is no pending optimizer state. The
+ * {@link FeatureStandardizer} of the network, if any, and the running mean and
+ * variance of its {@link BatchNormalizationNode}s, which are not parameters,
+ * are stored as well.
+ */
+public final class Checkpoint {
+
+	private static final int MAGIC = 0x414E4E43;
+	private static final int FORMAT_VERSION = 3;
+	private static final int HEADER_BYTES = 4 + 4 + 4 + 8 + 4 + 8 + 4;
+
+	private final int iteration;
+	private final double learningRate;
+	private final int learningRateIterationAmount;
+	private final double learningRateIterationDecay;
+	private final double[] parameters;
+	private final FeatureStandardizer featureStandardizer;
+	/**
+	 * the running mean and variance of every batch normalization node, in the
+	 * order of the layers and nodes, or null for a checkpoint of a format
+	 * before version 3
+	 */
+	private final double[] normalizationStatistics;
+
+	private Checkpoint(int iteration, double learningRate, int learningRateIterationAmount, double learningRateIterationDecay, double[] parameters,
+			FeatureStandardizer featureStandardizer, double[] normalizationStatistics) {
+		this.iteration = iteration;
+		this.learningRate = learningRate;
+		this.learningRateIterationAmount = learningRateIterationAmount;
+		this.learningRateIterationDecay = learningRateIterationDecay;
+		this.parameters = parameters;
+		this.featureStandardizer = featureStandardizer;
+		this.normalizationStatistics = normalizationStatistics;
+	}
+
+	/**
+	 * copies the current state of the network
+	 *
+	 * @param network
+	 * @param iteration the number of completed iterations
+	 */
+	public static Checkpoint capture(Network network, int iteration) {
+		return new Checkpoint(iteration, network.getLearningRate(), network.getLearningRateIterationAmount(),
+				network.getLearningRateIterationDecay(), network.getParameters(), network.getFeatureStandardizer(),
+				network.getNormalizationStatistics());
+	}
+
+	/**
+	 * restores the parameters, the learning rate schedule, the feature
+	 * standardizer and the batch normalization statistics of the network; the
+	 * statistics are kept for a checkpoint of an older format, which has none
+	 *
+	 * @param network a network of the same topology as the captured one
+	 */
+	public void restore(Network network) throws InputException {
+		// the parameters of the nodes are relative to their statistics
+		if (normalizationStatistics != null)
+			network.setNormalizationStatistics(normalizationStatistics);
+		network.setParameters(parameters);
+		network.setFeatureStandardizer(featureStandardizer);
+		network.setLearningRate(learningRate);
+		network.setLearningRateMultiplier(learningRateIterationAmount, learningRateIterationDecay);
+	}
+
+	/**
+	 * writes this checkpoint to a temporary file next to the given one, which
+	 * is then atomically moved in place, so that a crash never leaves a
+	 * truncated checkpoint behind
+	 *
+	 * @param file
+	 */
+	public void write(Path file) throws IOException {
+		int numberOfFeatures = featureStandardizer == null ? 0 : featureStandardizer.getNumberOfFeatures();
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + 8 * parameters.length + 4 + 16 * numberOfFeatures + 4
+				+ 8 * normalizationStatistics.length);
+		buffer.putInt(MAGIC);
+		buffer.putInt(FORMAT_VERSION);
+		buffer.putInt(iteration);
+		buffer.putDouble(learningRate);
+		buffer.putInt(learningRateIterationAmount);
+		buffer.putDouble(learningRateIterationDecay);
+		buffer.putInt(parameters.length);
+		buffer.asDoubleBuffer().put(parameters);
+		buffer.position(buffer.position() + 8 * parameters.length);
+		buffer.putInt(numberOfFeatures);
+		if (featureStandardizer != null) {
+			for (double mean : featureStandardizer.getMeans())
+				buffer.putDouble(mean);
+			for (double standardDeviation : featureStandardizer.getStandardDeviations())
+				buffer.putDouble(standardDeviation);
+		}
+		buffer.putInt(normalizationStatistics.length / 2);
+		for (double statistic : normalizationStatistics)
+			buffer.putDouble(statistic);
+		buffer.rewind();
+
+		Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			channel.force(false);
+		}
+		Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	public static Checkpoint read(Path file) throws IOException {
+		ByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			buffer = ByteBuffer.allocate((int) channel.size());
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0)
+				;
+		}
+		buffer.flip();
+		if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC)
+			throw new IOException(file + " is not a checkpoint");
+		int formatVersion = buffer.getInt();
+		if (formatVersion < 1 || formatVersion > FORMAT_VERSION)
+			throw new IOException(file + " has an unsupported checkpoint format");
+		int iteration = buffer.getInt();
+		double learningRate = buffer.getDouble();
+		int learningRateIterationAmount = buffer.getInt();
+		double learningRateIterationDecay = buffer.getDouble();
+		double[] parameters = new double[buffer.getInt()];
+		if (buffer.remaining() < 8 * parameters.length)
+			throw new IOException(file + " is truncated");
+		buffer.asDoubleBuffer().get(parameters);
+		buffer.position(buffer.position() + 8 * parameters.length);
+
+		// version 1 has no feature standardizer
+		FeatureStandardizer featureStandardizer = null;
+		if (formatVersion >= 2) {
+			if (buffer.remaining() < 4)
+				throw new IOException(file + " is truncated");
+			int numberOfFeatures = buffer.getInt();
+			long featureBytes = 16L * numberOfFeatures;
+			if (formatVersion == 2 ? buffer.remaining() != featureBytes : buffer.remaining() < featureBytes + 4)
+				throw new IOException(file + " is truncated");
+			if (numberOfFeatures > 0) {
+				double[] means = new double[numberOfFeatures];
+				double[] standardDeviations = new double[numberOfFeatures];
+				buffer.asDoubleBuffer().get(means).get(standardDeviations);
+				featureStandardizer = new FeatureStandardizer(means, standardDeviations);
+			}
+			buffer.position(buffer.position() + (int) featureBytes);
+		}
+		// versions 1 and 2 have no batch normalization statistics
+		double[] normalizationStatistics = null;
+		if (formatVersion >= 3) {
+			int numberOfNodes = buffer.getInt();
+			if (buffer.remaining() != 16L * numberOfNodes)
+				throw new IOException(file + " is truncated");
+			normalizationStatistics = new double[2 * numberOfNodes];
+			buffer.asDoubleBuffer().get(normalizationStatistics);
+		} else if (buffer.hasRemaining()) {
+			throw new IOException(file + " has trailing data");
+		}
+		return new Checkpoint(iteration, learningRate, learningRateIterationAmount, learningRateIterationDecay, parameters, featureStandardizer,
+				normalizationStatistics);
+	}
+
+	/**
+	 * the number of iterations completed when this checkpoint was captured
+	 */
+	public int getIteration() {
+		return iteration;
+	}
+
+	public double getLearningRate() {
+		return learningRate;
+	}
+
+	public double[] getParameters() {
+		return parameters.clone();
+	}
+
+	/**
+	 * the feature standardizer of the network, or null
+	 */
+	public FeatureStandardizer getFeatureStandardizer() {
+		return featureStandardizer;
+	}
+
+}
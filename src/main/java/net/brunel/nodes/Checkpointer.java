@@ -0,0 +1,135 @@
+package net.brunel.nodes;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Periodically writes {@link Checkpoint}s of a batch training, see
+ * {@link Network#setCheckpointer(Checkpointer)}.
+ * <p>
+ * A checkpoint is due every iterationInterval iterations or when timeInterval
+ * passed since the last one, whichever comes first. It is captured on the
+ * training thread, between two iterations, and written on a background thread.
+ * If the previous checkpoint is still being written, it is superseded by the
+ * newer one, so slow storage never stalls training.
+ */
+public class Checkpointer implements AutoCloseable {
+
+	private final Path file;
+	private final int iterationInterval;
+	private final long timeIntervalNanos;
+	private final ExecutorService writer;
+	private final AtomicReference<Checkpoint> pending = new AtomicReference<>();
+	private long lastCheckpointNanos;
+	private int lastCheckpointIteration;
+	private volatile Checkpoint lastWritten;
+	private volatile IOException lastError;
+
+	/**
+	 * @param file the file the latest checkpoint is written to
+	 * @param iterationInterval the number of iterations between checkpoints, 0 for no limit
+	 * @param timeInterval the time between checkpoints, 0 for no limit
+	 * @param unit the unit of timeInterval
+	 */
+	public Checkpointer(Path file, int iterationInterval, long timeInterval, TimeUnit unit) {
+		this.file = file;
+		this.iterationInterval = iterationInterval;
+		this.timeIntervalNanos = unit.toNanos(timeInterval);
+		this.lastCheckpointNanos = System.nanoTime();
+		this.writer = Executors.newSingleThreadExecutor(r -> {
+			Thread thread = new Thread(r, "checkpoint-writer");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * called by the network at the start of every batch training, which 
+	 * continues after the given number of completed iterations; the next 
+	 * checkpoint is due an interval after the start
+	 *
+	 * @param iteration the number of iterations completed before the start
+	 */
+	void resumedAt(int iteration) {
+		lastCheckpointIteration = iteration;
+		lastCheckpointNanos = System.nanoTime();
+	}
+
+	/**
+	 * called by the network after every completed iteration
+	 *
+	 * @param network
+	 * @param iteration the number of completed iterations
+	 */
+	void iterationCompleted(Network network, int iteration) {
+		boolean due = iterationInterval > 0 && iteration - lastCheckpointIteration >= iterationInterval;
+		if (!due && timeIntervalNanos > 0)
+			due = System.nanoTime() - lastCheckpointNanos >= timeIntervalNanos;
+		if (due)
+			checkpoint(network, iteration);
+	}
+
+	/**
+	 * captures a checkpoint now and queues it for writing
+	 *
+	 * @param network
+	 * @param iteration the number of completed iterations
+	 */
+	public void checkpoint(Network network, int iteration) {
+		lastCheckpointIteration = iteration;
+		lastCheckpointNanos = System.nanoTime();
+		if (pending.getAndSet(Checkpoint.capture(network, iteration)) == null)
+			writer.execute(this::writePending);
+	}
+
+	private void writePending() {
+		Checkpoint checkpoint = pending.getAndSet(null);
+		if (checkpoint == null)
+			return;
+		try {
+			checkpoint.write(file);
+			lastWritten = checkpoint;
+		} catch (IOException e) {
+			lastError = e;
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * the most recent checkpoint which has been written completely, or null
+	 */
+	public Checkpoint getLastWritten() {
+		return lastWritten;
+	}
+
+	/**
+	 * the error of the last failed write, or null
+	 */
+	public IOException getLastError() {
+		return lastError;
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * waits until all queued checkpoints have been written. If the calling
+	 * thread is interrupted, it stops waiting and keeps its interrupt status;
+	 * the queued checkpoints are still written in the background.
+	 */
+	@Override
+	public void close() {
+		writer.shutdown();
+		try {
+			writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
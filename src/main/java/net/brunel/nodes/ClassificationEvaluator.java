@@ -0,0 +1,237 @@
+package net.brunel.nodes;
+
+import net.brunel.nodes.exceptions.InputDimensionMismatchException;
+import net.brunel.nodes.exceptions.InputException;
+
+/**
+ * Collects the metrics of a classifier one prediction at a time, in memory
+ * independent of the number of instances: the accuracy, the confusion matrix,
+ * the precision and recall per class, the log-loss and the area under the ROC
+ * curve. Evaluators of disjoint parts of the data can be merged, e.g. after
+ * evaluating them in parallel.
+ * <p>
+ * With a single label, the two classes are whether it is above the
+ * discretization threshold, as in {@link Network#discretize(double[])}. With
+ * several labels, they are one hot encoded classes and the predicted class is
+ * the label with the highest output.
+ * <p>
+ * The ROC curves are computed from histograms of the outputs in [0, 1], so the
+ * area under them is exact up to ties within a bin.
+ */
+public class ClassificationEvaluator {
+
+	/**
+	 * the smallest probability in the log-loss, such that it stays finite
+	 */
+	private static final double EPSILON = 1e-15;
+
+	private final int numberOfLabels;
+	private final int numberOfClasses;
+	private final double discretizeThreshold;
+	private final int numberOfBins;
+
+	/**
+	 * [actual class][predicted class]
+	 */
+	private final long[][] confusionMatrix;
+
+	/**
+	 * [class][bin] the number of instances of (positive) or not of (negative) the class with an output in the bin
+	 */
+	private final long[][] positiveHistograms;
+	private final long[][] negativeHistograms;
+	private long numberOfInstances;
+	private double logLossSum;
+
+	/**
+	 * @param numberOfLabels the length of the predictions and labels
+	 * @param discretizeThreshold the threshold of a single label, e.g. {@link Network#getDiscretizeThreshold()}
+	 * @param numberOfBins the resolution of the ROC curves, e.g. 1000
+	 */
+	public ClassificationEvaluator(int numberOfLabels, double discretizeThreshold, int numberOfBins) {
+		if (numberOfLabels < 1 || numberOfBins < 1)
+			throw new IllegalArgumentException("numberOfLabels and numberOfBins must be positive");
+		this.numberOfLabels = numberOfLabels;
+		this.numberOfClasses = numberOfLabels == 1 ? 2 : numberOfLabels;
+		this.discretizeThreshold = discretizeThreshold;
+		this.numberOfBins = numberOfBins;
+		confusionMatrix = new long[numberOfClasses][numberOfClasses];
+		positiveHistograms = new long[numberOfClasses][numberOfBins];
+		negativeHistograms = new long[numberOfClasses][numberOfBins];
+	}
+
+	/**
+	 * adds one prediction
+	 *
+	 * @param prediction the output of the network, which is not kept
+	 * @param label
+	 */
+	public void add(double[] prediction, double[] label) throws InputException {
+		if (prediction.length != numberOfLabels)
+			throw new InputDimensionMismatchException(numberOfLabels, prediction.length);
+		if (label.length != numberOfLabels)
+			throw new InputDimensionMismatchException(numberOfLabels, label.length);
+
+		int actual;
+		int predicted;
+		double probability;
+		if (numberOfLabels == 1) {
+			actual = label[0] > discretizeThreshold ? 1 : 0;
+			predicted = prediction[0] > discretizeThreshold ? 1 : 0;
+			probability = actual == 1 ? prediction[0] : 1 - prediction[0];
+			addToHistograms(1, prediction[0], actual == 1);
+			addToHistograms(0, 1 - prediction[0], actual == 0);
+		} else {
+			actual = indexOfMaximum(label);
+			predicted = indexOfMaximum(prediction);
+			double sum = 0;
+			for (int c = 0; c < numberOfClasses; c++) {
+				sum += prediction[c];
+				addToHistograms(c, prediction[c], c == actual);
+			}
+			probability = sum > 0 ? prediction[actual] / sum : 0;
+		}
+		confusionMatrix[actual][predicted]++;
+		logLossSum -= Math.log(Math.min(1 - EPSILON, Math.max(EPSILON, probability)));
+		numberOfInstances++;
+	}
+
+	private void addToHistograms(int c, double output, boolean positive) {
+		int bin = (int) (output * numberOfBins);
+		if (bin < 0)
+			bin = 0;
+		else if (bin >= numberOfBins)
+			bin = numberOfBins - 1;
+		if (positive)
+			positiveHistograms[c][bin]++;
+		else
+			negativeHistograms[c][bin]++;
+	}
+
+	private static int indexOfMaximum(double[] values) {
+		int maximum = 0;
+		for (int i = 1; i < values.length; i++) {
+			if (values[i] > values[maximum])
+				maximum = i;
+		}
+		return maximum;
+	}
+
+	/**
+	 * adds the predictions of another evaluator of the same configuration
+	 *
+	 * @param other
+	 */
+	public void merge(ClassificationEvaluator other) {
+		if (other.numberOfLabels != numberOfLabels || other.numberOfBins != numberOfBins || other.discretizeThreshold != discretizeThreshold)
+			throw new IllegalArgumentException("Evaluators of different configurations");
+		for (int a = 0; a < numberOfClasses; a++) {
+			for (int p = 0; p < numberOfClasses; p++)
+				confusionMatrix[a][p] += other.confusionMatrix[a][p];
+			for (int b = 0; b < numberOfBins; b++) {
+				positiveHistograms[a][b] += other.positiveHistograms[a][b];
+				negativeHistograms[a][b] += other.negativeHistograms[a][b];
+			}
+		}
+		logLossSum += other.logLossSum;
+		numberOfInstances += other.numberOfInstances;
+	}
+
+	public long getNumberOfInstances() {
+		return numberOfInstances;
+	}
+
+	/**
+	 * 2 for a single label, otherwise the number of labels
+	 */
+	public int getNumberOfClasses() {
+		return numberOfClasses;
+	}
+
+	/**
+	 * the fraction of correctly classified instances
+	 */
+	public double getAccuracy() {
+		long correct = 0;
+		for (int c = 0; c < numberOfClasses; c++)
+			correct += confusionMatrix[c][c];
+		return (double) correct / numberOfInstances;
+	}
+
+	/**
+	 * a copy of the numbers of instances per [actual class][predicted class]
+	 */
+	public long[][] getConfusionMatrix() {
+		long[][] copy = new long[numberOfClasses][];
+		for (int c = 0; c < numberOfClasses; c++)
+			copy[c] = confusionMatrix[c].clone();
+		return copy;
+	}
+
+	/**
+	 * the fraction of the instances predicted as the class which are of the
+	 * class, or NaN if none is predicted as it
+	 *
+	 * @param c
+	 */
+	public double getPrecision(int c) {
+		long predicted = 0;
+		for (int a = 0; a < numberOfClasses; a++)
+			predicted += confusionMatrix[a][c];
+		return (double) confusionMatrix[c][c] / predicted;
+	}
+
+	/**
+	 * the fraction of the instances of the class which are predicted as it, or
+	 * NaN if there are none
+	 *
+	 * @param c
+	 */
+	public double getRecall(int c) {
+		long actual = 0;
+		for (int p = 0; p < numberOfClasses; p++)
+			actual += confusionMatrix[c][p];
+		return (double) confusionMatrix[c][c] / actual;
+	}
+
+	/**
+	 * the mean negative logarithm of the probability of the actual class; with
+	 * several labels, the outputs are normalized to sum up to 1
+	 */
+	public double getLogLoss() {
+		return logLossSum / numberOfInstances;
+	}
+
+	/**
+	 * the area under the ROC curve of the class against all others, or NaN if
+	 * there are no instances of it or no other ones
+	 *
+	 * @param c
+	 */
+	public double getAuc(int c) {
+		long positives = 0;
+		long negatives = 0;
+		double area = 0;
+		for (int b = 0; b < numberOfBins; b++) {
+			// pairs with the negative in a lower bin are ranked correctly, within the bin half of them
+			area += positiveHistograms[c][b] * (negatives + 0.5 * negativeHistograms[c][b]);
+			positives += positiveHistograms[c][b];
+			negatives += negativeHistograms[c][b];
+		}
+		return area / ((double) positives * negatives);
+	}
+
+	/**
+	 * the area under the ROC curve of class 1 for a single label, otherwise the
+	 * mean over all classes
+	 */
+	public double getAuc() {
+		if (numberOfLabels == 1)
+			return getAuc(1);
+		double sum = 0;
+		for (int c = 0; c < numberOfClasses; c++)
+			sum += getAuc(c);
+		return sum / numberOfClasses;
+	}
+
+}
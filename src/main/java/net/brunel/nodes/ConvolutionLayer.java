@@ -0,0 +1,374 @@
+package net.brunel.nodes;
+
+import java.util.Arrays;
+
+import net.brunel.nodes.exceptions.InputDimensionMismatchException;
+import net.brunel.nodes.exceptions.InputException;
+
+/**
+ * A two dimensional convolution over the output of the previous layer, which is
+ * interpreted as an image of inputChannels x inputHeight x inputWidth values
+ * (channel by channel, row by row). Every filter slides a kernel of kernelSize x
+ * kernelSize x inputChannels weights over the image with the given stride; there
+ * is one sigmoid node per filter and output position, in the same channel, row
+ * and column order.
+ * <p>
+ * All nodes of a filter share its kernel and bias, so the layer has
+ * numberOfFilters * (inputChannels * kernelSize^2 + 1) parameters regardless of
+ * the image size, and only the first node of a filter exports them in
+ * {@link Network#getParameters()}. The input indices of every patch are computed
+ * once (im2col), so a node computes its output as one dot product of the kernel
+ * and the gathered patch, and the network addresses the weights by their
+ * position in the patch. The network evaluates one node at a time, so the
+ * patches are not multiplied with all kernels at once as a matrix product.
+ */
+public class ConvolutionLayer {
+
+	/**
+	 * A node for one filter at one output position.
+	 */
+	public class ConvolutionNode implements LocallyConnectedNode, Function {
+
+		private final int filter;
+		private final int outputRow;
+		private final int outputColumn;
+		private final int[] patch;
+
+		private ConvolutionNode(int filter, int position) {
+			this.filter = filter;
+			this.outputRow = position / outputWidth;
+			this.outputColumn = position % outputWidth;
+			this.patch = patchIndices[position];
+		}
+
+		/*
+		 * the index into the kernel of the weight from the given input, or -1 if the
+		 * input is outside of the patch of this node
+		 */
+		private int kernelIndex(int input) {
+			int channel = input / (inputHeight * inputWidth);
+			int pixel = input % (inputHeight * inputWidth);
+			int dy = pixel / inputWidth - outputRow * stride;
+			int dx = pixel % inputWidth - outputColumn * stride;
+			if (dy < 0 || dy >= kernelSize || dx < 0 || dx >= kernelSize)
+				return -1;
+			return (channel * kernelSize + dy) * kernelSize + dx;
+		}
+
+		@Override
+		public double computeNodeOutput(double[] input) throws InputException {
+			if (input.length != numberOfInputs)
+				throw new InputDimensionMismatchException(numberOfInputs, input.length);
+			return computeAt(computeWeightedInput(input));
+		}
+
+		private double computeWeightedInput(double[] input) {
+			double[] kernel = kernels[filter];
+			double z = b();
+			if (useConfiguredUpdateLearningRate) {
+				for (int i = 0; i < patch.length; i++)
+					z += (kernel[i] - configuredUpdateLearningRate * kernelGradients[filter][i]) * input[patch[i]];
+			} else {
+				for (int i = 0; i < patch.length; i++)
+					z += kernel[i] * input[patch[i]];
+			}
+			return z;
+		}
+
+		@Override
+		public double computeDerivativeValue(double[] input) {
+			return computeDerivativeValue(computeWeightedInput(input));
+		}
+
+		@Override
+		public int[] getInputIndices() {
+			return patch;
+		}
+
+		@Override
+		public double getWeightFromInput(int c) {
+			int i = kernelIndex(c);
+			return i < 0 ? 0 : kernels[filter][i];
+		}
+
+		@Override
+		public double w(int k) {
+			int i = kernelIndex(k);
+			return i < 0 ? 0 : localW(i);
+		}
+
+		/**
+		 * the patch is gathered in the order of the kernel, so the i-th input has
+		 * the i-th kernel weight
+		 */
+		@Override
+		public double localW(int i) {
+			if (useConfiguredUpdateLearningRate)
+				return kernels[filter][i] - configuredUpdateLearningRate * kernelGradients[filter][i];
+			return kernels[filter][i];
+		}
+
+		@Override
+		public double b() {
+			if (useConfiguredUpdateLearningRate)
+				return biases[filter] - configuredUpdateLearningRate * biasGradients[filter];
+			return biases[filter];
+		}
+
+		/**
+		 * sets the shared kernel weight, i.e. for all nodes of the filter
+		 */
+		@Override
+		public void setW(int k, double value) {
+			int i = kernelIndex(k);
+			if (i >= 0)
+				kernels[filter][i] = value;
+		}
+
+		/**
+		 * sets the shared bias, i.e. for all nodes of the filter
+		 */
+		@Override
+		public void setB(double value) {
+			biases[filter] = value;
+		}
+
+		@Override
+		public void updateW(int dimension, double gradientValue) {
+			int i = kernelIndex(dimension);
+			if (i >= 0)
+				updateLocalW(i, gradientValue);
+		}
+
+		@Override
+		public void updateLocalW(int i, double gradientValue) {
+			kernelGradients[filter][i] += gradientValue;
+			dirty[filter] = true;
+		}
+
+		@Override
+		public void updateB(double gradientValue) {
+			biasGradients[filter] += gradientValue;
+			dirty[filter] = true;
+		}
+
+		/**
+		 * the gradient accumulated by all nodes of the filter
+		 */
+		@Override
+		public double getUpdateW(int dimension) {
+			int i = kernelIndex(dimension);
+			return i < 0 ? 0 : kernelGradients[filter][i];
+		}
+
+		/**
+		 * the gradient accumulated by all nodes of the filter
+		 */
+		@Override
+		public double getUpdateB() {
+			return biasGradients[filter];
+		}
+
+		@Override
+		public void applyW(int dimension, double gradientValue, double learningRate, int datasetsize) {
+			int i = kernelIndex(dimension);
+			if (i >= 0)
+				applyLocalW(i, gradientValue, learningRate, datasetsize);
+		}
+
+		@Override
+		public void applyLocalW(int i, double gradientValue, double learningRate, int datasetsize) {
+			kernels[filter][i] -= learningRate * gradientValue;
+		}
+
+		/**
+		 * the node at the first output position of a filter owns its shared kernel
+		 * and bias, all others share them
+		 */
+		@Override
+		public boolean ownsParameters() {
+			return outputRow == 0 && outputColumn == 0;
+		}
+
+		@Override
+		public void applyB(double gradientValue, double learningRate) {
+			biases[filter] -= learningRate * gradientValue;
+		}
+
+		@Override
+		public void prepareUpdate() {
+
+		}
+
+		/**
+		 * commits the shared update of the filter; the first node of a filter
+		 * commits, all others find nothing left to commit
+		 */
+		@Override
+		public void commitUpdate(double learningRate, int datasetsize) {
+			if (dirty[filter]) {
+				double[] kernel = kernels[filter];
+				double[] gradient = kernelGradients[filter];
+				for (int i = 0; i < kernel.length; i++)
+					kernel[i] -= learningRate * gradient[i];
+				biases[filter] -= learningRate * biasGradients[filter];
+				clearGradients(filter);
+			}
+			useConfiguredUpdateLearningRate = false;
+		}
+
+		@Override
+		public void configureUpdate(double d, int datasetsize) {
+			configuredUpdateLearningRate = d;
+			useConfiguredUpdateLearningRate = true;
+		}
+
+		@Override
+		public void resetUpdate() {
+			useConfiguredUpdateLearningRate = false;
+			if (dirty[filter])
+				clearGradients(filter);
+		}
+
+		@Override
+		public Function getFunction() {
+			return this;
+		}
+
+		@Override
+		public double computeDerivativeValue(double z) {
+			double sigmoid = MyMath.sigmoid(z);
+			return sigmoid * (1 - sigmoid);
+		}
+
+		@Override
+		public double computeAt(double z) {
+			return MyMath.sigmoid(z);
+		}
+
+		public int getFilter() {
+			return filter;
+		}
+	}
+
+	private final int inputChannels;
+	private final int inputHeight;
+	private final int inputWidth;
+	private final int numberOfInputs;
+	private final int numberOfFilters;
+	private final int kernelSize;
+	private final int stride;
+	private final int outputHeight;
+	private final int outputWidth;
+
+	/**
+	 * indexed by [filter][(channel * kernelSize + dy) * kernelSize + dx]
+	 */
+	private final double[][] kernels;
+	private final double[] biases;
+	private final double[][] kernelGradients;
+	private final double[] biasGradients;
+
+	/**
+	 * whether the filter has accumulated gradients since the last commit
+	 */
+	private final boolean[] dirty;
+
+	/**
+	 * the input index of every kernel weight, indexed by [output position][kernel index]
+	 */
+	private final int[][] patchIndices;
+	private final ConvolutionNode[] nodes;
+	private double configuredUpdateLearningRate;
+	private boolean useConfiguredUpdateLearningRate;
+
+	/**
+	 * @param inputChannels the number of channels of the input image
+	 * @param inputHeight
+	 * @param inputWidth
+	 * @param numberOfFilters the number of output channels
+	 * @param kernelSize the height and width of the kernels
+	 * @param stride the distance of successive patches
+	 * @param initializer draws the kernel weights and then the bias of every filter
+	 */
+	public ConvolutionLayer(int inputChannels, int inputHeight, int inputWidth, int numberOfFilters, int kernelSize, int stride,
+			Initializer initializer) {
+		if (kernelSize > inputHeight || kernelSize > inputWidth || stride < 1)
+			throw new IllegalArgumentException("kernel of size " + kernelSize + " and stride " + stride + " does not fit "
+					+ inputHeight + "x" + inputWidth);
+		this.inputChannels = inputChannels;
+		this.inputHeight = inputHeight;
+		this.inputWidth = inputWidth;
+		this.numberOfInputs = inputChannels * inputHeight * inputWidth;
+		this.numberOfFilters = numberOfFilters;
+		this.kernelSize = kernelSize;
+		this.stride = stride;
+		this.outputHeight = (inputHeight - kernelSize) / stride + 1;
+		this.outputWidth = (inputWidth - kernelSize) / stride + 1;
+
+		int kernelLength = inputChannels * kernelSize * kernelSize;
+		kernels = new double[numberOfFilters][kernelLength];
+		biases = new double[numberOfFilters];
+		kernelGradients = new double[numberOfFilters][kernelLength];
+		biasGradients = new double[numberOfFilters];
+		dirty = new boolean[numberOfFilters];
+		for (int f = 0; f < numberOfFilters; f++) {
+			for (int i = 0; i < kernelLength; i++)
+				kernels[f][i] = initializer.nextDouble(-1, 1);
+			biases[f] = initializer.nextDouble(-1, 1);
+		}
+
+		patchIndices = new int[outputHeight * outputWidth][kernelLength];
+		for (int position = 0; position < patchIndices.length; position++) {
+			int top = (position / outputWidth) * stride;
+			int left = (position % outputWidth) * stride;
+			int i = 0;
+			for (int c = 0; c < inputChannels; c++)
+				for (int dy = 0; dy < kernelSize; dy++)
+					for (int dx = 0; dx < kernelSize; dx++)
+						patchIndices[position][i++] = (c * inputHeight + top + dy) * inputWidth + left + dx;
+		}
+
+		nodes = new ConvolutionNode[numberOfFilters * patchIndices.length];
+		for (int f = 0; f < numberOfFilters; f++)
+			for (int position = 0; position < patchIndices.length; position++)
+				nodes[f * patchIndices.length + position] = new ConvolutionNode(f, position);
+	}
+
+	private void clearGradients(int filter) {
+		Arrays.fill(kernelGradients[filter], 0);
+		biasGradients[filter] = 0;
+		dirty[filter] = false;
+	}
+
+	/**
+	 * the nodes of this layer, to be passed to {@link Network#configureLayer(int, Node[])}
+	 */
+	public ConvolutionNode[] getNodes() {
+		return nodes.clone();
+	}
+
+	/**
+	 * the number of distinct weights and biases
+	 */
+	public int getNumberOfParameters() {
+		return numberOfFilters * (inputChannels * kernelSize * kernelSize + 1);
+	}
+
+	public int getNumberOfInputs() {
+		return numberOfInputs;
+	}
+
+	public int getNumberOfFilters() {
+		return numberOfFilters;
+	}
+
+	public int getOutputHeight() {
+		return outputHeight;
+	}
+
+	public int getOutputWidth() {
+		return outputWidth;
+	}
+
+}
@@ -0,0 +1,111 @@
+package net.brunel.nodes;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import net.brunel.nodes.exceptions.InputException;
+
+/**
+ * Reads labelled instances from a text file with one instance per line, the
+ * features followed by the labels, separated by a delimiter, e.g. a CSV file.
+ * Empty lines are skipped. The values are parsed directly into the rows of the
+ * caller, without splitting the line first.
+ */
+public class DelimitedFileBatchSource implements BatchSource {
+
+	private final Path file;
+	private final char delimiter;
+	private final int dimension;
+	private final int numberOfLabels;
+	private final boolean header;
+	private BufferedReader reader;
+	private long lineNumber;
+
+	/**
+	 * @param file
+	 * @param delimiter e.g. ',' or '\t'
+	 * @param dimension the number of features at the beginning of every line
+	 * @param numberOfLabels the number of labels at the end of every line
+	 * @param header whether the first line is to be skipped
+	 */
+	public DelimitedFileBatchSource(Path file, char delimiter, int dimension, int numberOfLabels, boolean header) throws IOException {
+		this.file = file;
+		this.delimiter = delimiter;
+		this.dimension = dimension;
+		this.numberOfLabels = numberOfLabels;
+		this.header = header;
+		reset();
+	}
+
+	@Override
+	public int getDimension() {
+		return dimension;
+	}
+
+	@Override
+	public int getNumberOfLabels() {
+		return numberOfLabels;
+	}
+
+	@Override
+	public int read(double[][] instances, double[][] labels) throws IOException, InputException {
+		int rows = 0;
+		String line;
+		while (rows < instances.length && (line = reader.readLine()) != null) {
+			lineNumber++;
+			if (line.trim().isEmpty())
+				continue;
+			parse(line, instances[rows], labels[rows]);
+			rows++;
+		}
+		return rows;
+	}
+
+	private void parse(String line, double[] instance, double[] label) throws InputException {
+		int column = 0;
+		int start = 0;
+		int length = line.length();
+		while (start <= length) {
+			int end = line.indexOf(delimiter, start);
+			if (end < 0)
+				end = length;
+			if (column >= dimension + numberOfLabels)
+				throw new InputException(file + ":" + lineNumber + ": more than " + (dimension + numberOfLabels) + " columns");
+			double value;
+			try {
+				value = Double.parseDouble(line.substring(start, end).trim());
+			} catch (NumberFormatException e) {
+				throw new InputException(file + ":" + lineNumber + ": column " + (column + 1) + " is not a number");
+			}
+			if (column < dimension)
+				instance[column] = value;
+			else
+				label[column - dimension] = value;
+			column++;
+			start = end + 1;
+		}
+		if (column != dimension + numberOfLabels)
+			throw new InputException(file + ":" + lineNumber + ": " + column + " instead of " + (dimension + numberOfLabels) + " columns");
+	}
+
+	@Override
+	public void reset() throws IOException {
+		close();
+		reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+		lineNumber = 0;
+		if (header && reader.readLine() != null)
+			lineNumber++;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (reader != null) {
+			reader.close();
+			reader = null;
+		}
+	}
+
+}
@@ -0,0 +1,273 @@
+package net.brunel.nodes;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Formatter;
+import java.util.Locale;
+
+/**
+ * Writes the graph of a {@link Network} in the DOT language of graphviz,
+ * streaming node by node to a {@link Writer} instead of building the whole
+ * graph in memory. The edges are written by source and then by target, with
+ * their weights formatted by {@code %.2f}.
+ * <p>
+ * Large networks can be summarized: only the topK edges with the largest
+ * absolute weight into each node, only edges whose absolute weight reaches a
+ * threshold, or one node per layer with a single summarizing edge between
+ * successive layers.
+ */
+public class DotGraphExporter {
+
+	private final Network network;
+	private int topK;
+	private double weightThreshold;
+	private boolean aggregateLayers;
+
+	public DotGraphExporter(Network network) {
+		this.network = network;
+	}
+
+	/**
+	 * writes the graph with biases and weights, but without activations
+	 *
+	 * @param out
+	 */
+	public void export(Writer out) throws IOException {
+		export(out, null);
+	}
+
+	/**
+	 * @param out
+	 * @param activations the activations indexed by [layer][node], or null
+	 */
+	void export(Writer out, double[][] activations) throws IOException {
+		out.write("digraph ANN {");
+		out.write("graph [splines=true overlap=false labelangle=100]; ");
+		if (aggregateLayers)
+			writeLayers(out);
+		else
+			writeNodes(out, activations);
+		out.write("}");
+	}
+
+	private void writeNodes(Writer out, double[][] activations) throws IOException {
+		int numberOfLayers = network.getNumberOfLayers();
+		for (int l = 0; l < numberOfLayers; l++) {
+			Node[] layerNodes = network.getLayer(l);
+			for (int j = 0; j < layerNodes.length; j++) {
+				writeNodeName(out, l, j);
+				out.write(" [label=\"bias=");
+				out.write(Double.toString(layerNodes[j].b()));
+				if (activations != null) {
+					out.write(", output=");
+					out.write(Double.toString(activations[l][j]));
+				}
+				out.write("\"];");
+			}
+		}
+
+		Formatter formatter = new Formatter(out, Locale.ENGLISH);
+		for (int l = 1; l < numberOfLayers; l++) {
+			Node[] layerNodes = network.getLayer(l);
+			int numberOfPreviousNodes = network.getLayer(l - 1).length;
+			if (topK > 0 && topK < numberOfPreviousNodes)
+				writeTopEdges(out, formatter, l, layerNodes, numberOfPreviousNodes);
+			else
+				writeEdges(out, formatter, l, layerNodes, numberOfPreviousNodes);
+		}
+		checkFormatter(formatter);
+	}
+
+	/*
+	 * all edges above the threshold, by source and then by target
+	 */
+	private void writeEdges(Writer out, Formatter formatter, int l, Node[] layerNodes, int numberOfPreviousNodes) throws IOException {
+		for (int c = 0; c < numberOfPreviousNodes; c++) {
+			for (int n = 0; n < layerNodes.length; n++) {
+				double weight = layerNodes[n].getWeightFromInput(c);
+				if (Math.abs(weight) >= weightThreshold)
+					writeEdge(out, formatter, l, c, n, weight);
+			}
+		}
+	}
+
+	/*
+	 * the topK edges into every node, selected node by node and written in the 
+	 * same order as all edges, by source and then by target
+	 */
+	private void writeTopEdges(Writer out, Formatter formatter, int l, Node[] layerNodes, int numberOfPreviousNodes) throws IOException {
+		int[][] selected = new int[layerNodes.length][topK];
+		double[][] selectedWeights = new double[layerNodes.length][topK];
+		int[] numberOfSelected = new int[layerNodes.length];
+		for (int n = 0; n < layerNodes.length; n++)
+			numberOfSelected[n] = selectEdges(layerNodes[n], numberOfPreviousNodes, topK, selected[n], selectedWeights[n]);
+
+		int[] next = new int[layerNodes.length];
+		for (int c = 0; c < numberOfPreviousNodes; c++) {
+			for (int n = 0; n < layerNodes.length; n++) {
+				if (next[n] < numberOfSelected[n] && selected[n][next[n]] == c) {
+					writeEdge(out, formatter, l, c, n, selectedWeights[n][next[n]]);
+					next[n]++;
+				}
+			}
+		}
+	}
+
+	private static void writeEdge(Writer out, Formatter formatter, int l, int c, int n, double weight) throws IOException {
+		writeNodeName(out, l - 1, c);
+		out.write("->");
+		writeNodeName(out, l, n);
+		out.write(" [label=\"");
+		formatter.format("%.2f", weight);
+		out.write("\"];");
+	}
+
+	/*
+	 * a Formatter swallows the IOExceptions of its Writer
+	 */
+	private static void checkFormatter(Formatter formatter) throws IOException {
+		if (formatter.ioException() != null)
+			throw formatter.ioException();
+	}
+
+	/*
+	 * fills selected with the sources of the k edges of the largest absolute
+	 * weight above the threshold, in the order of their sources, using a min-heap
+	 * on the absolute weights. Returns the number of selected edges.
+	 */
+	private int selectEdges(Node node, int numberOfPreviousNodes, int k, int[] selected, double[] selectedWeights) {
+		int size = 0;
+		for (int c = 0; c < numberOfPreviousNodes; c++) {
+			double weight = node.getWeightFromInput(c);
+			if (Math.abs(weight) < weightThreshold)
+				continue;
+			if (size < k) {
+				selected[size] = c;
+				selectedWeights[size] = weight;
+				siftUp(selected, selectedWeights, size++);
+			} else if (k > 0 && Math.abs(weight) > Math.abs(selectedWeights[0])) {
+				selected[0] = c;
+				selectedWeights[0] = weight;
+				siftDown(selected, selectedWeights, 0, size);
+			}
+		}
+		// restore the order of the sources for a stable output
+		for (int i = 1; i < size; i++) {
+			for (int j = i; j > 0 && selected[j - 1] > selected[j]; j--)
+				swap(selected, selectedWeights, j - 1, j);
+		}
+		return size;
+	}
+
+	private static void siftUp(int[] heap, double[] keys, int i) {
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (Math.abs(keys[parent]) <= Math.abs(keys[i]))
+				return;
+			swap(heap, keys, parent, i);
+			i = parent;
+		}
+	}
+
+	private static void siftDown(int[] heap, double[] keys, int i, int size) {
+		while (true) {
+			int smallest = i;
+			int left = 2 * i + 1;
+			int right = left + 1;
+			if (left < size && Math.abs(keys[left]) < Math.abs(keys[smallest]))
+				smallest = left;
+			if (right < size && Math.abs(keys[right]) < Math.abs(keys[smallest]))
+				smallest = right;
+			if (smallest == i)
+				return;
+			swap(heap, keys, smallest, i);
+			i = smallest;
+		}
+	}
+
+	private static void swap(int[] heap, double[] keys, int i, int j) {
+		int h = heap[i];
+		heap[i] = heap[j];
+		heap[j] = h;
+		double k = keys[i];
+		keys[i] = keys[j];
+		keys[j] = k;
+	}
+
+	private void writeLayers(Writer out) throws IOException {
+		Formatter formatter = new Formatter(out, Locale.ENGLISH);
+		int numberOfLayers = network.getNumberOfLayers();
+		for (int l = 0; l < numberOfLayers; l++) {
+			out.write("l" + l + " [label=\"layer " + l + ", " + network.getLayer(l).length + " nodes\"];");
+		}
+		for (int l = 1; l < numberOfLayers; l++) {
+			Node[] layerNodes = network.getLayer(l);
+			int numberOfPreviousNodes = network.getLayer(l - 1).length;
+			long edges = 0;
+			double sumOfAbsoluteWeights = 0;
+			double maximumAbsoluteWeight = 0;
+			for (Node node : layerNodes) {
+				for (int c = 0; c < numberOfPreviousNodes; c++) {
+					double absoluteWeight = Math.abs(node.getWeightFromInput(c));
+					if (absoluteWeight < weightThreshold)
+						continue;
+					edges++;
+					sumOfAbsoluteWeights += absoluteWeight;
+					maximumAbsoluteWeight = Math.max(maximumAbsoluteWeight, absoluteWeight);
+				}
+			}
+			out.write("l" + (l - 1) + "->l" + l + " [label=\"" + edges + " edges, ");
+			formatter.format("mean |w|=%.2f, max |w|=%.2f", edges == 0 ? 0 : sumOfAbsoluteWeights / edges, maximumAbsoluteWeight);
+			out.write("\"];");
+		}
+		checkFormatter(formatter);
+	}
+
+	private static void writeNodeName(Writer out, int layer, int nodeIdx) throws IOException {
+		out.write("nl");
+		out.write(Integer.toString(layer));
+		out.write('n');
+		out.write(Integer.toString(nodeIdx));
+	}
+
+	public int getTopK() {
+		return topK;
+	}
+
+	/**
+	 * only write the topK edges with the largest absolute weight into each node,
+	 * 0 writes all edges
+	 *
+	 * @param topK
+	 */
+	public void setTopK(int topK) {
+		this.topK = topK;
+	}
+
+	public double getWeightThreshold() {
+		return weightThreshold;
+	}
+
+	/**
+	 * skip all edges with an absolute weight below the threshold
+	 *
+	 * @param weightThreshold
+	 */
+	public void setWeightThreshold(double weightThreshold) {
+		this.weightThreshold = weightThreshold;
+	}
+
+	public boolean isAggregateLayers() {
+		return aggregateLayers;
+	}
+
+	/**
+	 * write one node per layer instead of one node per neuron
+	 *
+	 * @param aggregateLayers
+	 */
+	public void setAggregateLayers(boolean aggregateLayers) {
+		this.aggregateLayers = aggregateLayers;
+	}
+
+}
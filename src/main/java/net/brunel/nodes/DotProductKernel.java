@@ -0,0 +1,34 @@
+package net.brunel.nodes;
+
+/**
+ * The implementations of the dot product a node can use. Which one is the
+ * fastest depends on the vector length and the CPU, see {@link KernelAutotuner}.
+ * The unrolled kernels sum in a different order and may differ from the scalar
+ * one in the last bits.
+ */
+public enum DotProductKernel {
+
+	SCALAR {
+		@Override
+		public double dotProduct(double[] a, double[] b) {
+			return MyMath.dotProduct(a, b);
+		}
+	},
+
+	UNROLLED_4 {
+		@Override
+		public double dotProduct(double[] a, double[] b) {
+			return MyMath.dotProductUnrolled4(a, b);
+		}
+	},
+
+	UNROLLED_8 {
+		@Override
+		public double dotProduct(double[] a, double[] b) {
+			return MyMath.dotProductUnrolled8(a, b);
+		}
+	};
+
+	public abstract double dotProduct(double[] a, double[] b);
+
+}
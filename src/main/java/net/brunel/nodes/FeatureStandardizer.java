@@ -0,0 +1,199 @@
+package net.brunel.nodes;
+
+import java.util.stream.IntStream;
+
+import net.brunel.nodes.exceptions.InputDimensionMismatchException;
+import net.brunel.nodes.exceptions.InputException;
+
+/**
+ * Standardizes every feature to zero mean and unit variance, using the mean and
+ * standard deviation of a dataset. The statistics are computed in a single
+ * streaming pass with Welford's algorithm, which is numerically stable also for
+ * features with a large offset, and can be computed on parts of the data in
+ * parallel and merged.
+ * <p>
+ * Instances are immutable. See {@link Network#setFeatureStandardizer(FeatureStandardizer)}.
+ */
+public final class FeatureStandardizer {
+
+	/**
+	 * the number of instances per task when fitting in parallel
+	 */
+	private static final int CHUNK_SIZE = 4096;
+
+	/**
+	 * The running statistics of a stream of instances.
+	 */
+	public static final class Accumulator {
+		private final int numberOfFeatures;
+		private long count;
+		private final double[] mean;
+
+		/**
+		 * the sum of the squared differences from the current mean
+		 */
+		private final double[] m2;
+
+		public Accumulator(int numberOfFeatures) {
+			this.numberOfFeatures = numberOfFeatures;
+			mean = new double[numberOfFeatures];
+			m2 = new double[numberOfFeatures];
+		}
+
+		public void add(double[] instance) throws InputException {
+			if (instance.length != numberOfFeatures)
+				throw new InputDimensionMismatchException(numberOfFeatures, instance.length);
+			addUnchecked(instance);
+		}
+
+		private void addUnchecked(double[] instance) {
+			count++;
+			for (int i = 0; i < numberOfFeatures; i++) {
+				double delta = instance[i] - mean[i];
+				mean[i] += delta / count;
+				m2[i] += delta * (instance[i] - mean[i]);
+			}
+		}
+
+		/**
+		 * adds the statistics of the other accumulator to this one, as if all of its
+		 * instances had been added to this accumulator (Chan et al.)
+		 *
+		 * @param other
+		 * @return this accumulator
+		 */
+		public Accumulator merge(Accumulator other) throws InputException {
+			if (other.numberOfFeatures != numberOfFeatures)
+				throw new InputDimensionMismatchException(numberOfFeatures, other.numberOfFeatures);
+			return mergeUnchecked(other);
+		}
+
+		private Accumulator mergeUnchecked(Accumulator other) {
+			if (other.count == 0)
+				return this;
+			long total = count + other.count;
+			for (int i = 0; i < numberOfFeatures; i++) {
+				double delta = other.mean[i] - mean[i];
+				mean[i] += delta * other.count / total;
+				m2[i] += other.m2[i] + delta * delta * ((double) count * other.count / total);
+			}
+			count = total;
+			return this;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * a standardizer for the statistics of all instances added so far
+		 */
+		public FeatureStandardizer toStandardizer() {
+			double[] standardDeviations = new double[numberOfFeatures];
+			for (int i = 0; i < numberOfFeatures; i++)
+				standardDeviations[i] = count == 0 ? 0 : Math.sqrt(m2[i] / count);
+			return new FeatureStandardizer(mean.clone(), standardDeviations);
+		}
+	}
+
+	private final double[] means;
+	private final double[] standardDeviations;
+
+	/**
+	 * the reciprocals of the standard deviations, 1 for constant features
+	 */
+	private final double[] scales;
+
+	/**
+	 * @param means the mean of every feature
+	 * @param standardDeviations the standard deviation of every feature; features
+	 * with a standard deviation of 0 are only centered
+	 */
+	public FeatureStandardizer(double[] means, double[] standardDeviations) {
+		if (means.length != standardDeviations.length)
+			throw new IllegalArgumentException("means and standard deviations differ in length");
+		this.means = means.clone();
+		this.standardDeviations = standardDeviations.clone();
+		scales = new double[means.length];
+		for (int i = 0; i < scales.length; i++)
+			scales[i] = standardDeviations[i] > 0 ? 1 / standardDeviations[i] : 1;
+	}
+
+	/**
+	 * computes the statistics of the given instances in a single pass
+	 *
+	 * @param instances at least one instance
+	 */
+	public static FeatureStandardizer fit(double[][] instances) throws InputException {
+		checkNotEmpty(instances);
+		Accumulator accumulator = new Accumulator(instances[0].length);
+		for (double[] instance : instances)
+			accumulator.add(instance);
+		return accumulator.toStandardizer();
+	}
+
+	/**
+	 * like {@link #fit(double[][])}, but computes the statistics of chunks of the
+	 * instances in parallel on the common fork join pool and merges them
+	 *
+	 * @param instances
+	 */
+	public static FeatureStandardizer fitParallel(final double[][] instances) throws InputException {
+		checkNotEmpty(instances);
+		final int numberOfFeatures = instances[0].length;
+		for (double[] instance : instances) {
+			if (instance.length != numberOfFeatures)
+				throw new InputDimensionMismatchException(numberOfFeatures, instance.length);
+		}
+		int numberOfChunks = (instances.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		return IntStream.range(0, numberOfChunks).parallel().mapToObj(chunk -> {
+			Accumulator accumulator = new Accumulator(numberOfFeatures);
+			int end = Math.min(instances.length, (chunk + 1) * CHUNK_SIZE);
+			for (int i = chunk * CHUNK_SIZE; i < end; i++)
+				accumulator.addUnchecked(instances[i]);
+			return accumulator;
+		}).reduce(Accumulator::mergeUnchecked).get().toStandardizer();
+	}
+
+	private static void checkNotEmpty(double[][] instances) throws InputException {
+		if (instances.length == 0)
+			throw new InputException("Cannot fit the statistics of no instances");
+	}
+
+	/**
+	 * the standardized value of the given feature
+	 *
+	 * @param feature
+	 * @param value
+	 */
+	public double standardize(int feature, double value) {
+		return (value - means[feature]) * scales[feature];
+	}
+
+	/**
+	 * a standardized copy of the given instance
+	 *
+	 * @param instance
+	 */
+	public double[] standardize(double[] instance) throws InputException {
+		if (instance.length != means.length)
+			throw new InputDimensionMismatchException(means.length, instance.length);
+		double[] standardized = new double[instance.length];
+		for (int i = 0; i < instance.length; i++)
+			standardized[i] = standardize(i, instance[i]);
+		return standardized;
+	}
+
+	public int getNumberOfFeatures() {
+		return means.length;
+	}
+
+	public double[] getMeans() {
+		return means.clone();
+	}
+
+	public double[] getStandardDeviations() {
+		return standardDeviations.clone();
+	}
+
+}
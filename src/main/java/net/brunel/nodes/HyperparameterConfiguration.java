@@ -0,0 +1,98 @@
+package net.brunel.nodes;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import net.brunel.nodes.exceptions.NetworkLayerException;
+
+/**
+ * One point of a hyperparameter search: the learning rate and its decay, the
+ * regularization of the neurons and the widths of the hidden layers, see
+ * {@link HyperparameterSearch}.
+ */
+public class HyperparameterConfiguration {
+
+	private final double learningRate;
+	private final double lambda;
+	private final int[] hiddenLayerWidths;
+	private int learningRateIterationAmount = 100;
+	private double learningRateIterationDecay = 0.995;
+	private long seed = 0;
+
+	/**
+	 * @param learningRate see {@link Network#setLearningRate(double)}
+	 * @param lambda see {@link SigmoidNeuron#setLambda(double)}
+	 * @param hiddenLayerWidths the number of neurons of each hidden layer, may be empty
+	 */
+	public HyperparameterConfiguration(double learningRate, double lambda, int... hiddenLayerWidths) {
+		this.learningRate = learningRate;
+		this.lambda = lambda;
+		this.hiddenLayerWidths = hiddenLayerWidths.clone();
+	}
+
+	/**
+	 * creates a network of sigmoid neurons with this configuration, initialized
+	 * with the configured seed
+	 *
+	 * @param inputDimension
+	 * @param outputDimension
+	 */
+	public Network createNetwork(int inputDimension, int outputDimension) throws NetworkLayerException {
+		Network network = new Network(inputDimension, hiddenLayerWidths.length + 1);
+		Initializer initializer = InitializerHelper.newUniformInitializer(new Random(seed));
+		int numberOfInputs = inputDimension;
+		for (int l = 0; l <= hiddenLayerWidths.length; l++) {
+			int width = l < hiddenLayerWidths.length ? hiddenLayerWidths[l] : outputDimension;
+			SigmoidNeuron[] layer = new SigmoidNeuron[width];
+			for (int j = 0; j < width; j++) {
+				layer[j] = new SigmoidNeuron(numberOfInputs, initializer);
+				layer[j].setLambda(lambda);
+			}
+			network.configureLayer(l + 1, layer);
+			numberOfInputs = width;
+		}
+		network.setLearningRate(learningRate);
+		network.setLearningRateMultiplier(learningRateIterationAmount, learningRateIterationDecay);
+		return network;
+	}
+
+	public double getLearningRate() {
+		return learningRate;
+	}
+
+	public double getLambda() {
+		return lambda;
+	}
+
+	public int[] getHiddenLayerWidths() {
+		return hiddenLayerWidths.clone();
+	}
+
+	public void setLearningRateMultiplier(int iterationNumber, double learningRateIterationDecay) {
+		this.learningRateIterationAmount = iterationNumber;
+		this.learningRateIterationDecay = learningRateIterationDecay;
+	}
+
+	public int getLearningRateIterationAmount() {
+		return learningRateIterationAmount;
+	}
+
+	public double getLearningRateIterationDecay() {
+		return learningRateIterationDecay;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	@Override
+	public String toString() {
+		return "learningRate=" + learningRate + ", lambda=" + lambda + ", hiddenLayerWidths=" + Arrays.toString(hiddenLayerWidths)
+				+ ", learningRateMultiplier=" + learningRateIterationAmount + "/" + learningRateIterationDecay + ", seed=" + seed;
+	}
+
+}
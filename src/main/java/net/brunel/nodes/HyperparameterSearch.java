@@ -0,0 +1,151 @@
+package net.brunel.nodes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.brunel.nodes.exceptions.InputException;
+
+/**
+ * Searches the best of several {@link HyperparameterConfiguration}s with
+ * successive halving: all configurations are trained for a small number of
+ * iterations, then only the best 1/reductionFactor of them by validation error
+ * are trained further, with reductionFactor times as many iterations, until a
+ * single configuration remains.
+ * <p>
+ * The networks are trained concurrently on a thread pool; they all share the
+ * training and validation data, which must not be modified during the search.
+ */
+public class HyperparameterSearch {
+
+	/**
+	 * a configuration together with its network and training progress
+	 */
+	public static class Candidate {
+		private final HyperparameterConfiguration configuration;
+		private final Network network;
+		private int iterations;
+		private double error = Double.NaN;
+
+		Candidate(HyperparameterConfiguration configuration, Network network) {
+			this.configuration = configuration;
+			this.network = network;
+		}
+
+		public HyperparameterConfiguration getConfiguration() {
+			return configuration;
+		}
+
+		public Network getNetwork() {
+			return network;
+		}
+
+		/**
+		 * the number of iterations the network has been trained for
+		 */
+		public int getIterations() {
+			return iterations;
+		}
+
+		/**
+		 * the validation error after the last round this candidate took part in
+		 */
+		public double getError() {
+			return error;
+		}
+
+		@Override
+		public String toString() {
+			return configuration + ": error=" + error + " after " + iterations + " iterations";
+		}
+	}
+
+	private final int numThreads;
+	private final int initialIterations;
+	private final int reductionFactor;
+	private final List<Candidate> candidates = new ArrayList<>();
+
+	/**
+	 * @param numThreads the number of networks trained concurrently
+	 * @param initialIterations the number of iterations of the first round
+	 * @param reductionFactor the factor by which the number of candidates shrinks
+	 *            and the number of iterations grows from round to round
+	 */
+	public HyperparameterSearch(int numThreads, int initialIterations, int reductionFactor) {
+		if (reductionFactor < 2)
+			throw new IllegalArgumentException("reductionFactor must be at least 2");
+		this.numThreads = numThreads;
+		this.initialIterations = initialIterations;
+		this.reductionFactor = reductionFactor;
+	}
+
+	/**
+	 * runs the search and returns the best candidate
+	 *
+	 * @param configurations the configurations to choose from
+	 * @param instances the training instances
+	 * @param labels the training labels
+	 * @param validationInstances the instances to compute the error on
+	 * @param validationLabels the labels of the validation instances
+	 */
+	public Candidate search(List<HyperparameterConfiguration> configurations, final double[][] instances, final double[][] labels,
+			final double[][] validationInstances, final double[][] validationLabels) throws InputException, InterruptedException {
+		candidates.clear();
+		for (HyperparameterConfiguration configuration : configurations)
+			candidates.add(new Candidate(configuration, configuration.createNetwork(instances[0].length, labels[0].length)));
+
+		List<Candidate> survivors = new ArrayList<>(candidates);
+		int roundIterations = initialIterations;
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			while (true) {
+				final int iterations = roundIterations;
+				List<Future<Void>> futures = new ArrayList<>(survivors.size());
+				for (final Candidate candidate : survivors) {
+					futures.add(executor.submit(() -> {
+						candidate.network.trainBatch(instances, labels, candidate.iterations, iterations);
+						candidate.iterations += iterations;
+						candidate.error = candidate.network.computeError(validationInstances, validationLabels);
+						return null;
+					}));
+				}
+				for (Future<Void> future : futures)
+					waitFor(future);
+
+				Collections.sort(survivors, Comparator.comparingDouble(Candidate::getError));
+				if (survivors.size() == 1)
+					return survivors.get(0);
+
+				survivors = new ArrayList<>(survivors.subList(0, Math.max(1, survivors.size() / reductionFactor)));
+				roundIterations *= reductionFactor;
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void waitFor(Future<Void> future) throws InputException, InterruptedException {
+		try {
+			future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof InputException)
+				throw (InputException) e.getCause();
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * all candidates of the last search, including the eliminated ones
+	 */
+	public List<Candidate> getCandidates() {
+		return Collections.unmodifiableList(candidates);
+	}
+
+}
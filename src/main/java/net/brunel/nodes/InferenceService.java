@@ -0,0 +1,173 @@
+package net.brunel.nodes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import net.brunel.nodes.exceptions.InputDimensionMismatchException;
+import net.brunel.nodes.exceptions.InputException;
+
+/**
+ * Serves predictions of a {@link Network} to many concurrent callers.
+ * <p>
+ * Single instances are queued and coalesced into micro batches by a background
+ * thread, which is the only thread using the network. A batch is run as soon as
+ * it holds maxBatchSize instances or the oldest instance waited for maxWait,
+ * which bounds the latency added by batching. A batch is classified layer by
+ * layer by {@link Network#makeBatchPredictions(double[][])}, so the weights of
+ * every node are loaded once per batch. The network must not be trained while
+ * the service is running.
+ */
+public class InferenceService implements AutoCloseable {
+
+	private static class Request {
+		final double[] input;
+		final CompletableFuture<double[]> result = new CompletableFuture<>();
+
+		Request(double[] input) {
+			this.input = input;
+		}
+	}
+
+	private final Network network;
+	private final int maxBatchSize;
+	private final long maxWaitNanos;
+	private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+	private final Thread batcher;
+	private volatile boolean running = true;
+	private long numberOfBatches;
+	private long numberOfRequests;
+
+	/**
+	 * @param network the network to serve
+	 * @param maxBatchSize the maximum number of instances of a batch
+	 * @param maxWait the maximum time an instance waits for other instances
+	 * @param unit the unit of maxWait
+	 */
+	public InferenceService(Network network, int maxBatchSize, long maxWait, TimeUnit unit) {
+		this.network = network;
+		this.maxBatchSize = maxBatchSize;
+		this.maxWaitNanos = unit.toNanos(maxWait);
+		batcher = new Thread(this::processBatches, "inference-batcher");
+		batcher.setDaemon(true);
+		batcher.start();
+	}
+
+	/**
+	 * queues the given instance; the returned future completes with its
+	 * prediction, or exceptionally with an {@link InputException}
+	 *
+	 * @param input the instance, must not be modified until the future completes
+	 */
+	public CompletableFuture<double[]> submit(double[] input) {
+		Request request = new Request(input);
+		if (input.length != network.getNumberOfInputs())
+			request.result.completeExceptionally(new InputDimensionMismatchException(network.getNumberOfInputs(), input.length));
+		else if (!running)
+			request.result.completeExceptionally(new IllegalStateException("InferenceService is closed"));
+		else {
+			queue.add(request);
+			// closed concurrently, the queue may already have been drained
+			if (!running && queue.remove(request))
+				request.result.completeExceptionally(new IllegalStateException("InferenceService is closed"));
+		}
+		return request.result;
+	}
+
+	/**
+	 * blocks until the prediction for the given instance is available
+	 *
+	 * @param input the instance
+	 */
+	public double[] predict(double[] input) throws InputException, InterruptedException {
+		try {
+			return submit(input).get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof InputException)
+				throw (InputException) e.getCause();
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private void processBatches() {
+		List<Request> batch = new ArrayList<>(maxBatchSize);
+		try {
+			while (running) {
+				batch.add(queue.take());
+				long deadline = System.nanoTime() + maxWaitNanos;
+				while (batch.size() < maxBatchSize) {
+					long remaining = deadline - System.nanoTime();
+					Request request = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+					if (request == null)
+						break;
+					batch.add(request);
+				}
+				process(batch);
+				batch.clear();
+			}
+		} catch (InterruptedException e) {
+			// closed
+		}
+		for (Request request : batch)
+			request.result.completeExceptionally(new IllegalStateException("InferenceService is closed"));
+		rejectQueuedRequests();
+	}
+
+	private void rejectQueuedRequests() {
+		Request request;
+		while ((request = queue.poll()) != null)
+			request.result.completeExceptionally(new IllegalStateException("InferenceService is closed"));
+	}
+
+	private void process(List<Request> batch) {
+		double[][] instances = new double[batch.size()][];
+		for (int i = 0; i < instances.length; i++)
+			instances[i] = batch.get(i).input;
+		// count before completing, so that callers see their own request counted
+		synchronized (this) {
+			numberOfBatches++;
+			numberOfRequests += batch.size();
+		}
+		try {
+			double[][] predictions = network.makeBatchPredictions(instances);
+			for (int i = 0; i < predictions.length; i++)
+				batch.get(i).result.complete(predictions[i]);
+		} catch (InputException | RuntimeException e) {
+			for (Request request : batch)
+				request.result.completeExceptionally(e);
+		}
+	}
+
+	public synchronized long getNumberOfBatches() {
+		return numberOfBatches;
+	}
+
+	public synchronized long getNumberOfRequests() {
+		return numberOfRequests;
+	}
+
+	/**
+	 * stops the background thread; queued requests complete exceptionally. If
+	 * the calling thread is interrupted, it does not wait for the background
+	 * thread and keeps its interrupt status.
+	 */
+	@Override
+	public void close() {
+		running = false;
+		batcher.interrupt();
+		try {
+			batcher.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		// requests which raced with closing
+		rejectQueuedRequests();
+	}
+
+}
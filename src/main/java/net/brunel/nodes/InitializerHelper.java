@@ -1,6 +1,9 @@
 package net.brunel.nodes;
 
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
 
 public class InitializerHelper {
 
@@ -24,9 +27,113 @@ public class InitializerHelper {
 		};
 	}
 
-	final static Random rnd = new Random();
+	/**
+	 * draws uniformly from the range requested by the node, using the given 
+	 * random number generator, e.g. a seeded one for reproducible initializations
+	 * 
+	 * @param random
+	 */
+	public static Initializer newUniformInitializer(Random random) {
+		return (min, max) -> {
+			return min + random.nextDouble() * (max - min);
+		};
+	}
+
+	/*
+	 * ThreadLocalRandom instead of one shared Random, which is contended when
+	 * layers are created concurrently
+	 */
 	public static Initializer newGaussianInitializer(int mean, int var) {
-		return (min,max)->{return (rnd.nextGaussian()+mean)*var;};
+		return (min,max)->{return (ThreadLocalRandom.current().nextGaussian()+mean)*var;};
+	}
+
+	/**
+	 * Xavier/Glorot initialization: draws uniformly from 
+	 * [-sqrt(6/(fanIn+fanOut)), sqrt(6/(fanIn+fanOut))], ignoring the range requested 
+	 * by the node. Keeps the variance of the activations independent of the layer 
+	 * width, so wide layers do not saturate sigmoid neurons.
+	 * 
+	 * @param fanIn the number of inputs of the node
+	 * @param fanOut the number of nodes in the next layer
+	 * @param random
+	 */
+	public static Initializer newXavierInitializer(int fanIn, int fanOut, SplittableRandom random) {
+		double limit = Math.sqrt(6.0 / (fanIn + fanOut));
+		return (min, max) -> {
+			return limit * (2 * random.nextDouble() - 1);
+		};
+	}
+
+	/**
+	 * He initialization: draws from a gaussian with mean 0 and variance 2/fanIn,
+	 * ignoring the range requested by the node.
+	 * 
+	 * @param fanIn the number of inputs of the node
+	 * @param random
+	 */
+	public static Initializer newHeInitializer(int fanIn, SplittableRandom random) {
+		double standardDeviation = Math.sqrt(2.0 / fanIn);
+		return (min, max) -> {
+			return standardDeviation * nextGaussian(random);
+		};
+	}
+
+	/*
+	 * the polar method of Marsaglia, as used by java.util.Random
+	 */
+	static double nextGaussian(SplittableRandom random) {
+		double v1, v2, s;
+		do {
+			v1 = 2 * random.nextDouble() - 1;
+			v2 = 2 * random.nextDouble() - 1;
+			s = v1 * v1 + v2 * v2;
+		} while (s >= 1 || s == 0);
+		return v1 * Math.sqrt(-2 * Math.log(s) / s);
+	}
+
+	private interface InitializerFactory {
+		Initializer create(SplittableRandom random);
+	}
+
+	/**
+	 * creates a layer of sigmoid neurons with Xavier initialization, see 
+	 * {@link #newXavierInitializer(int, int, SplittableRandom)}. The neurons are 
+	 * initialized in parallel, the result only depends on the seed.
+	 * 
+	 * @param numberOfNodes the width of the layer
+	 * @param numberOfInputs the width of the previous layer
+	 * @param numberOfOutputs the width of the next layer
+	 * @param seed
+	 */
+	public static SigmoidNeuron[] newXavierLayer(int numberOfNodes, int numberOfInputs, int numberOfOutputs, long seed) {
+		return newLayer(numberOfNodes, numberOfInputs, seed, (random) -> newXavierInitializer(numberOfInputs, numberOfOutputs, random));
+	}
+
+	/**
+	 * creates a layer of sigmoid neurons with He initialization, see 
+	 * {@link #newHeInitializer(int, SplittableRandom)} and 
+	 * {@link #newXavierLayer(int, int, int, long)}
+	 * 
+	 * @param numberOfNodes the width of the layer
+	 * @param numberOfInputs the width of the previous layer
+	 * @param seed
+	 */
+	public static SigmoidNeuron[] newHeLayer(int numberOfNodes, int numberOfInputs, long seed) {
+		return newLayer(numberOfNodes, numberOfInputs, seed, (random) -> newHeInitializer(numberOfInputs, random));
+	}
+
+	private static SigmoidNeuron[] newLayer(int numberOfNodes, int numberOfInputs, long seed, InitializerFactory factory) {
+		// split sequentially, so that every node gets the same generator regardless of the threads used
+		SplittableRandom root = new SplittableRandom(seed);
+		SplittableRandom[] randoms = new SplittableRandom[numberOfNodes];
+		for (int j = 0; j < numberOfNodes; j++)
+			randoms[j] = root.split();
+
+		SigmoidNeuron[] layer = new SigmoidNeuron[numberOfNodes];
+		IntStream.range(0, numberOfNodes).parallel().forEach((j) -> {
+			layer[j] = new SigmoidNeuron(numberOfInputs, factory.create(randoms[j]));
+		});
+		return layer;
 	}
 
 }
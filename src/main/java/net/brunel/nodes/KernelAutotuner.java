@@ -0,0 +1,166 @@
+package net.brunel.nodes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.SplittableRandom;
+
+/**
+ * Chooses the fastest {@link DotProductKernel} for the layers of a network by
+ * micro-benchmarking all kernels on the actual vector lengths. The choices are
+ * cached in a properties file, keyed by the host, the CPU architecture and the
+ * JVM, so that later runs on the same host skip the benchmarks.
+ */
+public class KernelAutotuner {
+
+	/**
+	 * the number of multiply-adds of one timed run of a kernel
+	 */
+	private static final int OPERATIONS_PER_RUN = 1 << 16;
+	private static final int WARMUP_RUNS = 200;
+	private static final int TIMED_RUNS = 15;
+
+	private final Path cacheFile;
+	private final Properties cache = new Properties();
+	private final String hostKey;
+	private int numberOfBenchmarks;
+
+	/**
+	 * a sink for the results of the benchmarks, such that they cannot be
+	 * eliminated as dead code
+	 */
+	private volatile double sink;
+
+	/**
+	 * @param cacheFile the file caching the choices, or null to not cache them
+	 */
+	public KernelAutotuner(Path cacheFile) throws IOException {
+		this.cacheFile = cacheFile;
+		this.hostKey = computeHostKey();
+		if (cacheFile != null && Files.exists(cacheFile)) {
+			try (InputStream in = Files.newInputStream(cacheFile)) {
+				cache.load(in);
+			}
+		}
+	}
+
+	private static String computeHostKey() {
+		String host;
+		try {
+			host = InetAddress.getLocalHost().getHostName();
+		} catch (IOException e) {
+			host = "unknown";
+		}
+		return (host + "." + System.getProperty("os.arch") + "." + Runtime.getRuntime().availableProcessors() + "."
+				+ System.getProperty("java.vm.version")).replaceAll("[^A-Za-z0-9_.-]", "_");
+	}
+
+	/**
+	 * sets the fastest kernel for its number of inputs on every {@link SigmoidNeuron}
+	 * of the network, and stores new choices in the cache file
+	 *
+	 * @param network a completely configured network
+	 */
+	public void tune(Network network) throws IOException {
+		int benchmarksBefore = numberOfBenchmarks;
+		for (int l = 1; l < network.getNumberOfLayers(); l++) {
+			DotProductKernel kernel = tune(network.getLayer(l - 1).length);
+			for (Node node : network.getLayer(l)) {
+				if (node instanceof SigmoidNeuron)
+					((SigmoidNeuron) node).setKernel(kernel);
+			}
+		}
+		if (cacheFile != null && numberOfBenchmarks != benchmarksBefore)
+			store();
+	}
+
+	/**
+	 * the fastest kernel for vectors of the given length, from the cache or
+	 * benchmarked
+	 *
+	 * @param length
+	 */
+	public DotProductKernel tune(int length) {
+		String key = hostKey + ".dotProduct." + length;
+		String cached = cache.getProperty(key);
+		if (cached != null) {
+			try {
+				return DotProductKernel.valueOf(cached);
+			} catch (IllegalArgumentException e) {
+				// a kernel which no longer exists, benchmark again
+			}
+		}
+		DotProductKernel fastest = benchmark(length);
+		cache.setProperty(key, fastest.name());
+		return fastest;
+	}
+
+	private DotProductKernel benchmark(int length) {
+		numberOfBenchmarks++;
+		SplittableRandom random = new SplittableRandom(length);
+		double[] a = new double[length];
+		double[] b = new double[length];
+		for (int i = 0; i < length; i++) {
+			a[i] = random.nextDouble();
+			b[i] = random.nextDouble();
+		}
+		int repetitions = Math.max(1, OPERATIONS_PER_RUN / Math.max(1, length));
+
+		DotProductKernel[] kernels = DotProductKernel.values();
+		for (DotProductKernel kernel : kernels)
+			run(kernel, a, b, repetitions * WARMUP_RUNS);
+
+		// interleave the kernels and take the best run of each, which is the least disturbed one
+		long[] best = new long[kernels.length];
+		Arrays.fill(best, Long.MAX_VALUE);
+		for (int r = 0; r < TIMED_RUNS; r++) {
+			for (int k = 0; k < kernels.length; k++) {
+				long start = System.nanoTime();
+				run(kernels[k], a, b, repetitions);
+				best[k] = Math.min(best[k], System.nanoTime() - start);
+			}
+		}
+		int fastest = 0;
+		for (int k = 1; k < kernels.length; k++) {
+			if (best[k] < best[fastest])
+				fastest = k;
+		}
+		return kernels[fastest];
+	}
+
+	private void run(DotProductKernel kernel, double[] a, double[] b, int repetitions) {
+		double sum = 0;
+		for (int i = 0; i < repetitions; i++)
+			sum += kernel.dotProduct(a, b);
+		sink = sum;
+	}
+
+	/*
+	 * writes the cache to a temporary file which is then moved in place, such that
+	 * concurrently starting processes never read a partial file
+	 */
+	private void store() throws IOException {
+		Path directory = cacheFile.toAbsolutePath().getParent();
+		if (directory != null)
+			Files.createDirectories(directory);
+		Path temporaryFile = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+		try (OutputStream out = Files.newOutputStream(temporaryFile)) {
+			cache.store(out, "dot product kernels chosen by " + KernelAutotuner.class.getName());
+		}
+		Files.move(temporaryFile, cacheFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * the number of vector lengths benchmarked, i.e. not found in the cache
+	 */
+	public int getNumberOfBenchmarks() {
+		return numberOfBenchmarks;
+	}
+
+}
@@ -0,0 +1,25 @@
+package net.brunel.nodes;
+
+/**
+ * An instance together with its label, e.g. one element of a stream of training
+ * data.
+ */
+public class LabelledInstance {
+
+	private final double[] instance;
+	private final double[] label;
+
+	public LabelledInstance(double[] instance, double[] label) {
+		this.instance = instance;
+		this.label = label;
+	}
+
+	public double[] getInstance() {
+		return instance;
+	}
+
+	public double[] getLabel() {
+		return label;
+	}
+
+}
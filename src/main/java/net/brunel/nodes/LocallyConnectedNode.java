@@ -0,0 +1,52 @@
+package net.brunel.nodes;
+
+/**
+ * A {@link Node} which depends on only a few nodes of the previous layer, such
+ * as the nodes of a {@link ConvolutionLayer} or a {@link PoolingLayer}. The
+ * weights from all other nodes of the previous layer are 0, so the network skips
+ * them during backpropagation.
+ */
+public interface LocallyConnectedNode extends Node {
+
+	/**
+	 * the indices of the nodes of the previous layer this node depends on. The
+	 * returned array must not be modified.
+	 */
+	int[] getInputIndices();
+
+	/**
+	 * like {@link #w(int)} for the i-th of the input indices, without looking up
+	 * the weight of that input
+	 *
+	 * @param i
+	 */
+	double localW(int i);
+
+	/**
+	 * like {@link #updateW(int, double)} for the i-th of the input indices
+	 *
+	 * @param i
+	 * @param gradientValue
+	 */
+	void updateLocalW(int i, double gradientValue);
+
+	/**
+	 * like {@link #applyW(int, double, double, int)} for the i-th of the input
+	 * indices
+	 *
+	 * @param i
+	 * @param gradientValue
+	 * @param learningRate
+	 * @param datasetsize
+	 */
+	void applyLocalW(int i, double gradientValue, double learningRate, int datasetsize);
+
+	/**
+	 * whether the weights from the input indices and the bias are parameters of
+	 * this node in {@link Network#getParameters()}. Nodes which share the
+	 * parameters of another node of their layer, or whose weights are fixed, do
+	 * not own them.
+	 */
+	boolean ownsParameters();
+
+}
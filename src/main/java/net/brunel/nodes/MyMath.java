@@ -1,5 +1,7 @@
 package net.brunel.nodes;
 
+import java.nio.DoubleBuffer;
+
 public class MyMath {
 
 	public MyMath() {
@@ -12,6 +14,57 @@ public class MyMath {
 		return ret;
 	}
 
+	/**
+	 * like {@link #dotProduct(double[], double[])}, unrolled by four with
+	 * independent partial sums
+	 */
+	public static double dotProductUnrolled4(double[] a, double[] b) {
+		double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		int i = 0;
+		for (; i + 3 < a.length; i += 4) {
+			s0 += a[i] * b[i];
+			s1 += a[i + 1] * b[i + 1];
+			s2 += a[i + 2] * b[i + 2];
+			s3 += a[i + 3] * b[i + 3];
+		}
+		for (; i < a.length; i++)
+			s0 += a[i] * b[i];
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	/**
+	 * like {@link #dotProduct(double[], double[])}, unrolled by eight with
+	 * independent partial sums
+	 */
+	public static double dotProductUnrolled8(double[] a, double[] b) {
+		double s0 = 0, s1 = 0, s2 = 0, s3 = 0, s4 = 0, s5 = 0, s6 = 0, s7 = 0;
+		int i = 0;
+		for (; i + 7 < a.length; i += 8) {
+			s0 += a[i] * b[i];
+			s1 += a[i + 1] * b[i + 1];
+			s2 += a[i + 2] * b[i + 2];
+			s3 += a[i + 3] * b[i + 3];
+			s4 += a[i + 4] * b[i + 4];
+			s5 += a[i + 5] * b[i + 5];
+			s6 += a[i + 6] * b[i + 6];
+			s7 += a[i + 7] * b[i + 7];
+		}
+		for (; i < a.length; i++)
+			s0 += a[i] * b[i];
+		return ((s0 + s1) + (s2 + s3)) + ((s4 + s5) + (s6 + s7));
+	}
+
+	/**
+	 * the dot product of a.length values of the buffer, starting at the given 
+	 * offset, and a
+	 */
+	public static double dotProduct(DoubleBuffer buffer, int offset, double[] a) {
+		double ret = 0;
+		for (int i = 0; i < a.length; i++)
+			ret += buffer.get(offset + i) * a[i];
+		return ret;
+	}
+
 	public static double sigmoid(double d) {
 		return (1/(1 + Math.exp(-d)));
 	}
@@ -1,11 +1,22 @@
 package net.brunel.nodes;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Locale;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import net.brunel.nodes.exceptions.InputDimensionMismatchException;
 import net.brunel.nodes.exceptions.InputException;
@@ -41,6 +52,16 @@ public class Network {
 			return 0;
 		}
 
+		@Override
+		public void setW(int k, double value) {
+			//noop
+		}
+
+		@Override
+		public void setB(double value) {
+			//noop
+		}
+
 		@Override
 		public void updateW(int dimension, double gradientValue) {
 			//noop
@@ -51,6 +72,26 @@ public class Network {
 			//noop
 		}
 
+		@Override
+		public double getUpdateW(int dimension) {
+			return 0;
+		}
+
+		@Override
+		public double getUpdateB() {
+			return 0;
+		}
+
+		@Override
+		public void applyW(int dimension, double gradientValue, double learningRate, int datasetsize) {
+			//noop
+		}
+
+		@Override
+		public void applyB(double gradientValue, double learningRate) {
+			//noop
+		}
+
 		@Override
 		public Function getFunction() {
 			return this;
@@ -94,6 +135,33 @@ public class Network {
 
 	}
 
+	/**
+	 * the activations and errors of one forward and backward pass. Every thread
+	 * that trains or evaluates concurrently needs its own instance.
+	 */
+	static class Scratch {
+		/**
+		 * indexed by [layer][node]
+		 */
+		final double[][] activations;
+
+		/**
+		 * indexed by [layer][node]
+		 */
+		final double[][] errors;
+
+		/**
+		 * the error contributions of a layer which feeds into locally connected nodes
+		 */
+		double[] errorContributions = new double[0];
+
+		Scratch(int numberOfLayers, int inputDimension) {
+			activations = new double[numberOfLayers][];
+			activations[0] = new double[inputDimension];
+			errors = new double[numberOfLayers][];
+		}
+	}
+
 	private final int numberOfLayers;
 	private final int numberOfInputs;
 
@@ -103,14 +171,9 @@ public class Network {
 	private double learningRate;
 
 	/**
-	 * indexed by [layer][node]
-	 */
-	private double[][] activations;
-	
-	/**
-	 * indexed by [layer][node]
+	 * the activations and errors of the calling thread for all single threaded operations
 	 */
-	private double[][] errors;
+	private final Scratch scratch;
 	private LossFunction lossFunction;
 	private int learningRateIterationAmount = 100;
 	private double learningRateIterationDecay = 0.995;
@@ -118,6 +181,48 @@ public class Network {
 	private double discretizeThreshold=0.5;
 	private boolean printErrors;
 	private boolean printWeights;
+	private PredictionCache predictionCache;
+
+	/**
+	 * whether the nodes compute their outputs with a configured, not yet committed update
+	 */
+	private boolean updateConfigured;
+	private int snapshotInterval;
+	private int commitsSinceSnapshot;
+	private long snapshotVersion;
+	private volatile WeightSnapshot snapshot;
+	private Checkpointer checkpointer;
+	/**
+	 * the number of completed iterations of the current batch training, which 
+	 * numbers its checkpoints
+	 */
+	private int completedBatchIterations;
+	private TrainingMetrics trainingMetrics;
+	private FeatureStandardizer featureStandardizer;
+	private int evaluationThreads = 1;
+	private ExecutorService evaluationExecutor;
+
+	/**
+	 * the activations of every evaluation thread, indexed by the task number
+	 */
+	private Scratch[] evaluationScratches;
+
+	/**
+	 * whether the weights of a layer are trained, indexed by layer; the input layer is always trainable
+	 */
+	private final boolean[] trainable;
+	/**
+	 * whether a layer contains a {@link BatchNormalizationNode}, whose statistics
+	 * are only updated by committed updates
+	 */
+	private boolean batchNormalized;
+	private int lowestTrainableLayer = 1;
+
+	/**
+	 * the activations of the layer below the lowest trainable layer per instance
+	 * array, or null if they are not cached
+	 */
+	private Map<double[], double[]> frozenActivations;
 
 	private void debug(String string) {
 		if (debugOn)
@@ -129,9 +234,9 @@ public class Network {
 		debugOn=false;
 		computeDotGraph=false;
 		nodesList = new HashMap<>(this.numberOfLayers);
-		activations = new double[this.numberOfLayers][];
-		activations[0] = new double[inputDimension];
-		errors = new double[this.numberOfLayers][];
+		scratch = new Scratch(this.numberOfLayers, inputDimension);
+		trainable = new boolean[this.numberOfLayers];
+		Arrays.fill(trainable, true);
 //		lossFunction = (a,b) -> {return (a-b)*(a-b);};
 		lossFunction = LossFunctionHelper.MSE_LOSS;
 		intelligentLearningRate=false;
@@ -155,6 +260,8 @@ public class Network {
 		if (nodesList.containsKey(Integer.valueOf(layerNumber)))
 				throw new NetworkLayerException("Layer already configured.");
 		nodesList.put(layerNumber, nodes);
+		batchNormalized |= nodes != null && nodes.length > 0 && isLayerOf(nodes, BatchNormalizationNode.class);
+		frozenActivationsChanged();
 	}
 
 	public int getNumberOfInputs() {
@@ -165,34 +272,108 @@ public class Network {
 		return numberOfLayers;
 	}
 
+	/**
+	 * the configured nodes of the given layer; layer 0 is the input layer
+	 * 
+	 * @param layerNumber
+	 */
+	public Node[] getLayer(int layerNumber) {
+		return nodesList.get(Integer.valueOf(layerNumber));
+	}
+
+	/**
+	 * classifies the given instance. The returned array is reused by the next 
+	 * call, use {@link #predict(double[])} to obtain a copy.
+	 * 
+	 * @param input
+	 */
 	public double[] feedForward(double[] input) throws InputException {
+		double[] output = feedForward(input, scratch);
+		
+		if (computeDotGraph) {
+			computeDotGraph();
+		}
+		return output;
+	}
+
+	double[] feedForward(double[] input, Scratch s) throws InputException {
 		if (numberOfInputs!=input.length)
 			throw new InputDimensionMismatchException(numberOfInputs, input.length);
 		
-		debug("layer 0        Output: " + Arrays.toString(input));
-
-		for (int i = 0; i < input.length; i++) {
-			activations[0][i]=input[i];
+		if (debugOn)
+			debug("layer 0        Output: " + Arrays.toString(input));
+		TrainingEvents.PhaseEvent phaseEvent = TrainingEvents.beginPhase(TrainingEvents.FEED_FORWARD, 1, numberOfLayers);
+
+		double[][] activations = s.activations;
+		FeatureStandardizer standardizer = featureStandardizer;
+		if (standardizer == null) {
+			for (int i = 0; i < input.length; i++) {
+				activations[0][i]=input[i];
+			}
+		} else {
+			for (int i = 0; i < input.length; i++) {
+				activations[0][i]=standardizer.standardize(i, input[i]);
+			}
 		}
 				
+		feedForwardFrom(1, s);
+		TrainingEvents.end(phaseEvent);
+		
+		return activations[activations.length-1];		
+	}
+
+	/*
+	 * computes the activations of the given and all later layers from the ones of the layer before
+	 */
+	private void feedForwardFrom(int firstLayer, Scratch s) throws InputException {
+		double[][] activations = s.activations;
 		// iterate through the layer
-		for (int l = 1; l < numberOfLayers; l++) {
-			debug("layer " + (l) + "        Input:  " + Arrays.toString(activations[l-1]));
+		for (int l = firstLayer; l < numberOfLayers; l++) {
+			if (debugOn)
+				debug("layer " + (l) + "        Input:  " + Arrays.toString(activations[l-1]));
 
 			Node[] currentLayer = nodesList.get(Integer.valueOf(l));
+			TrainingEvents.LayerPhaseEvent layerEvent = TrainingEvents.beginLayerPhase(TrainingEvents.FEED_FORWARD, l, currentLayer.length, activations[l-1].length, 1);
 			
-			activations[l] = new double[currentLayer.length];
+			if (activations[l] == null || activations[l].length != currentLayer.length)
+				activations[l] = new double[currentLayer.length];
 			for (int j = 0; j < currentLayer.length; j++) {
 				activations[l][j] = currentLayer[j].computeNodeOutput(activations[l-1]);
 			}
-			debug("layer " + (l) + "        output: " + Arrays.toString(activations[l]));
+			TrainingEvents.end(layerEvent);
+			if (debugOn)
+				debug("layer " + (l) + "        output: " + Arrays.toString(activations[l]));
 		}
-		debug("output layer, output:  " + Arrays.toString(activations[activations.length-1]));
-		
-		if (computeDotGraph) {
-			computeDotGraph();
+		if (debugOn)
+			debug("output layer, output:  " + Arrays.toString(activations[activations.length-1]));
+	}
+
+	/*
+	 * like #feedForward(double[], Scratch), but starts from the cached activations 
+	 * of the frozen layers if configured. The activations of the frozen layers 
+	 * below the cached one are not set then.
+	 */
+	private double[] feedForwardCached(double[] input, Scratch s) throws InputException {
+		Map<double[], double[]> cache = frozenActivations;
+		int cachedLayer = lowestTrainableLayer - 1;
+		if (cache == null || cachedLayer < 1 || cachedLayer >= numberOfLayers - 1)
+			return feedForward(input, s);
+
+		double[] cached = cache.get(input);
+		if (cached == null) {
+			double[] output = feedForward(input, s);
+			cache.put(input, s.activations[cachedLayer].clone());
+			return output;
 		}
-		return activations[activations.length-1];		
+		if (numberOfInputs!=input.length)
+			throw new InputDimensionMismatchException(numberOfInputs, input.length);
+		TrainingEvents.PhaseEvent phaseEvent = TrainingEvents.beginPhase(TrainingEvents.FEED_FORWARD, 1, numberOfLayers);
+		if (s.activations[cachedLayer] == null || s.activations[cachedLayer].length != cached.length)
+			s.activations[cachedLayer] = new double[cached.length];
+		System.arraycopy(cached, 0, s.activations[cachedLayer], 0, cached.length);
+		feedForwardFrom(cachedLayer + 1, s);
+		TrainingEvents.end(phaseEvent);
+		return s.activations[numberOfLayers - 1];
 	}
 
 	private void computeDotGraph() {
@@ -200,40 +381,14 @@ public class Network {
 	}
 	
 	private void computeDotGraph(PrintStream out) {
-		double[][] temporaryValues=activations;
-		StringBuffer sb = new StringBuffer();
-		sb.append("digraph ANN {");
-		sb.append("graph [splines=true overlap=false labelangle=100]; ");
-		//sb.append("node[shape=ellipse];");
-		
-		// configure nodes
-		for(int l = 0; l < temporaryValues.length; l++) {
-			int numberOfNodesInCurrentLayer = temporaryValues[l].length;
-			for (int j = 0; j < numberOfNodesInCurrentLayer; j++) {
-				double bias=nodesList.get(l)[j].b();
-				sb.append(computeNodeName(l, j) + " [label=\"bias=" + bias + ", output=" + temporaryValues[l][j] + "\"];");
-			}
-		}
-
-		// configure edges
-		for (int l = 1; l < temporaryValues.length; l++) {
-			for (int c = 0; c < temporaryValues[l-1].length; c++) {
-				for (int n = 0; n < temporaryValues[l].length; n++) {
-					Node[] layerNodes = nodesList.get(Integer.valueOf(l));
-					String edgeLabel = String.format(Locale.ENGLISH, "%.2f", layerNodes[n].getWeightFromInput(c));
-					sb.append(computeNodeName(l-1, c) + "->" + computeNodeName(l, n) + " [label=\"" + edgeLabel + "\"];");
-				}
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out));
+		try {
+			new DotGraphExporter(this).export(writer, scratch.activations);
+			writer.write(System.lineSeparator());
+			writer.flush();
+		} catch (IOException e) {
+			e.printStackTrace();
 		}
-		
-		sb.append("");
-		sb.append("");			}
-		sb.append("}");
-		
-		out.println(sb.toString());		
-	}
-
-	private String computeNodeName(int layer, int nodeIdx) {
-		return "nl" + layer + "n" + nodeIdx;
 	}
 
 	public boolean isDebugOn() {
@@ -251,6 +406,13 @@ public class Network {
 	}
 
 
+	/**
+	 * dump the graph with the activations of every {@link #feedForward(double[])} 
+	 * to System.out. For large networks, use a {@link DotGraphExporter} on demand
+	 * instead.
+	 * 
+	 * @param computeDotGraph
+	 */
 	public void setComputeDotGraph(boolean computeDotGraph) {
 		this.computeDotGraph = computeDotGraph;
 	}
@@ -262,70 +424,170 @@ public class Network {
 
 	
 	public void train(double[] instanceData, double[] y) throws InputException {
+		long startNanos = trainingMetrics != null ? System.nanoTime() : 0;
 		prepareUpdate();
 		
-		double[] classificationResult = feedForward(instanceData);
-		double[] classificationError = new double[y.length];
-		for (int i = 0; i < y.length; i++)
-			classificationError[i] = classificationResult[i] - y[i];
-		
-		debug("Initial classification:       " + Arrays.toString(classificationResult));
-		debug("Initial classification error: " + Arrays.toString(classificationError));
+		double[] classificationResult = feedForwardTraining(instanceData, true);
+		if (debugOn) {
+			double[] classificationError = new double[y.length];
+			for (int i = 0; i < y.length; i++)
+				classificationError[i] = classificationResult[i] - y[i];
+			
+			debug("Initial classification:       " + Arrays.toString(classificationResult));
+			debug("Initial classification error: " + Arrays.toString(classificationError));
+		}
 		
-		computeErrorsOfLastLayer(instanceData, y);
+		computeErrorsOfLastLayer(instanceData, y, scratch);
 
-		backpropagateError();
+		backpropagateError(scratch);
 		
 		printErrors();
 		
-		updateWeights();
+		updateWeights(scratch);
 		
 		commitUpdate(learningRate, 1);
 		
 		printWeights();
+
+		if (trainingMetrics != null)
+			trainingMetrics.recordSamples(1, System.nanoTime() - startNanos, learningRate);
 	}
 	
+	/*
+	 * per-sample training like #train(double[], double[]), but the gradient step 
+	 * is written directly into the weights, without preparing and committing an 
+	 * update of every node. Returns the prediction of the forward pass before 
+	 * the step, which is reused by the next call.
+	 */
+	double[] trainIncrementally(double[] instanceData, double[] y) throws InputException {
+		checkNotBatchNormalized();
+		long startNanos = trainingMetrics != null ? System.nanoTime() : 0;
+		double[] prediction = feedForwardTraining(instanceData, false);
+		computeErrorsOfLastLayer(instanceData, y, scratch);
+		backpropagateError(scratch);
+		applyWeights(scratch, learningRate);
+		weightsChanged();
+		if (snapshotInterval > 0 && ++commitsSinceSnapshot >= snapshotInterval)
+			publishSnapshot();
+
+		if (trainingMetrics != null)
+			trainingMetrics.recordSamples(1, System.nanoTime() - startNanos, learningRate);
+		return prediction;
+	}
+
+	/*
+	 * the forward pass of a training on the default scratch, from the cached 
+	 * activations of the frozen layers only if the input is an array which the 
+	 * caller keeps unchanged
+	 */
+	private double[] feedForwardTraining(double[] input, boolean cacheFrozenActivations) throws InputException {
+		if (computeDotGraph)
+			return feedForward(input);
+		return cacheFrozenActivations ? feedForwardCached(input, scratch) : feedForward(input, scratch);
+	}
+
 	/*
 	 * updates the weights in the overall network based on the individual error contributions
 	 * which are previously computed.
 	 */
-	private void updateWeights() {
-		for (int l = numberOfLayers - 1; l > 0 /* exclude input layer */; l--) {
+	private void updateWeights(Scratch s) {
+		double[][] activations = s.activations;
+		double[][] errors = s.errors;
+		TrainingEvents.PhaseEvent phaseEvent = TrainingEvents.beginPhase(TrainingEvents.UPDATE_WEIGHTS, 1, numberOfLayers);
+		for (int l = numberOfLayers - 1; l >= lowestTrainableLayer /* exclude input layer */; l--) {
+			if (!trainable[l])
+				continue;
 			Node[] currentNodes = nodesList.get(Integer.valueOf(l));
 			Node[] previousNodes = nodesList.get(Integer.valueOf(l - 1));
+			TrainingEvents.LayerPhaseEvent layerEvent = TrainingEvents.beginLayerPhase(TrainingEvents.UPDATE_WEIGHTS, l, currentNodes.length, previousNodes.length, 1);
 
 			for (int j = 0; j < currentNodes.length; j++) {
 
 				double delta_b_j_l = errors[l][j];
-				debug("Layer " + l + ", Node " + j + ", delta_b_j_l=" + delta_b_j_l);
+				if (debugOn)
+					debug("Layer " + l + ", Node " + j + ", delta_b_j_l=" + delta_b_j_l);
 
 				currentNodes[j].updateB( delta_b_j_l);
 
+				if (currentNodes[j] instanceof LocallyConnectedNode) {
+					LocallyConnectedNode node = (LocallyConnectedNode) currentNodes[j];
+					int[] inputs = node.getInputIndices();
+					for (int i = 0; i < inputs.length; i++)
+						node.updateLocalW(i, activations[l - 1][inputs[i]] * errors[l][j]);
+					continue;
+				}
 				for (int k = 0; k < previousNodes.length; k++) {
 					double delta_w_j_k_l = activations[l - 1][k] * errors[l][j];
-					debug("Layer " + l + ", Node " + k + ", delta_w_j_k_l=delta_w_" + j + "_" + k + "_" + l + "=" + delta_w_j_k_l);
+					if (debugOn)
+						debug("Layer " + l + ", Node " + k + ", delta_w_j_k_l=delta_w_" + j + "_" + k + "_" + l + "=" + delta_w_j_k_l);
 					currentNodes[j].updateW(k, delta_w_j_k_l);
 				}
 
 			}
+			TrainingEvents.end(layerEvent);
 		}
+		TrainingEvents.end(phaseEvent);
 	}
 	
-	private void backpropagateError() throws InputException {
+	/*
+	 * like #updateWeights(Scratch), but writes the gradient step directly into the 
+	 * weights of the nodes instead of accumulating it for a later commit.
+	 */
+	private void applyWeights(Scratch s, double myLearningRate) {
+		double[][] activations = s.activations;
+		double[][] errors = s.errors;
+		TrainingEvents.PhaseEvent phaseEvent = TrainingEvents.beginPhase(TrainingEvents.APPLY_WEIGHTS, 1, numberOfLayers);
+		for (int l = numberOfLayers - 1; l >= lowestTrainableLayer /* exclude input layer */; l--) {
+			if (!trainable[l])
+				continue;
+			Node[] currentNodes = nodesList.get(Integer.valueOf(l));
+			Node[] previousNodes = nodesList.get(Integer.valueOf(l - 1));
+			TrainingEvents.LayerPhaseEvent layerEvent = TrainingEvents.beginLayerPhase(TrainingEvents.APPLY_WEIGHTS, l, currentNodes.length, previousNodes.length, 1);
+
+			for (int j = 0; j < currentNodes.length; j++) {
+				currentNodes[j].applyB(errors[l][j], myLearningRate);
+
+				if (currentNodes[j] instanceof LocallyConnectedNode) {
+					LocallyConnectedNode node = (LocallyConnectedNode) currentNodes[j];
+					int[] inputs = node.getInputIndices();
+					for (int i = 0; i < inputs.length; i++)
+						node.applyLocalW(i, activations[l - 1][inputs[i]] * errors[l][j], myLearningRate, 1);
+					continue;
+				}
+				for (int k = 0; k < previousNodes.length; k++)
+					currentNodes[j].applyW(k, activations[l - 1][k] * errors[l][j], myLearningRate, 1);
+			}
+			TrainingEvents.end(layerEvent);
+		}
+		TrainingEvents.end(phaseEvent);
+	}
+
+	private void backpropagateError(Scratch s) throws InputException {
+		double[][] activations = s.activations;
+		double[][] errors = s.errors;
 		
-		// propagate errors backward
+		TrainingEvents.PhaseEvent phaseEvent = TrainingEvents.beginPhase(TrainingEvents.BACKPROPAGATE_ERROR, 1, numberOfLayers);
+		
+		// propagate errors backward, down to the lowest trainable layer
 		int currentLayerIdx = numberOfLayers-1;
 		int previousLayerIdx = numberOfLayers-2;
 		
-		while (currentLayerIdx>1)
+		while (currentLayerIdx>Math.max(1, lowestTrainableLayer))
 		{
 			currentLayerIdx=previousLayerIdx;
 			previousLayerIdx = currentLayerIdx-1;
 			int nextLayerIdx = currentLayerIdx+1;
 			
 			Node[] currentLayer = nodesList.get(Integer.valueOf(currentLayerIdx));
+			TrainingEvents.LayerPhaseEvent layerEvent = TrainingEvents.beginLayerPhase(TrainingEvents.BACKPROPAGATE_ERROR, currentLayerIdx, currentLayer.length, 
+					nodesList.get(Integer.valueOf(previousLayerIdx)).length, 1);
 				
-			initErrorArrayAtIndex(currentLayerIdx);
+			initErrorArrayAtIndex(s, currentLayerIdx);
+
+			Node[] nextLayersNodes = nodesList.get(Integer.valueOf(nextLayerIdx));
+			boolean locallyConnected = isLayerOf(nextLayersNodes, LocallyConnectedNode.class);
+			if (locallyConnected)
+				computeLocalErrorContributions(s, currentLayer.length, nextLayersNodes, errors[nextLayerIdx]);
 	
 			// for each node in the current layer ...
 			for (int j = 0; j < currentLayer.length; j++) {
@@ -334,22 +596,23 @@ public class Network {
 				
 				// right part
 				Node currentNode = currentLayer[j];
-				double z_l_L = currentNode.computeNodeOutput(activations[previousLayerIdx]);
 						
 				// left part
 				double errorContribution = 0;
-				Node[] nextLayersNodes = nodesList.get(Integer.valueOf(nextLayerIdx));
-				
-				for (int n = 0; n < nextLayersNodes.length; n++) {
-					// the impact of this nodes output (the weight from this node to node n in the next layer
-					double w = nextLayersNodes[n].w(j);
-					// the error at node n in the next layer
-					double e = errors[nextLayerIdx][n];
-					/*
-					 * the errorContribution of this node is small if either our weight for the next layer is small,
-					 * or if the overall error at the successive layer is small. 
-					 */
-					errorContribution += w*e;
+				if (locallyConnected) {
+					errorContribution = s.errorContributions[j];
+				} else {
+					for (int n = 0; n < nextLayersNodes.length; n++) {
+						// the impact of this nodes output (the weight from this node to node n in the next layer
+						double w = nextLayersNodes[n].w(j);
+						// the error at node n in the next layer
+						double e = errors[nextLayerIdx][n];
+						/*
+						 * the errorContribution of this node is small if either our weight for the next layer is small,
+						 * or if the overall error at the successive layer is small. 
+						 */
+						errorContribution += w*e;
+					}
 				}
 				/*
 				 * we set "our" error to be the derivative of the current nodes activation times 
@@ -367,20 +630,43 @@ public class Network {
 				 */
 				errors[currentLayerIdx][j] = currentNode.computeDerivativeValue(activations[previousLayerIdx])*errorContribution;
 				
-				debug("Layer " + currentLayerIdx + ", Node " + j + ", z_l_L=" + z_l_L + " errorContribution=" + errorContribution );
+				if (debugOn)
+					debug("Layer " + currentLayerIdx + ", Node " + j + ", a_l_L=" + activations[currentLayerIdx][j] + " errorContribution=" + errorContribution );
 			}
+			TrainingEvents.end(layerEvent);
+		}
+		TrainingEvents.end(phaseEvent);
+	}
+
+	/*
+	 * the error contributions of all nodes of a layer to the next, locally connected
+	 * layer, which are computed by scattering the error of each node of the next 
+	 * layer to its inputs only, instead of gathering over all nodes of the next layer
+	 */
+	private static void computeLocalErrorContributions(Scratch s, int numberOfNodes, Node[] nextLayersNodes, double[] nextErrors) {
+		if (s.errorContributions.length < numberOfNodes)
+			s.errorContributions = new double[numberOfNodes];
+		double[] errorContributions = s.errorContributions;
+		Arrays.fill(errorContributions, 0, numberOfNodes, 0);
+		for (int n = 0; n < nextLayersNodes.length; n++) {
+			double e = nextErrors[n];
+			if (e == 0)
+				continue;
+			LocallyConnectedNode node = (LocallyConnectedNode) nextLayersNodes[n];
+			int[] inputs = node.getInputIndices();
+			for (int i = 0; i < inputs.length; i++)
+				errorContributions[inputs[i]] += node.localW(i) * e;
 		}
 	}
 
-	private void initErrorArrayAtIndex(int currentLayerIdx) {
+	private void initErrorArrayAtIndex(Scratch s, int currentLayerIdx) {
+		double[][] errors = s.errors;
 		Node[] currentNodes = nodesList.get(Integer.valueOf(currentLayerIdx));
 
 		if (errors[currentLayerIdx] != null) {
 			if (errors[currentLayerIdx].length == currentNodes.length) {
 				// all fine.
 			} else {
-				errors[currentLayerIdx] = null;
-				System.gc();
 				errors[currentLayerIdx] = new double[currentNodes.length];
 			}
 		} else {
@@ -388,42 +674,55 @@ public class Network {
 		}
 	}
 	
-	private void computeErrorsOfLastLayer(double[] instance, double[] y) throws InputException {
+	private void computeErrorsOfLastLayer(double[] instance, double[] y, Scratch s) throws InputException {
+		double[][] activations = s.activations;
 		int currentLayerIdx = numberOfLayers-1;
 		int previousLayerIdx = numberOfLayers-2;
 		Node[] currentLayer = nodesList.get(Integer.valueOf(currentLayerIdx));
+		TrainingEvents.PhaseEvent phaseEvent = TrainingEvents.beginPhase(TrainingEvents.COMPUTE_ERRORS_OF_LAST_LAYER, 1, numberOfLayers);
 		
-		initErrorArrayAtIndex(currentLayerIdx);
+		initErrorArrayAtIndex(s, currentLayerIdx);
 
 		for (int j = 0; j < currentLayer.length; j++) {
 
 			Node currentNode = currentLayer[j];
 			
 			double sigmoidPrime = currentNode.computeDerivativeValue(activations[previousLayerIdx]);
-			double a_j_L =  currentNode.computeNodeOutput(activations[previousLayerIdx]);
+			double a_j_L =  activations[currentLayerIdx][j];
 			double deltaC_vs_deltaA_j_L = lossFunction.computeDerivative(j, instance, y[j], a_j_L);
 			double error = deltaC_vs_deltaA_j_L*sigmoidPrime;
-			errors[currentLayerIdx][j] = error;
+			s.errors[currentLayerIdx][j] = error;
 		}
+		TrainingEvents.end(phaseEvent);
 	}
 	
 	public void trainIterationBatch(double[][] instances, double[][] labels) throws InputException, IterationException {
+		trainIterationBatch(instances, labels, true);
+	}
+
+	private void trainIterationBatch(double[][] instances, double[][] labels, boolean cacheFrozenActivations) throws InputException, IterationException {
+		long startNanos = 0;
+		long startAllocatedBytes = 0;
+		if (trainingMetrics != null) {
+			startNanos = System.nanoTime();
+			startAllocatedBytes = TrainingMetrics.currentThreadAllocatedBytes();
+		}
 		prepareUpdate();
 		double[] iterationErrors = new double[labels[0].length];
 		for (int i = 0; i < instances.length; i++) {
-			double[] predictedLabelDistribution = feedForward(instances[i]);
+			double[] predictedLabelDistribution = feedForwardTraining(instances[i], cacheFrozenActivations);
 //			System.out.println("trainBatch, Instance " + i + " predicted label distribution: " + Arrays.toString(predictedLabelDistribution) + " actual label distribution " + Arrays.toString(labels[i]));
 		
 			for (int j = 0; j < labels[i].length; j++)
 				iterationErrors[j] += (labels[i][j]-predictedLabelDistribution[j])*(labels[i][j]-predictedLabelDistribution[j]);
 			
-			computeErrorsOfLastLayer(instances[i], labels[i]);
+			computeErrorsOfLastLayer(instances[i], labels[i], scratch);
 			
-			backpropagateError();
+			backpropagateError(scratch);
 
 			printErrors();
 			
-			updateWeights();
+			updateWeights(scratch);
 		}
 		
 		printWeights();
@@ -475,9 +774,143 @@ public class Network {
 //			resetUpdate();
 //			throw new IterationException("Cannot reduce error any further!");
 //		} 
+		double[] gradientNorms = trainingMetrics != null ? computeGradientNorms(instances.length) : null;
+
 		commitUpdate(bestLearningRate, instances.length);
+
+		if (trainingMetrics != null) {
+			long allocatedBytes = TrainingMetrics.currentThreadAllocatedBytes();
+			trainingMetrics.recordIteration(instances.length, System.nanoTime() - startNanos, learningRate, minError, gradientNorms,
+					computeWeightNorms(), startAllocatedBytes < 0 ? -1 : allocatedBytes - startAllocatedBytes);
+		}
+	}
+
+	/*
+	 * the L2 norm of the pending updates of each layer, divided by the dataset size
+	 */
+	private double[] computeGradientNorms(int datasetsize) {
+		double[] norms = new double[numberOfLayers - 1];
+		for (int l = 1; l < numberOfLayers /* exclude input layer */; l++) {
+			if (!trainable[l])
+				continue;
+			Node[] currentNodes = nodesList.get(Integer.valueOf(l));
+			int numberOfPreviousNodes = nodesList.get(Integer.valueOf(l - 1)).length;
+			double sumOfSquares = 0;
+			for (Node node : currentNodes) {
+				int numberOfParameters = getNumberOfParameters(node, numberOfPreviousNodes);
+				if (numberOfParameters == 0)
+					continue;
+				for (int i = 0; i < numberOfParameters - 1; i++) {
+					double update = node.getUpdateW(parameterInput(node, i));
+					sumOfSquares += update * update;
+				}
+				sumOfSquares += node.getUpdateB() * node.getUpdateB();
+			}
+			norms[l - 1] = Math.sqrt(sumOfSquares) / datasetsize;
+		}
+		return norms;
+	}
+
+	/*
+	 * the L2 norm of the weights and biases of each layer
+	 */
+	private double[] computeWeightNorms() {
+		double[] norms = new double[numberOfLayers - 1];
+		for (int l = 1; l < numberOfLayers /* exclude input layer */; l++) {
+			Node[] currentNodes = nodesList.get(Integer.valueOf(l));
+			int numberOfPreviousNodes = nodesList.get(Integer.valueOf(l - 1)).length;
+			double sumOfSquares = 0;
+			for (Node node : currentNodes) {
+				int numberOfParameters = getNumberOfParameters(node, numberOfPreviousNodes);
+				if (numberOfParameters == 0)
+					continue;
+				for (int i = 0; i < numberOfParameters - 1; i++) {
+					double weight = node.getWeightFromInput(parameterInput(node, i));
+					sumOfSquares += weight * weight;
+				}
+				sumOfSquares += node.b() * node.b();
+			}
+			norms[l - 1] = Math.sqrt(sumOfSquares);
+		}
+		return norms;
 	}
 	
+	/**
+	 * Trains the network with per-sample stochastic gradient descent on several
+	 * threads at once, without any locking (Hogwild!).
+	 * <p>
+	 * Every thread works on its own share of the instances (instance i is
+	 * processed by thread i % numThreads) with its own activations and errors,
+	 * and writes its gradient steps directly into the weights shared by all
+	 * threads. The consistency model is deliberately weak:
+	 * <ul>
+	 * <li>a thread may read weights that are partially updated by other threads,
+	 * i.e. a forward pass may see some, all or none of the concurrent steps;</li>
+	 * <li>concurrent steps on the same weight may get lost, as the read-modify-write
+	 * of a weight is not atomic;</li>
+	 * <li>all steps are visible once this method returns.</li>
+	 * </ul>
+	 * This converges well if the gradients are sparse, i.e. if concurrent samples
+	 * rarely touch the same weights, and degrades towards an approximation of
+	 * sequential {@link #train(double[], double[])} otherwise. Pending updates of
+	 * {@link #trainIterationBatch(double[][], double[][])} are neither used nor
+	 * touched. The network must not be used otherwise while this method runs.
+	 * <p>
+	 * Max pooling nodes remember their last input, so networks with max pooling 
+	 * layers are trained on a single thread. Networks with batch normalization are
+	 * rejected, as the steps never update its statistics, see 
+	 * {@link BatchNormalizationNode}.
+	 * 
+	 * @param instances the instances
+	 * @param labels the labels of the instances
+	 * @param numEpochs the number of passes over the instances
+	 * @param numThreads the number of concurrent threads
+	 */
+	public void trainAsynchronous(final double[][] instances, final double[][] labels, final int numEpochs, final int numThreads) throws InputException, InterruptedException {
+		checkNotBatchNormalized();
+		// max pooling nodes cannot be run concurrently
+		final int threads = hasMaxPooling() ? 1 : numThreads;
+		final double myLearningRate = learningRate;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Void>> futures = new ArrayList<>(threads);
+			for (int t = 0; t < threads; t++) {
+				final int thread = t;
+				futures.add(executor.submit(() -> {
+					Scratch s = new Scratch(numberOfLayers, numberOfInputs);
+					for (int epoch = 0; epoch < numEpochs; epoch++) {
+						for (int i = thread; i < instances.length; i += threads) {
+							feedForwardCached(instances[i], s);
+							computeErrorsOfLastLayer(instances[i], labels[i], s);
+							backpropagateError(s);
+							applyWeights(s, myLearningRate);
+						}
+					}
+					return null;
+				}));
+			}
+			for (Future<Void> future : futures)
+				waitFor(future);
+		} finally {
+			executor.shutdownNow();
+			weightsChanged();
+			if (snapshotInterval > 0)
+				publishSnapshot();
+		}
+	}
+
+	private static <T> T waitFor(Future<T> future) throws InputException, InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof InputException)
+				throw (InputException) e.getCause();
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
 	public double computeError(double[][] instances, double[][] labels) throws InputException {
 
 		double[][] predictions = makePredictions(instances);
@@ -489,13 +922,185 @@ public class Network {
 		return iterationErrorSum;
 	}
 	
+	/**
+	 * classifies the given instance like {@link #feedForward(double[])}, but 
+	 * answers from the prediction cache if one is configured. The returned array
+	 * belongs to the caller.
+	 * 
+	 * @param input
+	 */
+	public double[] predict(double[] input) throws InputException {
+		if (predictionCache == null)
+			return feedForward(input).clone();
+
+		double[] prediction = predictionCache.get(input);
+		if (prediction == null) {
+			prediction = feedForward(input);
+			predictionCache.put(input, prediction);
+		}
+		return prediction.clone();
+	}
+
+	/**
+	 * classifies all instances, in parallel if configured by 
+	 * {@link #setEvaluationThreads(int)}
+	 * 
+	 * @param instances
+	 */
 	public double[][] makePredictions(double[][] instances) throws InputException {
 		double[][] predictions = new double[instances.length][];
-		for (int i = 0; i < instances.length; i++) {
-			predictions[i] = feedForward(instances[i]);
-		}
+		evaluateRanges(instances.length, (task, from, to, s) -> {
+			for (int i = from; i < to; i++)
+				predictions[i] = evaluate(instances[i], s).clone();
+		});
+		return predictions;
+	}
+
+	/**
+	 * classifies all instances like {@link #makePredictions(double[][])}, but
+	 * layer by layer: every node computes its outputs for all instances of a range
+	 * before the next node, see {@link Node#computeNodeOutputs(double[][], double[][], int)}.
+	 * A {@link SigmoidNeuron} loads every weight once for four instances. The 
+	 * prediction cache is not used.
+	 * 
+	 * @param instances
+	 */
+	public double[][] makeBatchPredictions(double[][] instances) throws InputException {
+		for (double[] instance : instances)
+			if (instance.length != numberOfInputs)
+				throw new InputDimensionMismatchException(numberOfInputs, instance.length);
+		double[][] predictions = new double[instances.length][];
+		evaluateRanges(instances.length, (task, from, to, s) -> feedForwardBatch(instances, from, to, predictions));
 		return predictions;
 	}
+
+	/*
+	 * the layer-wise forward pass of the instances from (inclusive) to to 
+	 * (exclusive) of #makeBatchPredictions(double[][]), whose activations are 
+	 * kept as one matrix of instances x nodes per layer
+	 */
+	private void feedForwardBatch(double[][] instances, int from, int to, double[][] predictions) throws InputException {
+		if (from == to)
+			return;
+		TrainingEvents.PhaseEvent phaseEvent = TrainingEvents.beginPhase(TrainingEvents.FEED_FORWARD, to - from, numberOfLayers);
+		FeatureStandardizer standardizer = featureStandardizer;
+		double[][] activations = new double[to - from][];
+		for (int i = from; i < to; i++)
+			activations[i - from] = standardizer == null ? instances[i] : standardizer.standardize(instances[i]);
+		for (int l = 1; l < numberOfLayers; l++) {
+			Node[] currentLayer = nodesList.get(Integer.valueOf(l));
+			TrainingEvents.LayerPhaseEvent layerEvent = TrainingEvents.beginLayerPhase(TrainingEvents.FEED_FORWARD, l, currentLayer.length,
+					activations[0].length, to - from);
+			double[][] nextActivations = new double[to - from][currentLayer.length];
+			for (int j = 0; j < currentLayer.length; j++) {
+				currentLayer[j].computeNodeOutputs(activations, nextActivations, j);
+			}
+			TrainingEvents.end(layerEvent);
+			activations = nextActivations;
+		}
+		System.arraycopy(activations, 0, predictions, from, to - from);
+		TrainingEvents.end(phaseEvent);
+	}
+
+	/**
+	 * classifies all instances, in parallel if configured by 
+	 * {@link #setEvaluationThreads(int)}, and collects the metrics of the 
+	 * predictions without keeping them
+	 * 
+	 * @param instances
+	 * @param labels
+	 * @param numberOfBins the resolution of the ROC curves, see {@link ClassificationEvaluator}
+	 */
+	public ClassificationEvaluator evaluateClassification(double[][] instances, double[][] labels, int numberOfBins) throws InputException {
+		if (instances.length != labels.length)
+			throw new InputDimensionMismatchException(instances.length, labels.length);
+		int numberOfLabels = nodesList.get(Integer.valueOf(numberOfLayers - 1)).length;
+		ClassificationEvaluator[] evaluators = new ClassificationEvaluator[Math.max(1, evaluationThreads)];
+		for (int t = 0; t < evaluators.length; t++)
+			evaluators[t] = new ClassificationEvaluator(numberOfLabels, discretizeThreshold, numberOfBins);
+		evaluateRanges(instances.length, (task, from, to, s) -> {
+			for (int i = from; i < to; i++)
+				evaluators[task].add(evaluate(instances[i], s), labels[i]);
+		});
+		// merged in the order of the ranges
+		for (int t = 1; t < evaluators.length; t++)
+			evaluators[0].merge(evaluators[t]);
+		return evaluators[0];
+	}
+
+	/*
+	 * classifies an instance of a bulk evaluation, from the prediction cache if
+	 * configured. The returned array must not be modified.
+	 */
+	private double[] evaluate(double[] input, Scratch s) throws InputException {
+		// predictions with a tentatively configured update are invalidated right away
+		PredictionCache cache = updateConfigured ? null : predictionCache;
+		if (cache != null) {
+			double[] prediction = cache.get(input);
+			if (prediction != null)
+				return prediction;
+		}
+		double[] output = s == scratch && computeDotGraph ? feedForward(input) : feedForward(input, s);
+		if (cache != null)
+			cache.put(input, output);
+		return output;
+	}
+
+	private interface RangeEvaluation {
+		void evaluate(int task, int from, int to, Scratch s) throws InputException;
+	}
+
+	/*
+	 * splits the instances into contiguous ranges, every task with its own 
+	 * activations against the shared weights, or evaluates them on the calling thread
+	 */
+	private void evaluateRanges(int numberOfInstances, RangeEvaluation evaluation) throws InputException {
+		if (evaluationExecutor == null || numberOfInstances < 2 * evaluationThreads || hasMaxPooling()) {
+			evaluation.evaluate(0, 0, numberOfInstances, scratch);
+			return;
+		}
+
+		List<Future<Void>> futures = new ArrayList<>(evaluationThreads);
+		for (int t = 0; t < evaluationThreads; t++) {
+			final int task = t;
+			final int from = (int) ((long) numberOfInstances * t / evaluationThreads);
+			final int to = (int) ((long) numberOfInstances * (t + 1) / evaluationThreads);
+			final Scratch s = evaluationScratches[t];
+			futures.add(evaluationExecutor.submit(() -> {
+				evaluation.evaluate(task, from, to, s);
+				return null;
+			}));
+		}
+		try {
+			for (Future<Void> future : futures)
+				waitFor(future);
+		} catch (InterruptedException e) {
+			for (Future<Void> future : futures)
+				future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while evaluating", e);
+		}
+	}
+
+	/*
+	 * max pooling nodes remember their last input, so they cannot be evaluated concurrently
+	 */
+	/*
+	 * rejects the trainings which write their steps directly into the weights,
+	 * which would never update the statistics of batch normalization nodes
+	 */
+	private void checkNotBatchNormalized() throws NetworkLayerException {
+		if (batchNormalized)
+			throw new NetworkLayerException("Batch normalization is only supported by trainings which commit their updates");
+	}
+
+	private boolean hasMaxPooling() {
+		for (int l = 1; l < numberOfLayers; l++)
+			for (Node node : nodesList.get(Integer.valueOf(l)))
+				if (node instanceof PoolingLayer.MaxPoolingNode)
+					return true;
+		return false;
+	}
 	
 	private void printWeights() {
 		if (!printWeights) return;
@@ -520,36 +1125,327 @@ public class Network {
 		
 		System.out.print("Printing errors ");
 
-		for (double[] error:errors)
+		for (double[] error:scratch.errors)
 			System.out.print(Arrays.toString(error) + "--");
 		
 		System.out.println();
 	}
+	/*
+	 * the node loops below iterate over the layer indices instead of nodesList.values()
+	 * to avoid allocating an iterator for every sample.
+	 */
 	private void prepareUpdate() {
-		for (Node[] n1 : nodesList.values())
-			for (Node n : n1)
-				n.prepareUpdate();
+		for (int l = 0; l < numberOfLayers; l++)
+			if (trainable[l])
+				for (Node n : nodesList.get(Integer.valueOf(l)))
+					n.prepareUpdate();
 	}
 
 	private void configureUpdate(double myLearningRate, int datasetsize) {
-		for (Node[] n1 : nodesList.values())
-			for (Node n : n1)
-				n.configureUpdate(myLearningRate, datasetsize);
+		for (int l = 0; l < numberOfLayers; l++)
+			if (trainable[l])
+				for (Node n : nodesList.get(Integer.valueOf(l)))
+					n.configureUpdate(myLearningRate, datasetsize);
+		updateConfigured = true;
+		weightsChanged();
 	}
 
 	private void commitUpdate(double myLearningRate, int datasetsize) {
-		for (Node[] n1 : nodesList.values())
-			for (Node n : n1)
+		TrainingEvents.PhaseEvent phaseEvent = TrainingEvents.beginPhase(TrainingEvents.COMMIT_UPDATE, datasetsize, numberOfLayers);
+		for (int l = 0; l < numberOfLayers; l++) {
+			if (!trainable[l])
+				continue;
+			Node[] currentNodes = nodesList.get(Integer.valueOf(l));
+			TrainingEvents.LayerPhaseEvent layerEvent = TrainingEvents.beginLayerPhase(TrainingEvents.COMMIT_UPDATE, l, currentNodes.length, 
+					l == 0 ? 0 : nodesList.get(Integer.valueOf(l - 1)).length, datasetsize);
+			for (Node n : currentNodes)
 				n.commitUpdate(myLearningRate, datasetsize);
+			TrainingEvents.end(layerEvent);
+		}
+		TrainingEvents.end(phaseEvent);
+		updateConfigured = false;
+		weightsChanged();
+		if (snapshotInterval > 0 && ++commitsSinceSnapshot >= snapshotInterval)
+			publishSnapshot();
 	}
 
 	
 	private void resetUpdate() {
-		for (Node[] n1 : nodesList.values())
-			for (Node n : n1)
-				n.resetUpdate();
+		for (int l = 0; l < numberOfLayers; l++)
+			if (trainable[l])
+				for (Node n : nodesList.get(Integer.valueOf(l)))
+					n.resetUpdate();
+		updateConfigured = false;
+		weightsChanged();
+	}
+
+	/*
+	 * to be called whenever the activations of the frozen layers may change
+	 */
+	private void frozenActivationsChanged() {
+		if (frozenActivations != null)
+			frozenActivations.clear();
+	}
+
+	/*
+	 * to be called whenever the effective weights of any node change
+	 */
+	private void weightsChanged() {
+		if (predictionCache != null)
+			predictionCache.invalidate();
 	}
 	
+	/*
+	 * the number of weights and biases of a node in #getParameters(): all weights 
+	 * and the bias, for a locally connected node only the weights from its inputs 
+	 * and the bias if it owns them, otherwise none
+	 */
+	private static int getNumberOfParameters(Node node, int numberOfPreviousNodes) {
+		if (!(node instanceof LocallyConnectedNode))
+			return numberOfPreviousNodes + 1;
+		LocallyConnectedNode locallyConnectedNode = (LocallyConnectedNode) node;
+		return locallyConnectedNode.ownsParameters() ? locallyConnectedNode.getInputIndices().length + 1 : 0;
+	}
+
+	/*
+	 * the node of the previous layer of the i-th weight of a node in #getParameters()
+	 */
+	private static int parameterInput(Node node, int i) {
+		return node instanceof LocallyConnectedNode ? ((LocallyConnectedNode) node).getInputIndices()[i] : i;
+	}
+
+	/**
+	 * the number of weights and biases of all layers; weights shared by several 
+	 * nodes are counted once
+	 */
+	public int getNumberOfParameters() {
+		int parameters = 0;
+		for (int l = 1; l < numberOfLayers /* exclude input layer */; l++) {
+			int numberOfPreviousNodes = nodesList.get(Integer.valueOf(l - 1)).length;
+			for (Node node : nodesList.get(Integer.valueOf(l)))
+				parameters += getNumberOfParameters(node, numberOfPreviousNodes);
+		}
+		return parameters;
+	}
+
+	/**
+	 * all weights and biases, flattened layer by layer and node by node; the 
+	 * weights of a node are followed by its bias. Locally connected nodes only 
+	 * contribute the weights from their inputs, and only if they own them, e.g. 
+	 * every shared kernel of a {@link ConvolutionLayer} appears once.
+	 */
+	public double[] getParameters() {
+		double[] parameters = new double[getNumberOfParameters()];
+		int idx = 0;
+		for (int l = 1; l < numberOfLayers /* exclude input layer */; l++) {
+			Node[] currentNodes = nodesList.get(Integer.valueOf(l));
+			int numberOfPreviousNodes = nodesList.get(Integer.valueOf(l - 1)).length;
+			for (Node node : currentNodes) {
+				int numberOfParameters = getNumberOfParameters(node, numberOfPreviousNodes);
+				if (numberOfParameters == 0)
+					continue;
+				for (int i = 0; i < numberOfParameters - 1; i++)
+					parameters[idx++] = node.getWeightFromInput(parameterInput(node, i));
+				parameters[idx++] = node.b();
+			}
+		}
+		return parameters;
+	}
+
+	/**
+	 * overwrites all weights and biases, in the order of {@link #getParameters()}
+	 * 
+	 * @param parameters
+	 * @throws IllegalStateException if a layer is read only, before any parameter is written
+	 */
+	public void setParameters(double[] parameters) throws InputException {
+		if (parameters.length != getNumberOfParameters())
+			throw new InputDimensionMismatchException(getNumberOfParameters(), parameters.length);
+		for (int l = 1; l < numberOfLayers /* exclude input layer */; l++) {
+			for (Node node : nodesList.get(Integer.valueOf(l))) {
+				if (node.isReadOnly())
+					throw new IllegalStateException("Layer " + l + " is read only and cannot be overwritten");
+			}
+		}
+		int idx = 0;
+		for (int l = 1; l < numberOfLayers /* exclude input layer */; l++) {
+			Node[] currentNodes = nodesList.get(Integer.valueOf(l));
+			int numberOfPreviousNodes = nodesList.get(Integer.valueOf(l - 1)).length;
+			for (Node node : currentNodes) {
+				int numberOfParameters = getNumberOfParameters(node, numberOfPreviousNodes);
+				if (numberOfParameters == 0)
+					continue;
+				for (int i = 0; i < numberOfParameters - 1; i++)
+					node.setW(parameterInput(node, i), parameters[idx++]);
+				node.setB(parameters[idx++]);
+			}
+		}
+		weightsChanged();
+		frozenActivationsChanged();
+		if (snapshotInterval > 0)
+			publishSnapshot();
+	}
+
+	/**
+	 * the running mean and variance of every batch normalization node, in pairs 
+	 * layer by layer and node by node. The parameters of these nodes are 
+	 * relative to their statistics, see {@link BatchNormalizationNode}.
+	 */
+	double[] getNormalizationStatistics() {
+		List<BatchNormalizationNode> nodes = getNormalizationNodes();
+		double[] statistics = new double[2 * nodes.size()];
+		for (int i = 0; i < nodes.size(); i++) {
+			statistics[2 * i] = nodes.get(i).getRunningMean();
+			statistics[2 * i + 1] = nodes.get(i).getRunningVariance();
+		}
+		return statistics;
+	}
+
+	/**
+	 * overwrites the running statistics of all batch normalization nodes, in the 
+	 * order of {@link #getNormalizationStatistics()}; call it before 
+	 * {@link #setParameters(double[])}, whose weights and biases are relative to 
+	 * them
+	 * 
+	 * @param statistics
+	 */
+	void setNormalizationStatistics(double[] statistics) throws InputException {
+		List<BatchNormalizationNode> nodes = getNormalizationNodes();
+		if (2 * nodes.size() != statistics.length)
+			throw new InputException("The statistics of " + statistics.length / 2
+					+ " batch normalization nodes were given, the network has " + nodes.size());
+		for (int i = 0; i < nodes.size(); i++)
+			nodes.get(i).setRunningStatistics(statistics[2 * i], statistics[2 * i + 1]);
+	}
+
+	private List<BatchNormalizationNode> getNormalizationNodes() {
+		List<BatchNormalizationNode> nodes = new ArrayList<>();
+		for (int l = 1; l < numberOfLayers /* exclude input layer */; l++)
+			for (Node node : nodesList.get(Integer.valueOf(l)))
+				if (node instanceof BatchNormalizationNode)
+					nodes.add((BatchNormalizationNode) node);
+		return nodes;
+	}
+
+	/**
+	 * a copy of this network for inference in which every batch normalization
+	 * layer is folded into the weights and biases of the following layer, using
+	 * the running mean and variance. Its predictions equal those of this network,
+	 * without paying for the normalization. Layers of other nodes than
+	 * {@link SigmoidNeuron} and {@link BatchNormalizationNode} are shared with
+	 * this network.
+	 */
+	public Network foldBatchNormalization() throws NetworkLayerException {
+		int numberOfFoldedLayers = 0;
+		for (int l = 1; l < numberOfLayers; l++) {
+			if (!isLayerOf(nodesList.get(Integer.valueOf(l)), BatchNormalizationNode.class))
+				continue;
+			if (l == numberOfLayers - 1 || !isLayerOf(nodesList.get(Integer.valueOf(l + 1)), SigmoidNeuron.class))
+				throw new NetworkLayerException("Batch normalization layer " + l + " is not followed by a layer of sigmoid neurons");
+			numberOfFoldedLayers++;
+		}
+
+		Network folded = new Network(numberOfInputs, numberOfLayers - 1 - numberOfFoldedLayers);
+		folded.learningRate = learningRate;
+		folded.lossFunction = lossFunction;
+		folded.learningRateIterationAmount = learningRateIterationAmount;
+		folded.learningRateIterationDecay = learningRateIterationDecay;
+		folded.intelligentLearningRate = intelligentLearningRate;
+		folded.discretizeThreshold = discretizeThreshold;
+		folded.featureStandardizer = featureStandardizer;
+
+		int foldedLayer = 1;
+		for (int l = 1; l < numberOfLayers; l++) {
+			Node[] currentNodes = nodesList.get(Integer.valueOf(l));
+			if (isLayerOf(currentNodes, BatchNormalizationNode.class)) {
+				// the normalization is linear: output_k = scale_k * input_index(k) + shift_k
+				Node[] normalization = currentNodes;
+				int numberOfPreviousNodes = nodesList.get(Integer.valueOf(l - 1)).length;
+				Node[] nextNodes = nodesList.get(Integer.valueOf(++l));
+				SigmoidNeuron[] foldedNodes = new SigmoidNeuron[nextNodes.length];
+				for (int j = 0; j < nextNodes.length; j++) {
+					double[] parameters = new double[numberOfPreviousNodes + 1];
+					double bias = nextNodes[j].b();
+					for (int k = 0; k < normalization.length; k++) {
+						int c = ((BatchNormalizationNode) normalization[k]).getIndex();
+						double weight = nextNodes[j].getWeightFromInput(k);
+						parameters[c] += weight * normalization[k].getWeightFromInput(c);
+						bias += weight * normalization[k].b();
+					}
+					parameters[numberOfPreviousNodes] = bias;
+					foldedNodes[j] = copyOf((SigmoidNeuron) nextNodes[j], parameters);
+				}
+				folded.configureLayer(foldedLayer++, foldedNodes);
+			} else if (isLayerOf(currentNodes, SigmoidNeuron.class)) {
+				int numberOfPreviousNodes = nodesList.get(Integer.valueOf(l - 1)).length;
+				SigmoidNeuron[] copiedNodes = new SigmoidNeuron[currentNodes.length];
+				for (int j = 0; j < currentNodes.length; j++) {
+					double[] parameters = new double[numberOfPreviousNodes + 1];
+					for (int k = 0; k < numberOfPreviousNodes; k++)
+						parameters[k] = currentNodes[j].getWeightFromInput(k);
+					parameters[numberOfPreviousNodes] = currentNodes[j].b();
+					copiedNodes[j] = copyOf((SigmoidNeuron) currentNodes[j], parameters);
+				}
+				folded.configureLayer(foldedLayer++, copiedNodes);
+			} else {
+				folded.configureLayer(foldedLayer++, currentNodes);
+			}
+		}
+		return folded;
+	}
+
+	private static boolean isLayerOf(Node[] nodes, Class<? extends Node> type) {
+		for (Node node : nodes)
+			if (!type.isInstance(node))
+				return false;
+		return true;
+	}
+
+	private static SigmoidNeuron copyOf(SigmoidNeuron node, double[] parameters) {
+		SigmoidNeuron copy = new SigmoidNeuron(parameters.length - 1, InitializerHelper.newCircularInitializer(parameters));
+		copy.setLambda(node.getLambda());
+		copy.setKernel(node.getKernel());
+		return copy;
+	}
+
+	/**
+	 * copies the current weights into a new {@link WeightSnapshot} which is 
+	 * returned by {@link #getSnapshot()} from now on
+	 */
+	public WeightSnapshot publishSnapshot() {
+		WeightSnapshot newSnapshot = new WeightSnapshot(this, snapshotVersion++);
+		commitsSinceSnapshot = 0;
+		snapshot = newSnapshot;
+		return newSnapshot;
+	}
+
+	/**
+	 * the most recently published snapshot, or null. Safe to call from any thread.
+	 */
+	public WeightSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	public int getSnapshotInterval() {
+		return snapshotInterval;
+	}
+
+	/**
+	 * publish a new {@link WeightSnapshot} after every snapshotInterval committed 
+	 * updates, i.e. after every call of {@link #train(double[], double[])} or every
+	 * iteration of {@link #trainBatch(double[][], double[][], int)} if set to 1. 
+	 * Publishing copies all weights, so larger intervals are cheaper for training.
+	 * 0 disables the snapshots.
+	 * 
+	 * @param snapshotInterval
+	 */
+	public void setSnapshotInterval(int snapshotInterval) {
+		this.snapshotInterval = snapshotInterval;
+		this.commitsSinceSnapshot = 0;
+		if (snapshotInterval > 0)
+			publishSnapshot();
+	}
+
 	public double[] dumpDotGraph(double[] instance, PrintStream out) throws InputException {
 		double[] classification = feedForward(instance);
 		computeDotGraph(out);
@@ -557,9 +1453,26 @@ public class Network {
 	}
 	
 	public void trainBatch(double[][] instances, double[][] labels, int numIterations) throws InputException {
+		trainBatch(instances, labels, 0, numIterations);
+	}
+
+	/**
+	 * continues a batch training which already ran completedIterations 
+	 * iterations, such that the learning rate is decayed as if all iterations 
+	 * were run in a single call of {@link #trainBatch(double[][], double[][], int)}
+	 * 
+	 * @param instances
+	 * @param labels
+	 * @param completedIterations the number of iterations run so far
+	 * @param numIterations the number of additional iterations
+	 */
+	public void trainBatch(double[][] instances, double[][] labels, int completedIterations, int numIterations) throws InputException {
+		completedBatchIterations = completedIterations;
+		if (checkpointer != null)
+			checkpointer.resumedAt(completedIterations);
 	
-		int i=0;
-		while (i++ < numIterations) {
+		int i=completedIterations;
+		while (i++ < completedIterations + numIterations) {
 			try {
 				trainIterationBatch(instances, labels);
 			} catch (IterationException e) {
@@ -573,8 +1486,136 @@ public class Network {
 				
 				setLearningRate(learningRate);
 			}
+
+			completedBatchIterations = i;
+			if (checkpointer != null)
+				checkpointer.iterationCompleted(this, i);
+		}
+
+	}
+
+	/**
+	 * trains one iteration on every batch of the prefetcher, while the following 
+	 * batches are decoded in the background. Batches on which the error cannot be 
+	 * reduced any further are skipped.
+	 * 
+	 * @param prefetcher
+	 * @return the number of batches trained on
+	 */
+	public int trainBatches(BatchPrefetcher prefetcher) throws InputException, IOException, InterruptedException {
+		int numberOfBatches = 0;
+		BatchPrefetcher.Batch batch;
+		while ((batch = prefetcher.take()) != null) {
+			try {
+				// the rows of a batch are reused for later ones, so their activations are not cached
+				trainIterationBatch(batch.getInstances(), batch.getLabels(), false);
+				numberOfBatches++;
+			} catch (IterationException e) {
+				debug("Skipping batch " + numberOfBatches + ", cannot reduce error any further!");
+			} finally {
+				prefetcher.release(batch);
+			}
 		}
+		return numberOfBatches;
+	}
 
+	/**
+	 * batch training until the budget is used up, evaluated on the training data
+	 * 
+	 * @see #trainWithBudget(double[][], double[][], double[][], double[][], TrainingBudget)
+	 */
+	public TrainingSummary trainWithBudget(double[][] instances, double[][] labels, TrainingBudget budget) throws InputException {
+		return trainWithBudget(instances, labels, instances, labels, budget);
+	}
+
+	/**
+	 * batch training like {@link #trainBatch(double[][], double[][], int)} until 
+	 * the budget is used up or the error cannot be reduced any further. The loss 
+	 * on the validation data is computed every 
+	 * {@link TrainingBudget#setEvaluationInterval(long) evaluation interval} and 
+	 * at the end, and the evaluated parameters with the lowest one are restored.
+	 * The iterations continue the numbering of the preceding batch training for 
+	 * the {@link #setCheckpointer(Checkpointer) checkpoints}.
+	 * 
+	 * @param instances
+	 * @param labels
+	 * @param validationInstances
+	 * @param validationLabels
+	 * @param budget
+	 */
+	public TrainingSummary trainWithBudget(double[][] instances, double[][] labels, double[][] validationInstances, double[][] validationLabels,
+			TrainingBudget budget) throws InputException {
+		long startNanos = System.nanoTime();
+		long startCpuNanos = TrainingBudget.currentThreadCpuNanos();
+		double bestLoss = computeError(validationInstances, validationLabels);
+		double lastLoss = bestLoss;
+		double[] bestStatistics = getNormalizationStatistics();
+		double[] bestParameters = getParameters();
+		long bestIteration = 0;
+		// checkpoints continue the numbering of the batch training before
+		int firstIteration = completedBatchIterations;
+
+		long i = 0;
+		long evaluatedIteration = 0;
+		TrainingBudget.StopReason stopReason = budget.check(i, System.nanoTime() - startNanos, startCpuNanos);
+		while (stopReason == null) {
+			try {
+				trainIterationBatch(instances, labels);
+				i++;
+
+				if (i % learningRateIterationAmount == 0) {
+					learningRate *= learningRateIterationDecay;
+					debug("LearningRate is now " + learningRate);
+
+					setLearningRate(learningRate);
+				}
+				completedBatchIterations = firstIteration + (int) i;
+				if (checkpointer != null)
+					checkpointer.iterationCompleted(this, completedBatchIterations);
+				stopReason = budget.check(i, System.nanoTime() - startNanos, startCpuNanos);
+			} catch (IterationException e) {
+				stopReason = TrainingBudget.StopReason.CONVERGED;
+			}
+
+			// the parameters at the end are always evaluated, in between only every evaluation interval
+			if (i > evaluatedIteration && (stopReason != null || i % budget.getEvaluationInterval() == 0)) {
+				lastLoss = computeError(validationInstances, validationLabels);
+				evaluatedIteration = i;
+				if (lastLoss < bestLoss) {
+					bestLoss = lastLoss;
+					bestStatistics = getNormalizationStatistics();
+					bestParameters = getParameters();
+					bestIteration = i;
+				}
+			}
+		}
+		if (bestIteration != i) {
+			// the parameters of batch normalization nodes are relative to their statistics
+			setNormalizationStatistics(bestStatistics);
+			setParameters(bestParameters);
+		}
+
+		long cpuNanos = startCpuNanos < 0 ? -1 : TrainingBudget.currentThreadCpuNanos() - startCpuNanos;
+		return new TrainingSummary(i, bestIteration, bestLoss, lastLoss, System.nanoTime() - startNanos, cpuNanos, stopReason);
+	}
+
+	/**
+	 * continues a batch training of numIterations iterations from the checkpoint 
+	 * stored in the given file, or starts it from scratch if there is none
+	 * 
+	 * @param instances
+	 * @param labels
+	 * @param numIterations the total number of iterations, including the ones before the checkpoint
+	 * @param checkpointFile a file written by a {@link Checkpointer}
+	 */
+	public void resumeBatch(double[][] instances, double[][] labels, int numIterations, Path checkpointFile) throws InputException, IOException {
+		int completedIterations = 0;
+		if (Files.exists(checkpointFile)) {
+			Checkpoint checkpoint = Checkpoint.read(checkpointFile);
+			checkpoint.restore(this);
+			completedIterations = checkpoint.getIteration();
+		}
+		trainBatch(instances, labels, completedIterations, numIterations - completedIterations);
 	}
 	public void setLearningRateMultiplier(int iterationNumber, double learningRateIterationDecay) {
 		this.learningRateIterationAmount = iterationNumber;
@@ -595,6 +1636,17 @@ public class Network {
 	public void setIntelligentLearningRate(boolean intelligentLearningRate) {
 		this.intelligentLearningRate = intelligentLearningRate;
 	}
+	public double getDiscretizeThreshold() {
+		return discretizeThreshold;
+	}
+	/**
+	 * the output above which {@link #discretize(double[])} predicts 1
+	 * 
+	 * @param discretizeThreshold
+	 */
+	public void setDiscretizeThreshold(double discretizeThreshold) {
+		this.discretizeThreshold = discretizeThreshold;
+	}
 	public void discretize(double[] classification) {
 		for(int i = 0; i < classification.length; i++) {
 			if (classification[i] > discretizeThreshold)
@@ -622,5 +1674,147 @@ public class Network {
 	public void setLossFunction(LossFunction lossFunction) {
 		this.lossFunction = lossFunction;
 	}
+	public TrainingMetrics getTrainingMetrics() {
+		return trainingMetrics;
+	}
+	/**
+	 * record the progress of the training in the given metrics, or not at all if null
+	 * 
+	 * @param trainingMetrics
+	 */
+	public void setTrainingMetrics(TrainingMetrics trainingMetrics) {
+		this.trainingMetrics = trainingMetrics;
+	}
+	public Checkpointer getCheckpointer() {
+		return checkpointer;
+	}
+	/**
+	 * checkpoint the batch training with the given checkpointer, or not at all if null
+	 * 
+	 * @param checkpointer
+	 */
+	public void setCheckpointer(Checkpointer checkpointer) {
+		this.checkpointer = checkpointer;
+	}
+	public PredictionCache getPredictionCache() {
+		return predictionCache;
+	}
+	/**
+	 * puts a cache in front of {@link #predict(double[])} and the bulk 
+	 * classifications of {@link #makePredictions(double[][])}, 
+	 * {@link #computeError(double[][], double[][])} and 
+	 * {@link #evaluateClassification(double[][], double[][], int)}, and so of an 
+	 * {@link InferenceService}; removes it if null. {@link #feedForward(double[])} 
+	 * always computes the activations of all layers.
+	 * 
+	 * @param predictionCache
+	 */
+	public void setPredictionCache(PredictionCache predictionCache) {
+		this.predictionCache = predictionCache;
+		weightsChanged();
+	}
+	public FeatureStandardizer getFeatureStandardizer() {
+		return featureStandardizer;
+	}
+	/**
+	 * standardizes every instance while it is copied into the input layer, both 
+	 * for training and classification; null disables standardization
+	 * 
+	 * @param featureStandardizer
+	 */
+	public void setFeatureStandardizer(FeatureStandardizer featureStandardizer) throws InputException {
+		if (featureStandardizer != null && featureStandardizer.getNumberOfFeatures() != numberOfInputs)
+			throw new InputDimensionMismatchException(numberOfInputs, featureStandardizer.getNumberOfFeatures());
+		this.featureStandardizer = featureStandardizer;
+		weightsChanged();
+		frozenActivationsChanged();
+		if (snapshotInterval > 0)
+			publishSnapshot();
+	}
+
+	public int getEvaluationThreads() {
+		return evaluationThreads;
+	}
+	/**
+	 * the number of threads which compute the predictions of 
+	 * {@link #makePredictions(double[][])} and {@link #computeError(double[][], double[][])},
+	 * also during the search of {@link #setIntelligentLearningRate(boolean)}. The 
+	 * loss is always summed in the order of the instances, so the results do not 
+	 * depend on the number of threads. 1, the default, evaluates on the calling 
+	 * thread.
+	 * <p>
+	 * More than one thread starts a pool of daemon threads which lives until the 
+	 * number is changed again, so a network which is no longer evaluated in 
+	 * parallel should be set back to 1, which shuts the pool down.
+	 * 
+	 * @param evaluationThreads
+	 */
+	public void setEvaluationThreads(int evaluationThreads) {
+		if (evaluationThreads < 1)
+			throw new IllegalArgumentException("evaluationThreads must be positive");
+		if (evaluationExecutor != null) {
+			evaluationExecutor.shutdownNow();
+			evaluationExecutor = null;
+			evaluationScratches = null;
+		}
+		this.evaluationThreads = evaluationThreads;
+		if (evaluationThreads > 1) {
+			evaluationExecutor = Executors.newFixedThreadPool(evaluationThreads, (runnable) -> {
+				Thread thread = new Thread(runnable, "network-evaluation");
+				thread.setDaemon(true);
+				return thread;
+			});
+			evaluationScratches = new Scratch[evaluationThreads];
+			for (int t = 0; t < evaluationThreads; t++)
+				evaluationScratches[t] = new Scratch(numberOfLayers, numberOfInputs);
+		}
+	}
+
+	public boolean isLayerTrainable(int layerNumber) {
+		return trainable[layerNumber];
+	}
+	/**
+	 * freezes or unfreezes the weights of a layer, e.g. to fine tune only the 
+	 * last layers of a trained network. Frozen layers neither accumulate nor 
+	 * commit updates, and the errors are only propagated back down to the lowest 
+	 * trainable layer. All layers are trainable by default.
+	 * 
+	 * @param layerNumber a layer from 1 to {@link #getNumberOfLayers()} - 1
+	 * @param trainable
+	 */
+	public void setLayerTrainable(int layerNumber, boolean trainable) {
+		if (layerNumber < 1 || layerNumber >= numberOfLayers)
+			throw new IllegalArgumentException("No layer " + layerNumber);
+		this.trainable[layerNumber] = trainable;
+		int lowest = 1;
+		while (lowest < numberOfLayers && !this.trainable[lowest])
+			lowest++;
+		if (lowest != lowestTrainableLayer) {
+			lowestTrainableLayer = lowest;
+			frozenActivationsChanged();
+		}
+	}
+	public boolean isFrozenActivationCaching() {
+		return frozenActivations != null;
+	}
+	/**
+	 * caches the activations of the frozen layers below the lowest trainable 
+	 * layer per instance, such that later epochs of 
+	 * {@link #train(double[], double[])}, {@link #trainIterationBatch(double[][], double[][])}
+	 * and the trainings built on them, and of 
+	 * {@link #trainAsynchronous(double[][], double[][], int, int)} skip these 
+	 * layers. Instances are identified by their arrays, which must not be 
+	 * modified while cached. Predictions, evaluations, 
+	 * {@link #trainBatches(BatchPrefetcher)}, whose buffers are refilled with 
+	 * other instances, and {@link OnlineLearner} always compute all layers. The cache grows with the 
+	 * number of distinct instances, and is cleared by changes to the layers, the 
+	 * parameters or the feature standardizer made through the network; the 
+	 * weights of frozen nodes must not be changed otherwise.
+	 * 
+	 * @param frozenActivationCaching
+	 */
+	public void setFrozenActivationCaching(boolean frozenActivationCaching) {
+		frozenActivations = frozenActivationCaching ? new ConcurrentHashMap<>() : null;
+	}
 
 }
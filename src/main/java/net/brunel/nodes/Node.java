@@ -6,6 +6,20 @@ public interface Node {
 
 	double computeNodeOutput(double[] acticationsOfPreviousLayer) throws InputException;
 
+	/**
+	 * computes the outputs of this node for several instances at once, 
+	 * outputs[i][j] = computeNodeOutput(inputs[i]), see 
+	 * {@link Network#makeBatchPredictions(double[][])}
+	 * 
+	 * @param inputs the activations of the previous layer, one row per instance
+	 * @param outputs the activations of the layer, one row per instance
+	 * @param j the position of this node in its layer
+	 */
+	default void computeNodeOutputs(double[][] inputs, double[][] outputs, int j) throws InputException {
+		for (int i = 0; i < inputs.length; i++)
+			outputs[i][j] = computeNodeOutput(inputs[i]);
+	}
+
 	/**
 	 * the weight from source node c
 	 * 
@@ -17,9 +31,55 @@ public interface Node {
 
 	double b();
 
+	/**
+	 * overwrites weight w(k), e.g. when restoring or exchanging a model
+	 * 
+	 * @param k
+	 * @param value
+	 */
+	void setW(int k, double value);
+
+	void setB(double value);
+	/**
+	 * whether the weights and the bias cannot be overwritten, e.g. of a layer 
+	 * mapped read only
+	 */
+	default boolean isReadOnly() {
+		return false;
+	}
+
 	void updateW(int dimension, double gradientValue);
 
 	void updateB(double gradientValue);
+
+	/**
+	 * the gradient of w(dimension) accumulated since the last commit or reset
+	 * 
+	 * @param dimension
+	 */
+	double getUpdateW(int dimension);
+
+	double getUpdateB();
+
+	/**
+	 * immediately performs a gradient step on weight w(dimension), bypassing the 
+	 * prepared updates. Used for asynchronous training; no synchronization is 
+	 * performed.
+	 * 
+	 * @param dimension
+	 * @param gradientValue
+	 * @param learningRate
+	 * @param datasetsize
+	 */
+	void applyW(int dimension, double gradientValue, double learningRate, int datasetsize);
+
+	/**
+	 * immediately performs a gradient step on the bias, see {@link #applyW(int, double, double, int)}
+	 * 
+	 * @param gradientValue
+	 * @param learningRate
+	 */
+	void applyB(double gradientValue, double learningRate);
 	
 	void prepareUpdate();
 	
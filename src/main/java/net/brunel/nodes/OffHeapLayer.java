@@ -0,0 +1,152 @@
+package net.brunel.nodes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A layer of {@link OffHeapSigmoidNeuron}s whose weights, biases and gradients
+ * are stored outside of the java heap, so that large models neither add to the
+ * work of the garbage collector nor to the heap size.
+ * <p>
+ * The parameters are either held in direct memory, or mapped from a file. A file
+ * mapped read-only by several processes is shared by all of them through the page
+ * cache, so only one physical copy of the layer exists on the host. The file
+ * contains the weights of every node followed by its bias, in the order of
+ * {@link Network#getParameters()}, as doubles in the native byte order. A single
+ * layer is limited to 2 GiB.
+ */
+public class OffHeapLayer {
+
+	private final int numberOfNodes;
+	private final int numberOfInputs;
+
+	/**
+	 * the weights of every node followed by its bias
+	 */
+	private final DoubleBuffer parameters;
+
+	/**
+	 * the accumulated gradients in the layout of parameters, or null for a read
+	 * only layer
+	 */
+	private final DoubleBuffer gradients;
+	private final OffHeapSigmoidNeuron[] nodes;
+
+	private OffHeapLayer(int numberOfNodes, int numberOfInputs, DoubleBuffer parameters, boolean readOnly) {
+		this.numberOfNodes = numberOfNodes;
+		this.numberOfInputs = numberOfInputs;
+		this.parameters = parameters;
+		this.gradients = readOnly ? null : allocateDirect(parameters.capacity());
+		nodes = new OffHeapSigmoidNeuron[numberOfNodes];
+		for (int j = 0; j < numberOfNodes; j++)
+			nodes[j] = new OffHeapSigmoidNeuron(numberOfInputs, this.parameters, gradients, j * (numberOfInputs + 1));
+	}
+
+	private static DoubleBuffer allocateDirect(int numberOfDoubles) {
+		return ByteBuffer.allocateDirect(Double.BYTES * numberOfDoubles).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+	}
+
+	private static int computeNumberOfParameters(int numberOfNodes, int numberOfInputs) {
+		long numberOfParameters = (long) numberOfNodes * (numberOfInputs + 1);
+		if (numberOfParameters * Double.BYTES > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("layer exceeds 2 GiB");
+		return (int) numberOfParameters;
+	}
+
+	/**
+	 * creates a layer in direct memory, which is initialized like a layer of
+	 * {@link SigmoidNeuron}s that draw from the same initializer one after the other
+	 *
+	 * @param numberOfNodes
+	 * @param numberOfInputs
+	 * @param initializer
+	 */
+	public static OffHeapLayer allocate(int numberOfNodes, int numberOfInputs, Initializer initializer) {
+		DoubleBuffer parameters = allocateDirect(computeNumberOfParameters(numberOfNodes, numberOfInputs));
+		for (int i = 0; i < parameters.capacity(); i++)
+			parameters.put(i, initializer.nextDouble(-1, 1));
+		return new OffHeapLayer(numberOfNodes, numberOfInputs, parameters, false);
+	}
+
+	/**
+	 * maps the parameters of the layer from the given file, which has been written
+	 * by {@link #write(Path)}. A writable mapping is created if the file does not
+	 * exist, and training writes through to the file and to all processes mapping
+	 * it. A read only layer can classify, but not be trained.
+	 *
+	 * @param file
+	 * @param numberOfNodes
+	 * @param numberOfInputs
+	 * @param readOnly
+	 */
+	public static OffHeapLayer map(Path file, int numberOfNodes, int numberOfInputs, boolean readOnly) throws IOException {
+		long bytes = (long) Double.BYTES * computeNumberOfParameters(numberOfNodes, numberOfInputs);
+		MappedByteBuffer buffer;
+		if (readOnly) {
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				if (channel.size() != bytes)
+					throw new IOException(file + " has " + channel.size() + " bytes instead of " + bytes);
+				buffer = channel.map(MapMode.READ_ONLY, 0, bytes);
+			}
+		} else {
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				if (channel.size() != 0 && channel.size() != bytes)
+					throw new IOException(file + " has " + channel.size() + " bytes instead of " + bytes);
+				buffer = channel.map(MapMode.READ_WRITE, 0, bytes);
+			}
+		}
+		// the mapping stays valid after the channel is closed
+		return new OffHeapLayer(numberOfNodes, numberOfInputs, buffer.order(ByteOrder.nativeOrder()).asDoubleBuffer(), readOnly);
+	}
+
+	/**
+	 * writes the parameters to the given file, such that it can be mapped by
+	 * {@link #map(Path, int, int, boolean)}
+	 *
+	 * @param file
+	 */
+	public void write(Path file) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(Double.BYTES * parameters.capacity()).order(ByteOrder.nativeOrder());
+		buffer.asDoubleBuffer().put(parameters.duplicate());
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			channel.force(false);
+		}
+	}
+
+	/**
+	 * the nodes of this layer, to be passed to {@link Network#configureLayer(int, Node[])}
+	 */
+	public OffHeapSigmoidNeuron[] getNodes() {
+		return nodes.clone();
+	}
+
+	public int getNumberOfNodes() {
+		return numberOfNodes;
+	}
+
+	public int getNumberOfInputs() {
+		return numberOfInputs;
+	}
+
+	public boolean isReadOnly() {
+		return gradients == null;
+	}
+
+	/**
+	 * the off heap memory held by the parameters of this layer
+	 */
+	public long getParameterBytes() {
+		return (long) Double.BYTES * parameters.capacity();
+	}
+
+}
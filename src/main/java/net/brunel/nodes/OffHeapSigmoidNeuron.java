@@ -0,0 +1,109 @@
+package net.brunel.nodes;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * A {@link SigmoidNeuron} whose weights, bias and gradients are stored in the
+ * buffers of an {@link OffHeapLayer}. It computes exactly what a SigmoidNeuron
+ * with the same weights computes. The parameters of a layer mapped read only
+ * can neither be trained nor overwritten.
+ */
+public class OffHeapSigmoidNeuron extends AbstractSigmoidNeuron {
+
+	private final int numberOfInputs;
+	private final DoubleBuffer parameters;
+	private final DoubleBuffer gradients;
+
+	/**
+	 * the index of the first weight of this node in parameters and gradients; the
+	 * bias follows the last weight
+	 */
+	private final int offset;
+	private final int biasIndex;
+
+	OffHeapSigmoidNeuron(int numberOfInputs, DoubleBuffer parameters, DoubleBuffer gradients, int offset) {
+		this.numberOfInputs = numberOfInputs;
+		this.parameters = parameters;
+		this.gradients = gradients;
+		this.offset = offset;
+		this.biasIndex = offset + numberOfInputs;
+	}
+
+	@Override
+	public int getNumberOfInputs() {
+		return numberOfInputs;
+	}
+
+	@Override
+	public boolean isReadOnly() {
+		return gradients == null;
+	}
+
+	@Override
+	double getStoredBias() {
+		return parameters.get(biasIndex);
+	}
+
+	@Override
+	double dotProductWithWeights(double[] input) {
+		return MyMath.dotProduct(parameters, offset, input);
+	}
+
+	@Override
+	public double getWeightFromInput(int c) {
+		return parameters.get(offset + c);
+	}
+
+	private DoubleBuffer writableParameters() {
+		if (gradients == null)
+			throw new IllegalStateException("the layer is mapped read only and cannot be changed");
+		return parameters;
+	}
+
+	@Override
+	public void setW(int k, double value) {
+		writableParameters().put(offset + k, value);
+	}
+
+	@Override
+	public void setB(double value) {
+		writableParameters().put(biasIndex, value);
+	}
+
+	private DoubleBuffer gradients() {
+		if (gradients == null)
+			throw new IllegalStateException("the layer is mapped read only and cannot be trained");
+		return gradients;
+	}
+
+	@Override
+	public void updateW(int dimension, double gradientValue) {
+		DoubleBuffer g = gradients();
+		g.put(offset + dimension, g.get(offset + dimension) + gradientValue);
+	}
+
+	@Override
+	public void updateB(double gradientValue) {
+		DoubleBuffer g = gradients();
+		g.put(biasIndex, g.get(biasIndex) + gradientValue);
+	}
+
+	@Override
+	public double getUpdateW(int dimension) {
+		return gradients == null ? 0 : gradients.get(offset + dimension);
+	}
+
+	@Override
+	public double getUpdateB() {
+		return gradients == null ? 0 : gradients.get(biasIndex);
+	}
+
+	@Override
+	void clearUpdates() {
+		if (gradients == null)
+			return;
+		for (int i = offset; i <= biasIndex; i++)
+			gradients.put(i, 0);
+	}
+
+}
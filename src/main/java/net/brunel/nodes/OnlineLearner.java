@@ -0,0 +1,158 @@
+package net.brunel.nodes;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.Flow;
+
+import net.brunel.nodes.exceptions.InputException;
+
+/**
+ * Keeps a {@link Network} up to date on an unbounded stream of labelled
+ * instances, using per-sample updates as in {@link Network#train(double[], double[])},
+ * but with one forward pass per instance and the steps written directly into
+ * the weights.
+ * <p>
+ * Every instance is first classified and then trained on, the loss of these
+ * predictions on unseen data is tracked as an exponential moving average.
+ * Optionally, the most recent instances are kept in a bounded replay buffer and
+ * a number of randomly drawn instances from it are trained on again after
+ * every new instance. The memory used is independent of the length of the
+ * stream.
+ * <p>
+ * The learner can be fed by an {@link Iterator} or subscribe to a
+ * {@link Flow.Publisher}; in the latter case it requests one instance at a
+ * time. Networks with a {@link BatchNormalizationNode} are rejected by
+ * {@link #learn(LabelledInstance)}.
+ */
+public class OnlineLearner implements Flow.Subscriber<LabelledInstance> {
+
+	private final Network network;
+	private final LabelledInstance[] replayBuffer;
+	private final int replaysPerInstance;
+	private final double lossDecay;
+	private final Random random;
+	private int replayBufferSize;
+	private int replayBufferPosition;
+	private long numberOfInstances;
+	private double rollingLoss = Double.NaN;
+	private Flow.Subscription subscription;
+	private volatile Throwable error;
+	private volatile boolean completed;
+
+	/**
+	 * a learner without replay
+	 *
+	 * @param network the network to train
+	 * @param lossDecay the weight of the previous rolling loss, e.g. 0.99
+	 */
+	public OnlineLearner(Network network, double lossDecay) {
+		this(network, lossDecay, 0, 0, 0);
+	}
+
+	/**
+	 * @param network the network to train
+	 * @param lossDecay the weight of the previous rolling loss, e.g. 0.99
+	 * @param replayBufferCapacity the number of recent instances to keep
+	 * @param replaysPerInstance the number of instances replayed after each new one
+	 * @param seed the seed for drawing the replayed instances
+	 */
+	public OnlineLearner(Network network, double lossDecay, int replayBufferCapacity, int replaysPerInstance, long seed) {
+		this.network = network;
+		this.lossDecay = lossDecay;
+		this.replayBuffer = new LabelledInstance[replayBufferCapacity];
+		this.replaysPerInstance = replayBufferCapacity > 0 ? replaysPerInstance : 0;
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * classifies and trains on the given instance, followed by the configured
+	 * number of replays
+	 *
+	 * @param labelledInstance
+	 */
+	public void learn(LabelledInstance labelledInstance) throws InputException {
+		// a single forward pass, whose prediction is made before the step
+		double[] prediction = network.trainIncrementally(labelledInstance.getInstance(), labelledInstance.getLabel());
+		double loss = network.getLossFunction().computeLoss(new double[][] { labelledInstance.getLabel() }, new double[][] { prediction });
+		if (numberOfInstances == 0)
+			rollingLoss = loss;
+		else
+			rollingLoss = lossDecay * rollingLoss + (1 - lossDecay) * loss;
+		numberOfInstances++;
+
+		if (replayBuffer.length == 0)
+			return;
+		for (int r = 0; r < replaysPerInstance && replayBufferSize > 0; r++) {
+			LabelledInstance replayed = replayBuffer[random.nextInt(replayBufferSize)];
+			network.trainIncrementally(replayed.getInstance(), replayed.getLabel());
+		}
+		replayBuffer[replayBufferPosition] = labelledInstance;
+		replayBufferPosition = (replayBufferPosition + 1) % replayBuffer.length;
+		replayBufferSize = Math.min(replayBufferSize + 1, replayBuffer.length);
+	}
+
+	/**
+	 * learns all remaining instances of the given iterator
+	 *
+	 * @param instances
+	 */
+	public void learn(Iterator<LabelledInstance> instances) throws InputException {
+		while (instances.hasNext())
+			learn(instances.next());
+	}
+
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		this.subscription = subscription;
+		subscription.request(1);
+	}
+
+	@Override
+	public void onNext(LabelledInstance item) {
+		try {
+			learn(item);
+		} catch (InputException e) {
+			subscription.cancel();
+			onError(e);
+			return;
+		}
+		subscription.request(1);
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		this.error = throwable;
+	}
+
+	@Override
+	public void onComplete() {
+		this.completed = true;
+	}
+
+	/**
+	 * the exponential moving average of the loss of the predictions made before
+	 * training on each instance, NaN if no instance has been seen yet
+	 */
+	public double getRollingLoss() {
+		return rollingLoss;
+	}
+
+	public long getNumberOfInstances() {
+		return numberOfInstances;
+	}
+
+	/**
+	 * the error which terminated the subscription, if any
+	 */
+	public Throwable getError() {
+		return error;
+	}
+
+	/**
+	 * whether the subscribed publisher has completed
+	 */
+	public boolean isCompleted() {
+		return completed;
+	}
+
+}
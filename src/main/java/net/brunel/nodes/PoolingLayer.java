@@ -0,0 +1,284 @@
+package net.brunel.nodes;
+
+import net.brunel.nodes.exceptions.InputDimensionMismatchException;
+import net.brunel.nodes.exceptions.InputException;
+
+/**
+ * Downsamples every channel of the output of the previous layer, interpreted as
+ * an image like the output of a {@link ConvolutionLayer}, by the maximum or the
+ * average of windows of size x size values. Pooling layers have no parameters.
+ */
+public class PoolingLayer {
+
+	/**
+	 * A pooling node for one channel and window; all weights and gradients are fixed.
+	 */
+	public abstract static class PoolingNode implements LocallyConnectedNode, Function {
+
+		final int numberOfInputs;
+		final int[] window;
+
+		PoolingNode(int numberOfInputs, int[] window) {
+			this.numberOfInputs = numberOfInputs;
+			this.window = window;
+		}
+
+		void checkDimension(double[] input) throws InputDimensionMismatchException {
+			if (input.length != numberOfInputs)
+				throw new InputDimensionMismatchException(numberOfInputs, input.length);
+		}
+
+		@Override
+		public int[] getInputIndices() {
+			return window;
+		}
+
+		@Override
+		public double w(int k) {
+			return getWeightFromInput(k);
+		}
+
+		@Override
+		public double b() {
+			return 0;
+		}
+
+		@Override
+		public void setW(int k, double value) {
+			// fixed
+		}
+
+		@Override
+		public void setB(double value) {
+			// fixed
+		}
+
+		@Override
+		public void updateW(int dimension, double gradientValue) {
+			// fixed
+		}
+
+		@Override
+		public void updateB(double gradientValue) {
+			// fixed
+		}
+
+		@Override
+		public double getUpdateW(int dimension) {
+			return 0;
+		}
+
+		@Override
+		public double getUpdateB() {
+			return 0;
+		}
+
+		@Override
+		public void applyW(int dimension, double gradientValue, double learningRate, int datasetsize) {
+			// fixed
+		}
+
+		@Override
+		public void applyB(double gradientValue, double learningRate) {
+			// fixed
+		}
+
+		@Override
+		public void updateLocalW(int i, double gradientValue) {
+			// fixed
+		}
+
+		@Override
+		public void applyLocalW(int i, double gradientValue, double learningRate, int datasetsize) {
+			// fixed
+		}
+
+		@Override
+		public boolean ownsParameters() {
+			return false;
+		}
+
+		@Override
+		public void prepareUpdate() {
+		}
+
+		@Override
+		public void commitUpdate(double learningRate, int datasetsize) {
+		}
+
+		@Override
+		public void configureUpdate(double d, int datasetsize) {
+		}
+
+		@Override
+		public void resetUpdate() {
+		}
+
+		@Override
+		public Function getFunction() {
+			return this;
+		}
+
+		@Override
+		public double computeDerivativeValue(double[] input) {
+			return 1;
+		}
+
+		@Override
+		public double computeDerivativeValue(double z) {
+			return 1;
+		}
+
+		@Override
+		public double computeAt(double z) {
+			return z;
+		}
+	}
+
+	/**
+	 * Passes on the maximum of its window. Its weight is 1 from the input that was
+	 * the maximum in the last call of {@link #computeNodeOutput(double[])} and 0
+	 * from all others, which routes the error of backpropagation to that input.
+	 * Because of this state, a network with max pooling must not be used by
+	 * several threads at once, and cannot be turned into a {@link WeightSnapshot}
+	 * or a {@link QuantizedNetwork}.
+	 */
+	public static class MaxPoolingNode extends PoolingNode {
+
+		private int maximumInput = -1;
+
+		MaxPoolingNode(int numberOfInputs, int[] window) {
+			super(numberOfInputs, window);
+		}
+
+		@Override
+		public double computeNodeOutput(double[] input) throws InputException {
+			checkDimension(input);
+			int argmax = window[0];
+			for (int i = 1; i < window.length; i++) {
+				if (input[window[i]] > input[argmax])
+					argmax = window[i];
+			}
+			maximumInput = argmax;
+			return input[argmax];
+		}
+
+		@Override
+		public double getWeightFromInput(int c) {
+			return c == maximumInput ? 1 : 0;
+		}
+
+		@Override
+		public double localW(int i) {
+			return window[i] == maximumInput ? 1 : 0;
+		}
+	}
+
+	/**
+	 * Passes on the average of its window.
+	 */
+	public static class AveragePoolingNode extends PoolingNode {
+
+		private final double weight;
+
+		AveragePoolingNode(int numberOfInputs, int[] window) {
+			super(numberOfInputs, window);
+			this.weight = 1.0 / window.length;
+		}
+
+		@Override
+		public double computeNodeOutput(double[] input) throws InputException {
+			checkDimension(input);
+			double sum = 0;
+			for (int i = 0; i < window.length; i++)
+				sum += input[window[i]];
+			return sum * weight;
+		}
+
+		@Override
+		public double getWeightFromInput(int c) {
+			for (int i = 0; i < window.length; i++) {
+				if (window[i] == c)
+					return weight;
+			}
+			return 0;
+		}
+
+		@Override
+		public double localW(int i) {
+			return weight;
+		}
+	}
+
+	private final int channels;
+	private final int outputHeight;
+	private final int outputWidth;
+	private final PoolingNode[] nodes;
+
+	private PoolingLayer(int channels, int inputHeight, int inputWidth, int size, int stride, boolean maximum) {
+		if (size > inputHeight || size > inputWidth || stride < 1)
+			throw new IllegalArgumentException("window of size " + size + " and stride " + stride + " does not fit "
+					+ inputHeight + "x" + inputWidth);
+		this.channels = channels;
+		this.outputHeight = (inputHeight - size) / stride + 1;
+		this.outputWidth = (inputWidth - size) / stride + 1;
+		int numberOfInputs = channels * inputHeight * inputWidth;
+
+		nodes = new PoolingNode[channels * outputHeight * outputWidth];
+		int j = 0;
+		for (int c = 0; c < channels; c++) {
+			for (int y = 0; y < outputHeight; y++) {
+				for (int x = 0; x < outputWidth; x++) {
+					int[] window = new int[size * size];
+					int i = 0;
+					for (int dy = 0; dy < size; dy++)
+						for (int dx = 0; dx < size; dx++)
+							window[i++] = (c * inputHeight + y * stride + dy) * inputWidth + x * stride + dx;
+					nodes[j++] = maximum ? new MaxPoolingNode(numberOfInputs, window) : new AveragePoolingNode(numberOfInputs, window);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param channels the number of channels of the input image
+	 * @param inputHeight
+	 * @param inputWidth
+	 * @param size the height and width of the windows
+	 * @param stride the distance of successive windows
+	 */
+	public static PoolingLayer max(int channels, int inputHeight, int inputWidth, int size, int stride) {
+		return new PoolingLayer(channels, inputHeight, inputWidth, size, stride, true);
+	}
+
+	/**
+	 * @param channels the number of channels of the input image
+	 * @param inputHeight
+	 * @param inputWidth
+	 * @param size the height and width of the windows
+	 * @param stride the distance of successive windows
+	 */
+	public static PoolingLayer average(int channels, int inputHeight, int inputWidth, int size, int stride) {
+		return new PoolingLayer(channels, inputHeight, inputWidth, size, stride, false);
+	}
+
+	/**
+	 * the nodes of this layer, to be passed to {@link Network#configureLayer(int, Node[])}
+	 */
+	public PoolingNode[] getNodes() {
+		return nodes.clone();
+	}
+
+	public int getChannels() {
+		return channels;
+	}
+
+	public int getOutputHeight() {
+		return outputHeight;
+	}
+
+	public int getOutputWidth() {
+		return outputWidth;
+	}
+
+}
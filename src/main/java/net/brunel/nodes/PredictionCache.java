@@ -0,0 +1,106 @@
+package net.brunel.nodes;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A size bounded cache of predictions, keyed by the exact input vector, which
+ * evicts the least recently used entry when full. See
+ * {@link Network#setPredictionCache(PredictionCache)}; the network invalidates
+ * the cache whenever its weights change.
+ */
+public class PredictionCache {
+
+	private static final class Key {
+		private final double[] input;
+		private final int hash;
+
+		Key(double[] input) {
+			this.input = input;
+			this.hash = Arrays.hashCode(input);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return hash == other.hash && Arrays.equals(input, other.input);
+		}
+	}
+
+	private final int maximumSize;
+	private final LinkedHashMap<Key, double[]> entries;
+	private long hits;
+	private long misses;
+
+	/**
+	 * @param maximumSize the maximum number of cached predictions
+	 */
+	public PredictionCache(final int maximumSize) {
+		this.maximumSize = maximumSize;
+		this.entries = new LinkedHashMap<Key, double[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, double[]> eldest) {
+				return size() > maximumSize;
+			}
+		};
+	}
+
+	/**
+	 * the cached prediction for the given input, or null. The returned array must
+	 * not be modified.
+	 *
+	 * @param input
+	 */
+	public synchronized double[] get(double[] input) {
+		double[] prediction = entries.get(new Key(input));
+		if (prediction == null)
+			misses++;
+		else
+			hits++;
+		return prediction;
+	}
+
+	/**
+	 * caches copies of the given input and prediction
+	 *
+	 * @param input
+	 * @param prediction
+	 */
+	public synchronized void put(double[] input, double[] prediction) {
+		entries.put(new Key(input.clone()), prediction.clone());
+	}
+
+	/**
+	 * removes all entries, the counters are kept
+	 */
+	public synchronized void invalidate() {
+		entries.clear();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+}
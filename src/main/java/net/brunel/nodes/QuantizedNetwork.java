@@ -0,0 +1,325 @@
+package net.brunel.nodes;
+
+import java.util.Arrays;
+
+import net.brunel.nodes.exceptions.InputDimensionMismatchException;
+import net.brunel.nodes.exceptions.InputException;
+import net.brunel.nodes.exceptions.NetworkLayerException;
+
+/**
+ * Post-training int8 quantization of a trained {@link Network} for inference.
+ *
+ * Weights are stored as signed bytes with one scale factor per node (row), the
+ * inputs of each layer are quantized with one scale factor per layer which is
+ * calibrated on a sample dataset. The dot products are accumulated in integers
+ * and only rescaled once per node before the activation function is applied.
+ * A {@link LocallyConnectedNode} is quantized as the weights from its inputs
+ * only, and successive nodes with the same quantized weights share them, such
+ * as all nodes of a filter of a {@link ConvolutionLayer} or of a
+ * {@link PoolingLayer}. Networks with max pooling layers cannot be
+ * quantized.
+ * <p>
+ * The integer dot products pay off for wide layers, whose weights no longer fit
+ * into the caches as doubles. For nodes with few inputs, such as those of a
+ * convolution with a small kernel, quantizing every activation costs more than
+ * the integer arithmetic saves. QuantizedInferenceSuite in the tests compares
+ * the throughput with {@link Network#makePredictions(double[][])}.
+ */
+public class QuantizedNetwork {
+
+	private static final int INT8_MAXIMUM = 127;
+
+	private final int numberOfInputs;
+
+	/**
+	 * indexed by [layer-1][node][input], or by [layer-1][node][i] for the i-th
+	 * input index of a locally connected node
+	 */
+	private final byte[][][] weights;
+
+	/**
+	 * the input indices of locally connected nodes, null for the other nodes;
+	 * indexed by [layer-1][node]
+	 */
+	private final int[][][] inputIndices;
+
+	/**
+	 * indexed by [layer-1][node]
+	 */
+	private final double[][] weightScales;
+
+	/**
+	 * indexed by [layer-1][node]
+	 */
+	private final double[][] biases;
+
+	/**
+	 * indexed by [layer-1]; the scale of the activations that are fed into the layer
+	 */
+	private final double[] inputScales;
+
+	/**
+	 * indexed by [layer-1][node]
+	 */
+	private final Function[][] functions;
+
+	/**
+	 * indexed by [layer]
+	 */
+	private final int[] layerWidths;
+
+	/**
+	 * the number of distinct quantized weights, shared kernels are counted once
+	 */
+	private long weightBytes;
+
+	private FeatureStandardizer featureStandardizer;
+
+	private QuantizedNetwork(int numberOfInputs, int numberOfLayers) {
+		this.numberOfInputs = numberOfInputs;
+		weights = new byte[numberOfLayers - 1][][];
+		inputIndices = new int[numberOfLayers - 1][][];
+		weightScales = new double[numberOfLayers - 1][];
+		biases = new double[numberOfLayers - 1][];
+		inputScales = new double[numberOfLayers - 1];
+		functions = new Function[numberOfLayers - 1][];
+		layerWidths = new int[numberOfLayers];
+	}
+
+	/**
+	 * quantizes the weights of all layers of the given network. The activation
+	 * ranges of the layers are calibrated on the given instances which should be a
+	 * representative sample of the data the network will be used on.
+	 *
+	 * @param network the trained network
+	 * @param calibrationInstances the calibration sample
+	 */
+	public static QuantizedNetwork quantize(Network network, double[][] calibrationInstances) throws InputException {
+		int numberOfLayers = network.getNumberOfLayers();
+		QuantizedNetwork quantized = new QuantizedNetwork(network.getNumberOfInputs(), numberOfLayers);
+		quantized.layerWidths[0] = network.getNumberOfInputs();
+		quantized.featureStandardizer = network.getFeatureStandardizer();
+
+		for (int l = 1; l < numberOfLayers; l++) {
+			Node[] currentLayer = network.getLayer(l);
+			int inputs = quantized.layerWidths[l - 1];
+			quantized.layerWidths[l] = currentLayer.length;
+			quantized.weights[l - 1] = new byte[currentLayer.length][];
+			quantized.inputIndices[l - 1] = new int[currentLayer.length][];
+			quantized.weightScales[l - 1] = new double[currentLayer.length];
+			quantized.biases[l - 1] = new double[currentLayer.length];
+			quantized.functions[l - 1] = new Function[currentLayer.length];
+
+			for (int j = 0; j < currentLayer.length; j++) {
+				if (currentLayer[j] instanceof PoolingLayer.MaxPoolingNode)
+					throw new NetworkLayerException("Layer " + l + " uses max pooling, which cannot be quantized");
+				if (currentLayer[j] instanceof LocallyConnectedNode)
+					quantized.inputIndices[l - 1][j] = ((LocallyConnectedNode) currentLayer[j]).getInputIndices();
+				quantized.quantizeWeights(l, j, currentLayer[j], inputs);
+				quantized.biases[l - 1][j] = currentLayer[j].b();
+				quantized.functions[l - 1][j] = currentLayer[j].getFunction();
+			}
+		}
+
+		calibrate(network, quantized, calibrationInstances);
+		return quantized;
+	}
+
+	/*
+	 * quantizes the weights of the given node with a scale of its own, the weights
+	 * from all inputs of the previous layer or from the input indices of a 
+	 * locally connected node. The weights of the previous node are reused if they
+	 * are the same.
+	 */
+	private void quantizeWeights(int l, int j, Node node, int inputs) {
+		int[] indices = inputIndices[l - 1][j];
+		double[] nodeWeights = new double[indices == null ? inputs : indices.length];
+		double maximum = 0;
+		for (int i = 0; i < nodeWeights.length; i++) {
+			nodeWeights[i] = node.getWeightFromInput(indices == null ? i : indices[i]);
+			maximum = Math.max(maximum, Math.abs(nodeWeights[i]));
+		}
+		double scale = computeScale(maximum);
+		weightScales[l - 1][j] = scale;
+		byte[] quantizedWeights = new byte[nodeWeights.length];
+		for (int i = 0; i < nodeWeights.length; i++)
+			quantizedWeights[i] = quantize(nodeWeights[i], scale);
+		if (j > 0 && weightScales[l - 1][j - 1] == scale && Arrays.equals(weights[l - 1][j - 1], quantizedWeights)) {
+			weights[l - 1][j] = weights[l - 1][j - 1];
+			return;
+		}
+		weights[l - 1][j] = quantizedWeights;
+		weightBytes += quantizedWeights.length;
+	}
+
+	/*
+	 * determines the maximum absolute activation that is fed into each layer on
+	 * the calibration data, using the unquantized network.
+	 */
+	private static void calibrate(Network network, QuantizedNetwork quantized, double[][] calibrationInstances) throws InputException {
+		double[] maximumActivations = new double[quantized.inputScales.length];
+		for (double[] instance : calibrationInstances) {
+			if (instance.length != quantized.numberOfInputs)
+				throw new InputDimensionMismatchException(quantized.numberOfInputs, instance.length);
+			double[] activation = quantized.featureStandardizer == null ? instance : quantized.featureStandardizer.standardize(instance);
+			for (int l = 1; l < network.getNumberOfLayers(); l++) {
+				for (double a : activation)
+					maximumActivations[l - 1] = Math.max(maximumActivations[l - 1], Math.abs(a));
+
+				Node[] currentLayer = network.getLayer(l);
+				double[] nextActivation = new double[currentLayer.length];
+				for (int j = 0; j < currentLayer.length; j++)
+					nextActivation[j] = currentLayer[j].computeNodeOutput(activation);
+				activation = nextActivation;
+			}
+		}
+		for (int l = 0; l < maximumActivations.length; l++)
+			quantized.inputScales[l] = computeScale(maximumActivations[l]);
+	}
+
+	private static double computeScale(double maximumAbsoluteValue) {
+		if (maximumAbsoluteValue <= 0)
+			return 1;
+		return maximumAbsoluteValue / INT8_MAXIMUM;
+	}
+
+	private static byte quantize(double value, double scale) {
+		return quantizeScaled(value / scale);
+	}
+
+	/*
+	 * rounds a value which is already divided by its scale to the nearest int8,
+	 * saturating at +-127
+	 */
+	private static byte quantizeScaled(double scaledValue) {
+		double q = Math.rint(scaledValue);
+		if (q > INT8_MAXIMUM)
+			q = INT8_MAXIMUM;
+		else if (q < -INT8_MAXIMUM)
+			q = -INT8_MAXIMUM;
+		return (byte) (int) q;
+	}
+
+	public double[] feedForward(double[] input) throws InputException {
+		if (numberOfInputs != input.length)
+			throw new InputDimensionMismatchException(numberOfInputs, input.length);
+
+		double[] activation = input;
+		byte[] quantizedActivation = new byte[maximumLayerWidth()];
+		for (int l = 1; l < layerWidths.length; l++) {
+			int inputs = layerWidths[l - 1];
+			double inputScale = inputScales[l - 1];
+			double inverseInputScale = 1 / inputScale;
+			if (l == 1 && featureStandardizer != null) {
+				for (int k = 0; k < inputs; k++)
+					quantizedActivation[k] = quantizeScaled(featureStandardizer.standardize(k, activation[k]) * inverseInputScale);
+			} else {
+				for (int k = 0; k < inputs; k++)
+					quantizedActivation[k] = quantizeScaled(activation[k] * inverseInputScale);
+			}
+
+			double[] nextActivation = new double[layerWidths[l]];
+			for (int j = 0; j < nextActivation.length; j++) {
+				byte[] nodeWeights = weights[l - 1][j];
+				int[] indices = inputIndices[l - 1][j];
+				int accumulator = 0;
+				if (indices == null) {
+					accumulator = dotProduct(nodeWeights, quantizedActivation, inputs);
+				} else {
+					for (int i = 0; i < indices.length; i++)
+						accumulator += nodeWeights[i] * quantizedActivation[indices[i]];
+				}
+				double z = accumulator * weightScales[l - 1][j] * inputScale + biases[l - 1][j];
+				nextActivation[j] = functions[l - 1][j].computeAt(z);
+			}
+			activation = nextActivation;
+		}
+		return activation;
+	}
+
+	/*
+	 * the integer dot product of the first length values; the plain loop lets the
+	 * JIT compiler vectorize the accumulation
+	 */
+	private static int dotProduct(byte[] a, byte[] b, int length) {
+		int accumulator = 0;
+		for (int i = 0; i < length; i++)
+			accumulator += a[i] * b[i];
+		return accumulator;
+	}
+
+	private int maximumLayerWidth() {
+		int maximum = 0;
+		for (int width : layerWidths)
+			maximum = Math.max(maximum, width);
+		return maximum;
+	}
+
+	public double[][] makePredictions(double[][] instances) throws InputException {
+		double[][] predictions = new double[instances.length][];
+		for (int i = 0; i < instances.length; i++) {
+			predictions[i] = feedForward(instances[i]);
+		}
+		return predictions;
+	}
+
+	/**
+	 * the mean absolute difference of the output components of this network and
+	 * the original one, as produced by {@link Network#makePredictions(double[][])}
+	 *
+	 * @param network the network this one has been quantized from
+	 * @param instances the instances to compare on
+	 */
+	public double computeMeanAbsoluteDeviation(Network network, double[][] instances) throws InputException {
+		double[][] expected = network.makePredictions(instances);
+		double[][] actual = makePredictions(instances);
+		double deviation = 0;
+		int components = 0;
+		for (int i = 0; i < instances.length; i++) {
+			for (int j = 0; j < expected[i].length; j++) {
+				deviation += Math.abs(expected[i][j] - actual[i][j]);
+				components++;
+			}
+		}
+		return components == 0 ? 0 : deviation / components;
+	}
+
+	/**
+	 * the accuracy of the original network minus the accuracy of this network,
+	 * both discretized using {@link Network#discretize(double[])}. A positive
+	 * value means the quantization lost accuracy.
+	 *
+	 * @param network the network this one has been quantized from
+	 * @param instances the instances
+	 * @param labels the labels of the instances
+	 */
+	public double computeAccuracyDelta(Network network, double[][] instances, double[][] labels) throws InputException {
+		double[][] expected = network.makePredictions(instances);
+		double[][] actual = makePredictions(instances);
+		int expectedCorrect = 0;
+		int actualCorrect = 0;
+		for (int i = 0; i < instances.length; i++) {
+			network.discretize(expected[i]);
+			network.discretize(actual[i]);
+			if (Arrays.equals(expected[i], labels[i]))
+				expectedCorrect++;
+			if (Arrays.equals(actual[i], labels[i]))
+				actualCorrect++;
+		}
+		return (expectedCorrect - actualCorrect) / (double) instances.length;
+	}
+
+	/**
+	 * the number of bytes used for storing the weights, compared to eight bytes
+	 * per weight in the original network. Only the weights from the inputs of
+	 * locally connected nodes are stored, and a shared kernel only once.
+	 */
+	public long getWeightBytes() {
+		return weightBytes;
+	}
+
+	public int getNumberOfInputs() {
+		return numberOfInputs;
+	}
+
+}
@@ -0,0 +1,162 @@
+package net.brunel.nodes;
+
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Generators of labelled synthetic datasets of any size, e.g. for benchmarks.
+ * Rows are generated in parallel in chunks with their own random number
+ * generators, so a dataset only depends on its parameters and the seed.
+ */
+public final class SyntheticData {
+
+	/**
+	 * the number of rows generated by one task
+	 */
+	private static final int CHUNK_SIZE = 8192;
+
+	private interface RowGenerator {
+		void generate(SplittableRandom random, double[] instance, double[] label);
+	}
+
+	private final double[][] instances;
+	private final double[][] labels;
+
+	private SyntheticData(double[][] instances, double[][] labels) {
+		this.instances = instances;
+		this.labels = labels;
+	}
+
+	private static SyntheticData generate(int numberOfRows, int dimension, int numberOfLabels, long seed, RowGenerator generator) {
+		double[][] instances = new double[numberOfRows][];
+		double[][] labels = new double[numberOfRows][];
+		int numberOfChunks = (numberOfRows + CHUNK_SIZE - 1) / CHUNK_SIZE;
+
+		// split sequentially, so that every chunk gets the same generator regardless of the threads used
+		SplittableRandom root = new SplittableRandom(seed);
+		SplittableRandom[] randoms = new SplittableRandom[numberOfChunks];
+		for (int c = 0; c < numberOfChunks; c++)
+			randoms[c] = root.split();
+
+		IntStream.range(0, numberOfChunks).parallel().forEach((c) -> {
+			int end = Math.min(numberOfRows, (c + 1) * CHUNK_SIZE);
+			for (int i = c * CHUNK_SIZE; i < end; i++) {
+				instances[i] = new double[dimension];
+				labels[i] = new double[numberOfLabels];
+				generator.generate(randoms[c], instances[i], labels[i]);
+			}
+		});
+		return new SyntheticData(instances, labels);
+	}
+
+	/**
+	 * linearly separable data: standard normal features, labelled 1 if their sum
+	 * is positive and 0 otherwise. With two dimensions and the second feature
+	 * negated this is the diagonal data of the tests.
+	 *
+	 * @param numberOfRows
+	 * @param dimension
+	 * @param seed
+	 */
+	public static SyntheticData diagonal(int numberOfRows, int dimension, long seed) {
+		return generate(numberOfRows, dimension, 1, seed, (random, instance, label) -> {
+			double sum = 0;
+			for (int d = 0; d < dimension; d++) {
+				instance[d] = InitializerHelper.nextGaussian(random);
+				sum += instance[d];
+			}
+			label[0] = sum > 0 ? 1 : 0;
+		});
+	}
+
+	/**
+	 * data which is not linearly separable: two features uniform in [-1, 1],
+	 * labelled 1 if exactly one of them is positive
+	 *
+	 * @param numberOfRows
+	 * @param seed
+	 */
+	public static SyntheticData xor(int numberOfRows, long seed) {
+		return generate(numberOfRows, 2, 1, seed, (random, instance, label) -> {
+			instance[0] = 2 * random.nextDouble() - 1;
+			instance[1] = 2 * random.nextDouble() - 1;
+			label[0] = (instance[0] > 0) != (instance[1] > 0) ? 1 : 0;
+		});
+	}
+
+	/**
+	 * one gaussian blob per class around centers drawn from the seed, with one
+	 * hot encoded labels
+	 *
+	 * @param numberOfRows
+	 * @param dimension
+	 * @param numberOfClasses
+	 * @param standardDeviation the spread of the blobs; the centers are drawn uniformly from [-1, 1]
+	 * @param seed
+	 */
+	public static SyntheticData gaussianBlobs(int numberOfRows, int dimension, int numberOfClasses, double standardDeviation, long seed) {
+		SplittableRandom centerRandom = new SplittableRandom(~seed);
+		double[][] centers = new double[numberOfClasses][dimension];
+		for (double[] center : centers)
+			for (int d = 0; d < dimension; d++)
+				center[d] = 2 * centerRandom.nextDouble() - 1;
+
+		return generate(numberOfRows, dimension, numberOfClasses, seed, (random, instance, label) -> {
+			int c = random.nextInt(numberOfClasses);
+			for (int d = 0; d < dimension; d++)
+				instance[d] = centers[c][d] + standardDeviation * InitializerHelper.nextGaussian(random);
+			label[c] = 1;
+		});
+	}
+
+	/**
+	 * high dimensional binary features, each set with the given density, labelled
+	 * 1 if the sum of a hidden weight per set feature is positive. The hidden
+	 * weights are drawn from the seed.
+	 *
+	 * @param numberOfRows
+	 * @param dimension
+	 * @param density the probability of a feature to be 1
+	 * @param seed
+	 */
+	public static SyntheticData sparse(int numberOfRows, int dimension, double density, long seed) {
+		SplittableRandom weightRandom = new SplittableRandom(~seed);
+		double[] weights = new double[dimension];
+		for (int d = 0; d < dimension; d++)
+			weights[d] = InitializerHelper.nextGaussian(weightRandom);
+
+		return generate(numberOfRows, dimension, 1, seed, (random, instance, label) -> {
+			double sum = 0;
+			for (int d = 0; d < dimension; d++) {
+				if (random.nextDouble() < density) {
+					instance[d] = 1;
+					sum += weights[d];
+				}
+			}
+			label[0] = sum > 0 ? 1 : 0;
+		});
+	}
+
+	/**
+	 * the generated instances; the arrays are not copied
+	 */
+	public double[][] getInstances() {
+		return instances;
+	}
+
+	/**
+	 * the labels of the instances; the arrays are not copied
+	 */
+	public double[][] getLabels() {
+		return labels;
+	}
+
+	public int getNumberOfRows() {
+		return instances.length;
+	}
+
+	public int getDimension() {
+		return instances.length == 0 ? 0 : instances[0].length;
+	}
+
+}
@@ -0,0 +1,125 @@
+package net.brunel.nodes;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The limits of a training by
+ * {@link Network#trainWithBudget(double[][], double[][], TrainingBudget)}: a
+ * wall clock time, optionally the CPU time of the training thread and a number
+ * of iterations. The training can also be cancelled from another thread by
+ * {@link #cancel()}. The limits are checked between iterations, so an
+ * iteration which has started is always completed.
+ */
+public class TrainingBudget {
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	/**
+	 * why a training stopped
+	 */
+	public enum StopReason {
+		/** the wall clock time was used up */
+		TIME,
+		/** the CPU time was used up */
+		CPU_TIME,
+		/** the maximum number of iterations was run */
+		ITERATIONS,
+		/** the error could not be reduced any further */
+		CONVERGED,
+		/** {@link TrainingBudget#cancel()} was called or the thread was interrupted */
+		CANCELLED,
+	}
+
+	private final long nanos;
+	private long cpuNanos = -1;
+	private long maximumIterations = Long.MAX_VALUE;
+	private long evaluationInterval = 10;
+	private volatile boolean cancelled;
+
+	/**
+	 * @param time the wall clock time of the training
+	 * @param unit
+	 */
+	public TrainingBudget(long time, TimeUnit unit) {
+		this.nanos = unit.toNanos(time);
+	}
+
+	/**
+	 * additionally limits the CPU time of the training thread, if the JVM can
+	 * measure it
+	 *
+	 * @param time
+	 * @param unit
+	 */
+	public void setCpuTime(long time, TimeUnit unit) {
+		this.cpuNanos = unit.toNanos(time);
+	}
+
+	/**
+	 * additionally limits the number of iterations
+	 *
+	 * @param maximumIterations
+	 */
+	public void setMaximumIterations(long maximumIterations) {
+		this.maximumIterations = maximumIterations;
+	}
+
+	public long getEvaluationInterval() {
+		return evaluationInterval;
+	}
+
+	/**
+	 * the number of iterations between two computations of the validation loss,
+	 * 10 by default. Every computation is a pass over the validation data, so 1
+	 * doubles the cost of a training evaluated on its training data, while larger
+	 * intervals restore the best parameters less precisely.
+	 *
+	 * @param evaluationInterval
+	 */
+	public void setEvaluationInterval(long evaluationInterval) {
+		if (evaluationInterval < 1)
+			throw new IllegalArgumentException("evaluationInterval must be positive");
+		this.evaluationInterval = evaluationInterval;
+	}
+
+	/**
+	 * stops the training after its current iteration; may be called from any
+	 * thread
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * the CPU time of the current thread, or -1 if it cannot be measured
+	 */
+	static long currentThreadCpuNanos() {
+		return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+	}
+
+	/**
+	 * the reason to stop, or null to continue
+	 *
+	 * @param iterations the number of iterations run so far
+	 * @param elapsedNanos the wall clock time used so far
+	 * @param startCpuNanos the CPU time of the thread at the start of the training
+	 */
+	StopReason check(long iterations, long elapsedNanos, long startCpuNanos) {
+		if (cancelled || Thread.currentThread().isInterrupted())
+			return StopReason.CANCELLED;
+		if (iterations >= maximumIterations)
+			return StopReason.ITERATIONS;
+		if (elapsedNanos >= nanos)
+			return StopReason.TIME;
+		if (cpuNanos >= 0 && startCpuNanos >= 0 && currentThreadCpuNanos() - startCpuNanos >= cpuNanos)
+			return StopReason.CPU_TIME;
+		return null;
+	}
+
+}
@@ -0,0 +1,139 @@
+package net.brunel.nodes;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The JDK Flight Recorder events of a {@link Network}: one event per call of a
+ * training phase, and one per layer within the phase. Events are only created
+ * while a recording has enabled them, so without a recording the cost is one
+ * check per phase and no allocation. The event types are only looked up once
+ * the Flight Recorder has been initialized, so a process which never records
+ * does not register them.
+ * <p>
+ * The events are named net.brunel.nodes.Phase and net.brunel.nodes.LayerPhase,
+ * e.g. for {@code jfr print --events net.brunel.nodes.LayerPhase recording.jfr}.
+ */
+final class TrainingEvents {
+
+	static final String FEED_FORWARD = "feedForward";
+	static final String COMPUTE_ERRORS_OF_LAST_LAYER = "computeErrorsOfLastLayer";
+	static final String BACKPROPAGATE_ERROR = "backpropagateError";
+	static final String UPDATE_WEIGHTS = "updateWeights";
+	static final String APPLY_WEIGHTS = "applyWeights";
+	static final String COMMIT_UPDATE = "commitUpdate";
+
+	@Name("net.brunel.nodes.Phase")
+	@Label("Network Phase")
+	@Category({ "Neural Network" })
+	@Description("One call of a phase of training or classification")
+	@StackTrace(false)
+	static final class PhaseEvent extends Event {
+		@Label("Phase")
+		String phase;
+
+		@Label("Samples")
+		int samples;
+
+		@Label("Layers")
+		int layers;
+	}
+
+	@Name("net.brunel.nodes.LayerPhase")
+	@Label("Network Layer Phase")
+	@Category({ "Neural Network" })
+	@Description("The work of one layer within one call of a phase")
+	@StackTrace(false)
+	static final class LayerPhaseEvent extends Event {
+		@Label("Phase")
+		String phase;
+
+		@Label("Layer")
+		int layer;
+
+		@Label("Nodes")
+		int nodes;
+
+		@Label("Inputs")
+		int inputs;
+
+		@Label("Samples")
+		int samples;
+	}
+
+	/*
+	 * loaded on first use, which registers the event types
+	 */
+	private static final class Types {
+		static final EventType PHASE = EventType.getEventType(PhaseEvent.class);
+		static final EventType LAYER_PHASE = EventType.getEventType(LayerPhaseEvent.class);
+	}
+
+	private TrainingEvents() {
+	}
+
+	/**
+	 * whether a recording has enabled any of the events
+	 */
+	static boolean isEnabled() {
+		return FlightRecorder.isInitialized() && (Types.PHASE.isEnabled() || Types.LAYER_PHASE.isEnabled());
+	}
+
+	/**
+	 * starts a phase event, or returns null if phase events are not recorded
+	 *
+	 * @param phase
+	 * @param samples the number of samples processed by the phase
+	 * @param layers the number of layers of the network
+	 */
+	static PhaseEvent beginPhase(String phase, int samples, int layers) {
+		// without a Flight Recorder there is no recording to enable the events
+		if (!FlightRecorder.isInitialized() || !Types.PHASE.isEnabled())
+			return null;
+		PhaseEvent event = new PhaseEvent();
+		event.phase = phase;
+		event.samples = samples;
+		event.layers = layers;
+		event.begin();
+		return event;
+	}
+
+	static void end(PhaseEvent event) {
+		if (event != null)
+			event.commit();
+	}
+
+	/**
+	 * starts a layer event, or returns null if layer events are not recorded
+	 *
+	 * @param phase
+	 * @param layer
+	 * @param nodes the number of nodes of the layer
+	 * @param inputs the number of nodes of the previous layer
+	 * @param samples the number of samples processed by the phase
+	 */
+	static LayerPhaseEvent beginLayerPhase(String phase, int layer, int nodes, int inputs, int samples) {
+		if (!FlightRecorder.isInitialized() || !Types.LAYER_PHASE.isEnabled())
+			return null;
+		LayerPhaseEvent event = new LayerPhaseEvent();
+		event.phase = phase;
+		event.layer = layer;
+		event.nodes = nodes;
+		event.inputs = inputs;
+		event.samples = samples;
+		event.begin();
+		return event;
+	}
+
+	static void end(LayerPhaseEvent event) {
+		if (event != null)
+			event.commit();
+	}
+
+}
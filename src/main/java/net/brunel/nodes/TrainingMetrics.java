@@ -0,0 +1,134 @@
+package net.brunel.nodes;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Performance metrics of the training of a {@link Network}, see
+ * {@link Network#setTrainingMetrics(TrainingMetrics)}. The metrics are written by
+ * the training thread and can be polled from any thread, either through the
+ * getters or as an MXBean registered with the platform MBean server.
+ * <p>
+ * Per-sample training only updates counters; the loss, the norms and the
+ * allocation counter are only updated by batch iterations.
+ */
+public class TrainingMetrics implements TrainingMetricsMXBean {
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	private volatile long samplesProcessed;
+	private volatile long iterations;
+	private volatile long trainingNanos;
+	private volatile long lastIterationNanos;
+	private volatile double learningRate;
+	private volatile double loss = Double.NaN;
+	private volatile double[] gradientNorms = new double[0];
+	private volatile double[] weightNorms = new double[0];
+	private volatile long lastIterationAllocatedBytes = -1;
+	private ObjectName objectName;
+
+	/**
+	 * registers these metrics with the platform MBean server
+	 *
+	 * @param name the name of the training, used as the name key of the object name
+	 */
+	public synchronized ObjectName register(String name) throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		objectName = new ObjectName("net.brunel.nodes:type=TrainingMetrics,name=" + ObjectName.quote(name));
+		server.registerMBean(this, objectName);
+		return objectName;
+	}
+
+	public synchronized void unregister() throws JMException {
+		if (objectName == null)
+			return;
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		objectName = null;
+	}
+
+	void recordSamples(int samples, long nanos, double currentLearningRate) {
+		samplesProcessed += samples;
+		trainingNanos += nanos;
+		learningRate = currentLearningRate;
+	}
+
+	void recordIteration(int samples, long nanos, double currentLearningRate, double currentLoss, double[] currentGradientNorms,
+			double[] currentWeightNorms, long allocatedBytes) {
+		recordSamples(samples, nanos, currentLearningRate);
+		iterations++;
+		lastIterationNanos = nanos;
+		loss = currentLoss;
+		gradientNorms = currentGradientNorms;
+		weightNorms = currentWeightNorms;
+		lastIterationAllocatedBytes = allocatedBytes;
+	}
+
+	/**
+	 * the bytes allocated by the current thread so far, or -1 if not supported
+	 */
+	static long currentThreadAllocatedBytes() {
+		if (THREADS instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+			if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled())
+				return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	@Override
+	public long getSamplesProcessed() {
+		return samplesProcessed;
+	}
+
+	@Override
+	public long getIterations() {
+		return iterations;
+	}
+
+	@Override
+	public double getSamplesPerSecond() {
+		long nanos = trainingNanos;
+		return nanos == 0 ? 0 : samplesProcessed / (nanos / 1e9);
+	}
+
+	@Override
+	public double getLastIterationMillis() {
+		return lastIterationNanos / 1e6;
+	}
+
+	@Override
+	public double getLearningRate() {
+		return learningRate;
+	}
+
+	@Override
+	public double getLoss() {
+		return loss;
+	}
+
+	@Override
+	public double[] getGradientNorms() {
+		return gradientNorms.clone();
+	}
+
+	@Override
+	public double[] getWeightNorms() {
+		return weightNorms.clone();
+	}
+
+	@Override
+	public long getLastIterationAllocatedBytes() {
+		return lastIterationAllocatedBytes;
+	}
+
+	@Override
+	public String toString() {
+		return "iterations=" + iterations + ", samples=" + samplesProcessed + ", samples/s=" + getSamplesPerSecond() + ", loss=" + loss
+				+ ", learningRate=" + learningRate;
+	}
+
+}
@@ -0,0 +1,42 @@
+package net.brunel.nodes;
+
+/**
+ * The management interface of {@link TrainingMetrics}.
+ */
+public interface TrainingMetricsMXBean {
+
+	long getSamplesProcessed();
+
+	long getIterations();
+
+	/**
+	 * the samples processed per second of training time, averaged over the whole training
+	 */
+	double getSamplesPerSecond();
+
+	double getLastIterationMillis();
+
+	double getLearningRate();
+
+	/**
+	 * the loss after the last batch iteration
+	 */
+	double getLoss();
+
+	/**
+	 * the L2 norm of the mean gradient of the last batch iteration, indexed by layer-1
+	 */
+	double[] getGradientNorms();
+
+	/**
+	 * the L2 norm of weights and biases after the last batch iteration, indexed by layer-1
+	 */
+	double[] getWeightNorms();
+
+	/**
+	 * the bytes allocated by the training thread during the last batch iteration,
+	 * -1 if not supported by the JVM
+	 */
+	long getLastIterationAllocatedBytes();
+
+}
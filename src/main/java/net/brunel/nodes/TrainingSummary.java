@@ -0,0 +1,78 @@
+package net.brunel.nodes;
+
+/**
+ * The outcome of a training by
+ * {@link Network#trainWithBudget(double[][], double[][], TrainingBudget)}.
+ */
+public class TrainingSummary {
+
+	private final long iterations;
+	private final long bestIteration;
+	private final double bestLoss;
+	private final double lastLoss;
+	private final long elapsedNanos;
+	private final long cpuNanos;
+	private final TrainingBudget.StopReason stopReason;
+
+	TrainingSummary(long iterations, long bestIteration, double bestLoss, double lastLoss, long elapsedNanos, long cpuNanos,
+			TrainingBudget.StopReason stopReason) {
+		this.iterations = iterations;
+		this.bestIteration = bestIteration;
+		this.bestLoss = bestLoss;
+		this.lastLoss = lastLoss;
+		this.elapsedNanos = elapsedNanos;
+		this.cpuNanos = cpuNanos;
+		this.stopReason = stopReason;
+	}
+
+	/**
+	 * the number of iterations run
+	 */
+	public long getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * the evaluated iteration after which the loss was lowest, 0 for the network
+	 * before the training
+	 */
+	public long getBestIteration() {
+		return bestIteration;
+	}
+
+	/**
+	 * the lowest loss, which is the one of the network after the training
+	 */
+	public double getBestLoss() {
+		return bestLoss;
+	}
+
+	/**
+	 * the loss after the last iteration
+	 */
+	public double getLastLoss() {
+		return lastLoss;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * the CPU time of the training thread, or -1 if it could not be measured
+	 */
+	public long getCpuNanos() {
+		return cpuNanos;
+	}
+
+	public TrainingBudget.StopReason getStopReason() {
+		return stopReason;
+	}
+
+	@Override
+	public String toString() {
+		return iterations + " iterations in " + (elapsedNanos / 1000000) + " ms, stopped by " + stopReason + ", best loss " + bestLoss
+				+ " after iteration " + bestIteration + ", last loss " + lastLoss;
+	}
+
+}
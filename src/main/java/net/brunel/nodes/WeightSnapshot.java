@@ -0,0 +1,137 @@
+package net.brunel.nodes;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import net.brunel.nodes.exceptions.InputDimensionMismatchException;
+import net.brunel.nodes.exceptions.InputException;
+
+/**
+ * An immutable copy of the weights and biases of a {@link Network} which can be
+ * used for classification by any number of threads without locking, while the
+ * network itself is trained further. See {@link Network#setSnapshotInterval(int)}.
+ * Networks with max pooling layers cannot be copied.
+ * <p>
+ * A {@link LocallyConnectedNode} is copied as the weights from its inputs only,
+ * and all nodes of a filter of a {@link ConvolutionLayer} share one copy of its
+ * kernel, so a snapshot is about as large as {@link Network#getParameters()}.
+ */
+public final class WeightSnapshot {
+
+	private final long version;
+	private final int numberOfInputs;
+
+	/**
+	 * indexed by [layer-1][node][input], or by [layer-1][node][i] for the i-th
+	 * input index of a locally connected node
+	 */
+	private final double[][][] weights;
+
+	/**
+	 * the input indices of locally connected nodes, null for the other nodes;
+	 * indexed by [layer-1][node]
+	 */
+	private final int[][][] inputIndices;
+
+	/**
+	 * indexed by [layer-1][node]
+	 */
+	private final double[][] biases;
+
+	/**
+	 * indexed by [layer-1][node]
+	 */
+	private final Function[][] functions;
+
+	private final FeatureStandardizer featureStandardizer;
+
+	WeightSnapshot(Network network, long version) {
+		this.version = version;
+		this.numberOfInputs = network.getNumberOfInputs();
+		int numberOfLayers = network.getNumberOfLayers();
+		weights = new double[numberOfLayers - 1][][];
+		inputIndices = new int[numberOfLayers - 1][][];
+		biases = new double[numberOfLayers - 1][];
+		functions = new Function[numberOfLayers - 1][];
+		featureStandardizer = network.getFeatureStandardizer();
+
+		int numberOfPreviousNodes = numberOfInputs;
+		for (int l = 1; l < numberOfLayers; l++) {
+			Node[] currentLayer = network.getLayer(l);
+			weights[l - 1] = new double[currentLayer.length][];
+			inputIndices[l - 1] = new int[currentLayer.length][];
+			biases[l - 1] = new double[currentLayer.length];
+			functions[l - 1] = new Function[currentLayer.length];
+			// the copied kernels of the filters of a convolution layer
+			Map<Integer, double[]> kernels = new HashMap<>();
+			for (int j = 0; j < currentLayer.length; j++) {
+				if (currentLayer[j] instanceof PoolingLayer.MaxPoolingNode)
+					throw new IllegalStateException("the weights of max pooling depend on the input and cannot be copied");
+				if (currentLayer[j] instanceof ConvolutionLayer.ConvolutionNode) {
+					ConvolutionLayer.ConvolutionNode node = (ConvolutionLayer.ConvolutionNode) currentLayer[j];
+					inputIndices[l - 1][j] = node.getInputIndices();
+					weights[l - 1][j] = kernels.computeIfAbsent(Integer.valueOf(node.getFilter()), filter -> copyLocalWeights(node));
+				} else if (currentLayer[j] instanceof LocallyConnectedNode) {
+					LocallyConnectedNode node = (LocallyConnectedNode) currentLayer[j];
+					inputIndices[l - 1][j] = node.getInputIndices();
+					weights[l - 1][j] = copyLocalWeights(node);
+				} else {
+					weights[l - 1][j] = new double[numberOfPreviousNodes];
+					for (int k = 0; k < numberOfPreviousNodes; k++)
+						weights[l - 1][j][k] = currentLayer[j].getWeightFromInput(k);
+				}
+				biases[l - 1][j] = currentLayer[j].b();
+				functions[l - 1][j] = currentLayer[j].getFunction();
+			}
+			numberOfPreviousNodes = currentLayer.length;
+		}
+	}
+
+	private static double[] copyLocalWeights(LocallyConnectedNode node) {
+		int[] inputs = node.getInputIndices();
+		double[] localWeights = new double[inputs.length];
+		for (int i = 0; i < inputs.length; i++)
+			localWeights[i] = node.getWeightFromInput(inputs[i]);
+		return localWeights;
+	}
+
+	/**
+	 * classifies the given instance with the weights of this snapshot
+	 *
+	 * @param input
+	 */
+	public double[] feedForward(double[] input) throws InputException {
+		if (numberOfInputs != input.length)
+			throw new InputDimensionMismatchException(numberOfInputs, input.length);
+
+		double[] activation = featureStandardizer == null ? input : featureStandardizer.standardize(input);
+		for (int l = 0; l < weights.length; l++) {
+			double[] nextActivation = new double[weights[l].length];
+			for (int j = 0; j < nextActivation.length; j++) {
+				int[] inputs = inputIndices[l][j];
+				double z = biases[l][j];
+				if (inputs == null) {
+					z += MyMath.dotProduct(weights[l][j], activation);
+				} else {
+					for (int i = 0; i < inputs.length; i++)
+						z += weights[l][j][i] * activation[inputs[i]];
+				}
+				nextActivation[j] = functions[l][j].computeAt(z);
+			}
+			activation = nextActivation;
+		}
+		return activation;
+	}
+
+	/**
+	 * the number of snapshots published by the network before this one
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	public int getNumberOfInputs() {
+		return numberOfInputs;
+	}
+
+}
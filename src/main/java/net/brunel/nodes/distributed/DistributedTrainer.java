@@ -0,0 +1,166 @@
+package net.brunel.nodes.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.brunel.nodes.Checkpoint;
+import net.brunel.nodes.DelimitedFileBatchSource;
+import net.brunel.nodes.InitializerHelper;
+import net.brunel.nodes.IterationException;
+import net.brunel.nodes.Network;
+import net.brunel.nodes.exceptions.InputException;
+import net.brunel.nodes.exceptions.NetworkLayerException;
+
+/**
+ * Worker of a data parallel training, coordinated by a {@link ParameterServer}.
+ * <p>
+ * Every worker trains its own replica of the {@link Network} on its shard of the
+ * data using {@link Network#trainIterationBatch(double[][], double[][])} and
+ * periodically replaces its parameters by the average of all workers. Averaging
+ * after every iteration with equally sized shards yields the same steps as a
+ * single process training on the union of the shards.
+ * <p>
+ * All workers need to be configured with the same network topology, learning
+ * rate schedule and number of iterations.
+ */
+public class DistributedTrainer implements Closeable {
+
+	private final Network network;
+	private final Socket socket;
+	private final DataInputStream input;
+	private final DataOutputStream output;
+
+	public DistributedTrainer(Network network, String host, int port) throws IOException {
+		this.network = network;
+		this.socket = new Socket(host, port);
+		socket.setTcpNoDelay(true);
+		input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+	}
+
+	/**
+	 * trains on the given shard, averaging the parameters with all other workers
+	 * every averagingInterval iterations and after the last one. A worker whose
+	 * error cannot be reduced any further stops training, but still takes part
+	 * in the remaining averaging rounds, since the server waits for all workers
+	 * in every round.
+	 *
+	 * @param instances the shard of this worker
+	 * @param labels the labels of the shard
+	 * @param numIterations the number of iterations
+	 * @param averagingInterval the number of local iterations between two averaging rounds
+	 */
+	public void trainBatch(double[][] instances, double[][] labels, int numIterations, int averagingInterval) throws InputException, IOException {
+		exchange(0);
+
+		double learningRate = network.getLearningRate();
+		boolean converged = false;
+		int i = 0;
+		while (i++ < numIterations) {
+			if (!converged) {
+				try {
+					network.trainIterationBatch(instances, labels);
+				} catch (IterationException e) {
+					System.out.println("Stopping iterations at iteration " + i + ", cannot reduce error any further!");
+					converged = true;
+				}
+			}
+
+			if (i % averagingInterval == 0 || i == numIterations)
+				exchange(instances.length);
+
+			if (i % network.getLearningRateIterationAmount() == 0) {
+				learningRate *= network.getLearningRateIterationDecay();
+				network.setLearningRate(learningRate);
+			}
+		}
+	}
+
+	private void exchange(int shardSize) throws InputException, IOException {
+		output.writeInt(shardSize);
+		ParameterServer.writeParameters(output, network.getParameters());
+		output.flush();
+		network.setParameters(ParameterServer.readParameters(input));
+	}
+
+	@Override
+	public void close() throws IOException {
+		socket.close();
+	}
+
+	/**
+	 * a network of sigmoid layers with Xavier initialized weights, the last
+	 * layer having one node per label
+	 *
+	 * @param dimension
+	 * @param layerWidths the number of nodes of every layer
+	 * @param seed
+	 */
+	static Network newNetwork(int dimension, int[] layerWidths, long seed) throws NetworkLayerException {
+		Network network = new Network(dimension, layerWidths.length);
+		int numberOfInputs = dimension;
+		for (int l = 0; l < layerWidths.length; l++) {
+			int numberOfOutputs = l + 1 < layerWidths.length ? layerWidths[l + 1] : 1;
+			network.configureLayer(l + 1, InitializerHelper.newXavierLayer(layerWidths[l], numberOfInputs, numberOfOutputs, seed + l));
+			numberOfInputs = layerWidths[l];
+		}
+		return network;
+	}
+
+	/**
+	 * reads all instances of a delimited file, see {@link DelimitedFileBatchSource}
+	 *
+	 * @return the instances and the labels
+	 */
+	static double[][][] readShard(Path file, int dimension, int numberOfLabels) throws IOException, InputException {
+		List<double[]> instances = new ArrayList<>();
+		List<double[]> labels = new ArrayList<>();
+		try (DelimitedFileBatchSource source = new DelimitedFileBatchSource(file, ',', dimension, numberOfLabels, false)) {
+			double[][] instanceRows = new double[1][dimension];
+			double[][] labelRows = new double[1][numberOfLabels];
+			while (source.read(instanceRows, labelRows) == 1) {
+				instances.add(instanceRows[0].clone());
+				labels.add(labelRows[0].clone());
+			}
+		}
+		return new double[][][] { instances.toArray(new double[0][]), labels.toArray(new double[0][]) };
+	}
+
+	/**
+	 * runs a worker process, arguments are the host and port of the
+	 * {@link ParameterServer}, the shard as a comma separated file without header,
+	 * the number of features, the comma separated layer widths, the number of
+	 * iterations, the averaging interval, the learning rate, the seed of the
+	 * initial weights and the checkpoint file to write the trained network to
+	 */
+	public static void main(String[] args) throws IOException, InputException {
+		if (args.length != 10) {
+			System.err.println("Usage: DistributedTrainer host port shard.csv dimension layerWidths iterations averagingInterval learningRate seed result.checkpoint");
+			System.exit(2);
+		}
+		int dimension = Integer.parseInt(args[3]);
+		String[] widths = args[4].split(",");
+		int[] layerWidths = new int[widths.length];
+		for (int l = 0; l < widths.length; l++)
+			layerWidths[l] = Integer.parseInt(widths[l].trim());
+		int numIterations = Integer.parseInt(args[5]);
+
+		Network network = newNetwork(dimension, layerWidths, Long.parseLong(args[8]));
+		network.setLearningRate(Double.parseDouble(args[7]));
+		double[][][] shard = readShard(Paths.get(args[2]), dimension, layerWidths[layerWidths.length - 1]);
+		try (DistributedTrainer trainer = new DistributedTrainer(network, args[0], Integer.parseInt(args[1]))) {
+			trainer.trainBatch(shard[0], shard[1], numIterations, Integer.parseInt(args[6]));
+		}
+		Checkpoint.capture(network, numIterations).write(Paths.get(args[9]));
+	}
+
+}
@@ -0,0 +1,148 @@
+package net.brunel.nodes.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Coordinator of a data parallel training with {@link DistributedTrainer}s.
+ * <p>
+ * The server waits for a fixed number of workers to connect. The parameters of
+ * the first worker are broadcast to all workers so that they start from the
+ * same model. Afterwards, the server repeatedly collects the parameters of all
+ * workers, averages them weighted by the size of each worker's shard and sends
+ * the average back, until the workers disconnect.
+ * <p>
+ * Every message is a parameter vector, written as the number of parameters
+ * followed by the parameters; messages from the workers are preceded by the
+ * size of their shard.
+ */
+public class ParameterServer implements Runnable, Closeable {
+
+	private final ServerSocket serverSocket;
+	private final int numberOfWorkers;
+	private int rounds;
+
+	/**
+	 * @param port the port to listen on, 0 for an ephemeral port
+	 * @param numberOfWorkers the number of workers taking part in the training
+	 */
+	public ParameterServer(int port, int numberOfWorkers) throws IOException {
+		this.serverSocket = new ServerSocket(port);
+		this.numberOfWorkers = numberOfWorkers;
+	}
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * the number of averaging rounds that have been completed
+	 */
+	public synchronized int getRounds() {
+		return rounds;
+	}
+
+	@Override
+	public void run() {
+		Socket[] sockets = new Socket[numberOfWorkers];
+		DataInputStream[] inputs = new DataInputStream[numberOfWorkers];
+		DataOutputStream[] outputs = new DataOutputStream[numberOfWorkers];
+		try {
+			for (int w = 0; w < numberOfWorkers; w++) {
+				sockets[w] = serverSocket.accept();
+				sockets[w].setTcpNoDelay(true);
+				inputs[w] = new DataInputStream(new BufferedInputStream(sockets[w].getInputStream()));
+				outputs[w] = new DataOutputStream(new BufferedOutputStream(sockets[w].getOutputStream()));
+			}
+
+			// synchronize the initial model
+			double[] initialParameters = null;
+			for (int w = 0; w < numberOfWorkers; w++) {
+				inputs[w].readInt();
+				double[] parameters = readParameters(inputs[w]);
+				if (w == 0)
+					initialParameters = parameters;
+			}
+			broadcast(outputs, initialParameters);
+
+			while (true) {
+				double[] average = null;
+				long totalShardSize = 0;
+				for (int w = 0; w < numberOfWorkers; w++) {
+					int shardSize = inputs[w].readInt();
+					double[] parameters = readParameters(inputs[w]);
+					if (average == null)
+						average = new double[parameters.length];
+					for (int i = 0; i < parameters.length; i++)
+						average[i] += shardSize * parameters[i];
+					totalShardSize += shardSize;
+				}
+				for (int i = 0; i < average.length; i++)
+					average[i] /= totalShardSize;
+				broadcast(outputs, average);
+				synchronized (this) {
+					rounds++;
+				}
+			}
+		} catch (EOFException e) {
+			// the workers are done
+		} catch (IOException e) {
+			if (!serverSocket.isClosed())
+				e.printStackTrace();
+		} finally {
+			for (Socket socket : sockets) {
+				if (socket != null) {
+					try {
+						socket.close();
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+				}
+			}
+		}
+	}
+
+	private static void broadcast(DataOutputStream[] outputs, double[] parameters) throws IOException {
+		for (DataOutputStream output : outputs) {
+			writeParameters(output, parameters);
+			output.flush();
+		}
+	}
+
+	static double[] readParameters(DataInputStream input) throws IOException {
+		double[] parameters = new double[input.readInt()];
+		for (int i = 0; i < parameters.length; i++)
+			parameters[i] = input.readDouble();
+		return parameters;
+	}
+
+	static void writeParameters(DataOutputStream output, double[] parameters) throws IOException {
+		output.writeInt(parameters.length);
+		for (double d : parameters)
+			output.writeDouble(d);
+	}
+
+	@Override
+	public void close() throws IOException {
+		serverSocket.close();
+	}
+
+	/**
+	 * starts a server, arguments are the port and the number of workers
+	 */
+	public static void main(String[] args) throws IOException {
+		try (ParameterServer server = new ParameterServer(Integer.parseInt(args[0]), Integer.parseInt(args[1]))) {
+			System.out.println("Waiting for " + args[1] + " workers on port " + server.getPort());
+			server.run();
+			System.out.println("Training finished after " + server.getRounds() + " rounds");
+		}
+	}
+
+}
@@ -0,0 +1,142 @@
+package net.brunel.nodes;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.brunel.nodes.exceptions.InputException;
+import net.brunel.nodes.exceptions.NetworkLayerException;
+
+public class BatchNormalizationNodeTest {
+
+	@Test
+	public void testRunningStatistics() throws InputException {
+		BatchNormalizationNode node = new BatchNormalizationNode(2, 1);
+		node.setMomentum(1);
+		node.prepareUpdate();
+		Random r = new Random(100);
+		for (int i = 0; i < 2000; i++)
+			node.computeNodeOutput(new double[] { r.nextGaussian(), 5 + 2 * r.nextGaussian() });
+		// constant within the iteration
+		assertEquals(0, node.getRunningMean(), 0);
+		assertEquals(1, node.getRunningVariance(), 0);
+		node.commitUpdate(0, 1);
+
+		assertEquals(5, node.getRunningMean(), 0.2);
+		assertEquals(4, node.getRunningVariance(), 0.5);
+		// not collecting after the commit
+		double mean = node.getRunningMean();
+		assertEquals(0, node.computeNodeOutput(new double[] { 100, mean }), 1e-12);
+		node.commitUpdate(0, 1);
+		assertEquals(mean, node.getRunningMean(), 0);
+		assertEquals(0, node.w(0), 0);
+	}
+
+	@Test
+	public void testMomentum() throws InputException {
+		BatchNormalizationNode node = new BatchNormalizationNode(1, 0);
+		node.setMomentum(0.5);
+		node.prepareUpdate();
+		node.computeNodeOutput(new double[] { 1 });
+		node.computeNodeOutput(new double[] { 3 });
+		node.commitUpdate(0, 1);
+
+		// the mixture of the prior N(0, 1) and the batch {1, 3}
+		assertEquals(1, node.getRunningMean(), 1e-12);
+		assertEquals(2, node.getRunningVariance(), 1e-12);
+	}
+
+	@Test
+	public void testTrainingOnUnscaledInputs() throws InputException {
+		double[][] instances = new double[100][];
+		double[][] labels = new double[100][];
+		createShiftedDiagonalData(instances, labels);
+
+		Network plain = new Network(2, 1);
+		plain.configureLayer(1, new SigmoidNeuron[] { new SigmoidNeuron(2, InitializerHelper.newConstantInitializer(1)) });
+		plain.setLearningRate(0.5);
+		plain.trainBatch(instances, labels, 200);
+
+		Network normalized = createNormalizedNetwork();
+		normalized.trainBatch(instances, labels, 200);
+
+		double normalizedError = normalized.computeError(instances, labels);
+		assertTrue(normalizedError < plain.computeError(instances, labels));
+		assertTrue(normalizedError / instances.length < 0.1);
+	}
+
+	@Test
+	public void testFolding() throws InputException {
+		double[][] instances = new double[100][];
+		double[][] labels = new double[100][];
+		createShiftedDiagonalData(instances, labels);
+		Network n = createNormalizedNetwork();
+		n.trainBatch(instances, labels, 50);
+
+		Network folded = n.foldBatchNormalization();
+		assertEquals(n.getNumberOfLayers() - 1, folded.getNumberOfLayers());
+		assertEquals(1, folded.getLayer(1).length);
+		double[][] expected = n.makePredictions(instances);
+		double[][] actual = folded.makePredictions(instances);
+		for (int i = 0; i < instances.length; i++)
+			assertArrayEquals(expected[i], actual[i], 1e-9);
+	}
+
+	@Test(expected = NetworkLayerException.class)
+	public void testFoldingOutputLayer() throws InputException {
+		Network n = new Network(2, 1);
+		n.configureLayer(1, BatchNormalizationNode.createLayer(2));
+		n.foldBatchNormalization();
+	}
+
+	@Test
+	public void testParameters() throws InputException {
+		Network n = createNormalizedNetwork();
+		// w(index) and b() of each normalization node, two weights and a bias of the neuron
+		assertEquals(2 * 2 + 3, n.getNumberOfParameters());
+
+		double[] parameters = n.getParameters();
+		parameters[0] = 2;
+		parameters[3] = 0.5;
+		n.setParameters(parameters);
+		assertArrayEquals(parameters, n.getParameters(), 1e-12);
+		assertEquals(2, n.getLayer(1)[0].w(0), 1e-12);
+		assertEquals(0.5, n.getLayer(1)[1].b(), 1e-12);
+	}
+
+	@Test(expected = NetworkLayerException.class)
+	public void testAsynchronousTraining() throws InputException, InterruptedException {
+		double[][] instances = new double[10][];
+		double[][] labels = new double[10][];
+		createShiftedDiagonalData(instances, labels);
+		createNormalizedNetwork().trainAsynchronous(instances, labels, 1, 2);
+	}
+
+	private Network createNormalizedNetwork() throws InputException {
+		Network n = new Network(2, 2);
+		BatchNormalizationNode[] normalization = BatchNormalizationNode.createLayer(2);
+		for (BatchNormalizationNode node : normalization)
+			node.setMomentum(0.1);
+		n.configureLayer(1, normalization);
+		n.configureLayer(2, new SigmoidNeuron[] { new SigmoidNeuron(2, InitializerHelper.newConstantInitializer(1)) });
+		n.setLearningRate(0.5);
+		return n;
+	}
+
+	/*
+	 * the diagonal data, shifted and scaled far outside the range sigmoid neurons
+	 * are sensitive to
+	 */
+	private void createShiftedDiagonalData(double[][] instances, double[][] labels) {
+		Random r = new Random(100);
+
+		for (int i = 0; i < instances.length; i++) {
+			double x = r.nextGaussian();
+			double y = -1 * r.nextGaussian();
+			instances[i] = new double[] { 50 + 20 * x, 50 + 20 * y };
+			labels[i] = new double[] { x + y > 0 ? 1 : 0 };
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package net.brunel.nodes;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.brunel.nodes.exceptions.InputException;
+
+public class BatchPrefetcherTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path write(String name, SyntheticData data) throws IOException {
+		Path file = folder.getRoot().toPath().resolve(name);
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+			out.println("x1,x2,x3,y");
+			for (int i = 0; i < data.getNumberOfRows(); i++) {
+				double[] instance = data.getInstances()[i];
+				out.println(instance[0] + "," + instance[1] + "," + instance[2] + "," + data.getLabels()[i][0]);
+			}
+		}
+		return file;
+	}
+
+	private Network createNetwork() throws InputException {
+		Network n = new Network(3, 1);
+		n.configureLayer(1, InitializerHelper.newXavierLayer(1, 3, 1, 1));
+		n.setLearningRate(1);
+		return n;
+	}
+
+	private Network createHiddenLayerNetwork() throws InputException {
+		Network n = new Network(3, 2);
+		n.configureLayer(1, InitializerHelper.newXavierLayer(4, 3, 1, 1));
+		n.configureLayer(2, InitializerHelper.newXavierLayer(1, 4, 1, 2));
+		n.setLearningRate(1);
+		return n;
+	}
+
+	@Test
+	public void testTrainingMatchesInMemoryBatches() throws InputException, IterationException, IOException, InterruptedException {
+		SyntheticData data = SyntheticData.diagonal(250, 3, 5);
+		Path file = write("data.csv", data);
+
+		Network prefetched = createNetwork();
+		int numberOfBatches;
+		try (BatchPrefetcher prefetcher = new BatchPrefetcher(
+				Collections.singletonList(new DelimitedFileBatchSource(file, ',', 3, 1, true)), 32, 2, 3)) {
+			numberOfBatches = prefetched.trainBatches(prefetcher);
+		}
+		assertEquals(3 * 8, numberOfBatches);
+
+		Network inMemory = createNetwork();
+		for (int epoch = 0; epoch < 3; epoch++) {
+			for (int from = 0; from < 250; from += 32) {
+				int to = Math.min(250, from + 32);
+				inMemory.trainIterationBatch(Arrays.copyOfRange(data.getInstances(), from, to), Arrays.copyOfRange(data.getLabels(), from, to));
+			}
+		}
+		// the values are printed and parsed exactly, so is the training
+		assertArrayEquals(inMemory.getParameters(), prefetched.getParameters(), 0);
+	}
+
+	@Test
+	public void testSeveralSources() throws InputException, IOException, InterruptedException {
+		Path first = write("first.csv", SyntheticData.diagonal(100, 3, 6));
+		Path second = write("second.csv", SyntheticData.diagonal(70, 3, 7));
+		int rows = 0;
+		try (BatchPrefetcher prefetcher = new BatchPrefetcher(Arrays.asList(new DelimitedFileBatchSource(first, ',', 3, 1, true),
+				new DelimitedFileBatchSource(second, ',', 3, 1, true)), 16, 1, 2)) {
+			BatchPrefetcher.Batch batch;
+			while ((batch = prefetcher.take()) != null) {
+				assertEquals(batch.getSize(), batch.getLabels().length);
+				rows += batch.getSize();
+				prefetcher.release(batch);
+			}
+		}
+		assertEquals(2 * 170, rows);
+	}
+
+	@Test
+	public void testTrainingWithFrozenActivationCaching() throws InputException, IOException, InterruptedException {
+		SyntheticData data = SyntheticData.diagonal(250, 3, 5);
+		Path file = write("data.csv", data);
+
+		Network[] networks = new Network[] { createHiddenLayerNetwork(), createHiddenLayerNetwork() };
+		networks[1].setFrozenActivationCaching(true);
+		for (Network n : networks) {
+			n.setLayerTrainable(1, false);
+			// the buffers of the batches are refilled with other instances, which must not be served from the cache
+			try (BatchPrefetcher prefetcher = new BatchPrefetcher(
+					Collections.singletonList(new DelimitedFileBatchSource(file, ',', 3, 1, true)), 32, 2, 3)) {
+				n.trainBatches(prefetcher);
+			}
+		}
+		assertArrayEquals(networks[0].getParameters(), networks[1].getParameters(), 0);
+		assertEquals(networks[0].computeError(data.getInstances(), data.getLabels()),
+				networks[1].computeError(data.getInstances(), data.getLabels()), 0);
+	}
+
+	@Test(expected = InputException.class)
+	public void testMalformedLine() throws InputException, IOException, InterruptedException {
+		Path file = folder.getRoot().toPath().resolve("malformed.csv");
+		Files.write(file, Arrays.asList("1,2,3,1", "1,2,1"));
+		try (BatchPrefetcher prefetcher = new BatchPrefetcher(
+				Collections.singletonList(new DelimitedFileBatchSource(file, ',', 3, 1, false)), 1, 1, 1)) {
+			createNetwork().trainBatches(prefetcher);
+		}
+	}
+
+}
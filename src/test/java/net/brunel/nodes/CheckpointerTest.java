@@ -0,0 +1,163 @@
+package net.brunel.nodes;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.brunel.nodes.exceptions.InputException;
+
+public class CheckpointerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final double[][] INSTANCES = new double[][] {
+		new double[]{ 1, 0 },
+		new double[]{ 1, 1 },
+		new double[]{ 2, 1 },
+	};
+	private static final double[][] LABELS = new double[][]{
+		new double[]{ 1 },
+		new double[]{ 0 },
+		new double[]{ 1 },
+	};
+
+	private Network createNetwork() throws InputException {
+		Network n = new Network(2, 2);
+		n.configureLayer(1, new SigmoidNeuron[] { 
+				new SigmoidNeuron(2, InitializerHelper.newCircularInitializer(new double[] {1,0,1})),
+				new SigmoidNeuron(2, InitializerHelper.newCircularInitializer(new double[] {0,1,-1})),
+				});
+		n.configureLayer(2, new SigmoidNeuron[] { 
+				new SigmoidNeuron(2, InitializerHelper.newCircularInitializer(new double[] {0.3,0.7,0})),
+				});
+		n.setLearningRate(1);
+		n.setLearningRateMultiplier(10, 0.9);
+		return n;
+	}
+
+	@Test
+	public void testCheckpointAndResume() throws InputException, IOException {
+		Path file = folder.getRoot().toPath().resolve("network.checkpoint");
+
+		Network uninterrupted = createNetwork();
+		uninterrupted.trainBatch(INSTANCES, LABELS, 100);
+
+		Network interrupted = createNetwork();
+		try (Checkpointer checkpointer = new Checkpointer(file, 20, 0, TimeUnit.SECONDS)) {
+			interrupted.setCheckpointer(checkpointer);
+			interrupted.trainBatch(INSTANCES, LABELS, 50);
+		}
+		Checkpoint checkpoint = Checkpoint.read(file);
+		assertEquals(40, checkpoint.getIteration());
+
+		Network resumed = createNetwork();
+		resumed.resumeBatch(INSTANCES, LABELS, 100, file);
+
+		assertEquals(uninterrupted.getLearningRate(), resumed.getLearningRate(), 1e-12);
+		assertArrayEquals(uninterrupted.getParameters(), resumed.getParameters(), 1e-12);
+	}
+
+	@Test
+	public void testResumeContinuesTheInterval() throws InputException, IOException {
+		Path file = folder.getRoot().toPath().resolve("network.checkpoint");
+		Network interrupted = createNetwork();
+		try (Checkpointer checkpointer = new Checkpointer(file, 20, 0, TimeUnit.SECONDS)) {
+			interrupted.setCheckpointer(checkpointer);
+			interrupted.trainBatch(INSTANCES, LABELS, 50);
+		}
+
+		Network resumed = createNetwork();
+		Checkpointer checkpointer = new Checkpointer(folder.getRoot().toPath().resolve("resumed.checkpoint"), 20, 0, TimeUnit.SECONDS);
+		try {
+			resumed.setCheckpointer(checkpointer);
+			resumed.resumeBatch(INSTANCES, LABELS, 55, file);
+		} finally {
+			checkpointer.close();
+		}
+		// not due before iteration 60
+		assertNull(checkpointer.getLastWritten());
+	}
+
+	@Test
+	public void testBudgetContinuesTheNumbering() throws InputException {
+		Network n = createNetwork();
+		Checkpointer checkpointer = new Checkpointer(folder.getRoot().toPath().resolve("network.checkpoint"), 20, 0, TimeUnit.SECONDS);
+		try {
+			n.setCheckpointer(checkpointer);
+			n.trainBatch(INSTANCES, LABELS, 30);
+			TrainingBudget budget = new TrainingBudget(1, TimeUnit.HOURS);
+			budget.setMaximumIterations(15);
+			n.trainWithBudget(INSTANCES, LABELS, budget);
+		} finally {
+			checkpointer.close();
+		}
+		assertEquals(40, checkpointer.getLastWritten().getIteration());
+	}
+
+	@Test
+	public void testResumeWithoutCheckpoint() throws InputException, IOException {
+		Network fresh = createNetwork();
+		fresh.trainBatch(INSTANCES, LABELS, 30);
+
+		Network resumed = createNetwork();
+		resumed.resumeBatch(INSTANCES, LABELS, 30, folder.getRoot().toPath().resolve("missing.checkpoint"));
+
+		assertArrayEquals(fresh.getParameters(), resumed.getParameters(), 1e-12);
+	}
+
+	@Test
+	public void testBatchNormalizationStatistics() throws InputException, IOException {
+		Path file = folder.getRoot().toPath().resolve("network.checkpoint");
+		double[][] instances = new double[100][];
+		double[][] labels = new double[100][];
+		createShiftedDiagonalData(instances, labels);
+
+		Network trained = createNormalizedNetwork();
+		trained.trainBatch(instances, labels, 50);
+		Checkpoint.capture(trained, 50).write(file);
+
+		Network restored = createNormalizedNetwork();
+		Checkpoint.read(file).restore(restored);
+
+		BatchNormalizationNode node = (BatchNormalizationNode) trained.getLayer(1)[1];
+		BatchNormalizationNode restoredNode = (BatchNormalizationNode) restored.getLayer(1)[1];
+		assertEquals(node.getRunningMean(), restoredNode.getRunningMean(), 0);
+		assertEquals(node.getRunningVariance(), restoredNode.getRunningVariance(), 0);
+		assertEquals(node.getGamma(), restoredNode.getGamma(), 1e-12);
+		double[][] expected = trained.makePredictions(instances);
+		double[][] actual = restored.makePredictions(instances);
+		for (int i = 0; i < instances.length; i++)
+			assertArrayEquals(expected[i], actual[i], 1e-12);
+	}
+
+	private Network createNormalizedNetwork() throws InputException {
+		Network n = new Network(2, 2);
+		n.configureLayer(1, BatchNormalizationNode.createLayer(2));
+		n.configureLayer(2, new SigmoidNeuron[] { new SigmoidNeuron(2, InitializerHelper.newConstantInitializer(1)) });
+		n.setLearningRate(0.5);
+		return n;
+	}
+
+	/*
+	 * the diagonal data, shifted and scaled far outside the range sigmoid neurons
+	 * are sensitive to
+	 */
+	private void createShiftedDiagonalData(double[][] instances, double[][] labels) {
+		Random r = new Random(100);
+
+		for (int i = 0; i < instances.length; i++) {
+			double x = r.nextGaussian();
+			double y = -1 * r.nextGaussian();
+			instances[i] = new double[] { 50 + 20 * x, 50 + 20 * y };
+			labels[i] = new double[] { x + y > 0 ? 1 : 0 };
+		}
+	}
+}
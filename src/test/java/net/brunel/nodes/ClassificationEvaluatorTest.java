@@ -0,0 +1,62 @@
+package net.brunel.nodes;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import net.brunel.nodes.exceptions.InputException;
+
+public class ClassificationEvaluatorTest {
+
+	@Test
+	public void testBinaryMetrics() throws InputException {
+		double[][] predictions = new double[][] { { 0.9 }, { 0.2 }, { 0.6 }, { 0.4 } };
+		double[][] labels = new double[][] { { 1 }, { 0 }, { 0 }, { 1 } };
+		ClassificationEvaluator evaluator = new ClassificationEvaluator(1, 0.5, 100);
+		for (int i = 0; i < predictions.length; i++)
+			evaluator.add(predictions[i], labels[i]);
+
+		assertEquals(4, evaluator.getNumberOfInstances());
+		assertEquals(0.5, evaluator.getAccuracy(), 0);
+		assertArrayEquals(new long[] { 1, 1 }, evaluator.getConfusionMatrix()[0]);
+		assertArrayEquals(new long[] { 1, 1 }, evaluator.getConfusionMatrix()[1]);
+		assertEquals(0.5, evaluator.getPrecision(1), 0);
+		assertEquals(0.5, evaluator.getRecall(0), 0);
+		assertEquals(-(Math.log(0.9) + Math.log(0.8) + Math.log(0.4) + Math.log(0.4)) / 4, evaluator.getLogLoss(), 1e-12);
+		// 3 of the 4 pairs of a positive and a negative are ranked correctly
+		assertEquals(0.75, evaluator.getAuc(), 0);
+		assertEquals(0.75, evaluator.getAuc(0), 0);
+	}
+
+	@Test
+	public void testNetworkEvaluationMatchesPredictions() throws InputException, IterationException {
+		SyntheticData data = SyntheticData.gaussianBlobs(2001, 4, 3, 0.4, 11);
+		Network n = new Network(4, 1);
+		n.configureLayer(1, InitializerHelper.newXavierLayer(3, 4, 1, 1));
+		n.setLearningRate(1);
+		for (int i = 0; i < 200; i++)
+			n.trainIterationBatch(data.getInstances(), data.getLabels());
+
+		double[][] predictions = n.makePredictions(data.getInstances());
+		ClassificationEvaluator expected = new ClassificationEvaluator(3, n.getDiscretizeThreshold(), 1000);
+		for (int i = 0; i < predictions.length; i++)
+			expected.add(predictions[i], data.getLabels()[i]);
+		assertTrue("accuracy " + expected.getAccuracy(), expected.getAccuracy() > 0.8);
+		assertTrue("auc " + expected.getAuc(), expected.getAuc() > 0.9);
+
+		n.setEvaluationThreads(3);
+		ClassificationEvaluator parallel;
+		try {
+			parallel = n.evaluateClassification(data.getInstances(), data.getLabels(), 1000);
+		} finally {
+			n.setEvaluationThreads(1);
+		}
+		assertEquals(expected.getNumberOfInstances(), parallel.getNumberOfInstances());
+		for (int c = 0; c < 3; c++) {
+			assertArrayEquals(expected.getConfusionMatrix()[c], parallel.getConfusionMatrix()[c]);
+			assertEquals(expected.getAuc(c), parallel.getAuc(c), 0);
+		}
+		assertEquals(expected.getLogLoss(), parallel.getLogLoss(), 1e-12);
+	}
+
+}
@@ -0,0 +1,146 @@
+package net.brunel.nodes;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.brunel.nodes.exceptions.InputException;
+import net.brunel.nodes.exceptions.NetworkLayerException;
+
+public class ConvolutionLayerTest {
+
+	private static final int SIZE = 6;
+
+	@Test
+	public void testConvolution() throws InputException {
+		// a 2x2 kernel which adds the pixel to its lower right neighbour, bias -1
+		ConvolutionLayer convolution = new ConvolutionLayer(1, 3, 3, 1, 2, 1, InitializerHelper.newCircularInitializer(new double[] {1,0,0,1,-1}));
+		assertEquals(5, convolution.getNumberOfParameters());
+		assertEquals(2, convolution.getOutputHeight());
+		assertEquals(2, convolution.getOutputWidth());
+
+		Network n = new Network(9, 1);
+		n.configureLayer(1, convolution.getNodes());
+		double[] output = n.feedForward(new double[] { 1, 2, 3, 4, 5, 6, 7, 8, 9 });
+		assertArrayEquals(new double[] { MyMath.sigmoid(5), MyMath.sigmoid(7), MyMath.sigmoid(11), MyMath.sigmoid(13) }, output, 1e-12);
+
+		// the weight from pixel 4 is shared by all four nodes, at different kernel positions
+		ConvolutionLayer.ConvolutionNode[] nodes = convolution.getNodes();
+		assertEquals(1, nodes[0].getWeightFromInput(4), 0);
+		assertEquals(0, nodes[1].getWeightFromInput(4), 0);
+		assertEquals(0, nodes[0].getWeightFromInput(2), 0);
+		nodes[3].setW(4, 3);
+		assertEquals(3, nodes[0].getWeightFromInput(0), 0);
+	}
+
+	@Test
+	public void testSharedKernelsAreExportedOnce() throws InputException {
+		ConvolutionLayer convolution = new ConvolutionLayer(1, 3, 3, 2, 2, 1, InitializerHelper.newCircularInitializer(new double[] {1,0,0,1,-1,2}));
+		PoolingLayer pooling = PoolingLayer.average(2, 2, 2, 2, 2);
+		Network n = new Network(9, 3);
+		n.configureLayer(1, convolution.getNodes());
+		n.configureLayer(2, pooling.getNodes());
+		n.configureLayer(3, InitializerHelper.newXavierLayer(1, 2, 1, 1));
+
+		// the two kernels with their biases, nothing of the pooling, and the dense layer
+		assertEquals(convolution.getNumberOfParameters() + 3, n.getNumberOfParameters());
+		double[] parameters = n.getParameters();
+		assertArrayEquals(new double[] { 1, 0, 0, 1, -1, 2, 1, 0, 0, 1 }, Arrays.copyOf(parameters, 10), 0);
+
+		// every node of the filter sees the restored kernel
+		parameters[3] = 7;
+		n.setParameters(parameters);
+		assertArrayEquals(parameters, n.getParameters(), 0);
+		ConvolutionLayer.ConvolutionNode[] nodes = convolution.getNodes();
+		assertEquals(7, nodes[0].getWeightFromInput(4), 0);
+		assertEquals(7, nodes[3].getWeightFromInput(8), 0);
+	}
+
+	@Test
+	public void testPooling() throws InputException {
+		double[] input = new double[] { 1, 5, 2, 0, 3, 4, 8, 6, 7, 9, 1, 2 };
+		Network max = new Network(12, 1);
+		max.configureLayer(1, PoolingLayer.max(3, 2, 2, 2, 2).getNodes());
+		assertArrayEquals(new double[] { 5, 8, 9 }, max.feedForward(input), 0);
+
+		Network average = new Network(12, 1);
+		average.configureLayer(1, PoolingLayer.average(1, 3, 4, 2, 2).getNodes());
+		assertArrayEquals(new double[] { 3.25, 4 }, average.feedForward(input), 0);
+	}
+
+	@Test
+	public void testTrainingOnLines() throws InputException {
+		double[][] instances = new double[60][];
+		double[][] labels = new double[60][];
+		createLineData(instances, labels);
+
+		ConvolutionLayer convolution = new ConvolutionLayer(1, SIZE, SIZE, 2, 3, 1, InitializerHelper.newUniformInitializer(new Random(1)));
+		PoolingLayer pooling = PoolingLayer.max(2, convolution.getOutputHeight(), convolution.getOutputWidth(), 2, 2);
+		Network n = new Network(SIZE * SIZE, 3);
+		n.configureLayer(1, convolution.getNodes());
+		n.configureLayer(2, pooling.getNodes());
+		n.configureLayer(3, InitializerHelper.newXavierLayer(1, pooling.getNodes().length, 1, 1));
+		n.setLearningRate(2);
+
+		n.trainBatch(instances, labels, 300);
+
+		int correct = 0;
+		double[][] predictions = n.makePredictions(instances);
+		for (int i = 0; i < instances.length; i++) {
+			n.discretize(predictions[i]);
+			if (predictions[i][0] == labels[i][0])
+				correct++;
+		}
+		assertTrue("accuracy " + correct, correct >= 57);
+		// 20 parameters instead of 16 * 36 + 16 for a dense layer of the same width
+		assertEquals(20, convolution.getNumberOfParameters());
+	}
+
+	@Test
+	public void testAsynchronousTrainingWithMaxPoolingIsSerial() throws InputException, InterruptedException {
+		double[][] instances = new double[20][];
+		double[][] labels = new double[20][];
+		createLineData(instances, labels);
+
+		double[][] parameters = new double[2][];
+		int[] threads = new int[] { 1, 4 };
+		for (int t = 0; t < threads.length; t++) {
+			ConvolutionLayer convolution = new ConvolutionLayer(1, SIZE, SIZE, 2, 3, 1, InitializerHelper.newUniformInitializer(new Random(1)));
+			PoolingLayer pooling = PoolingLayer.max(2, convolution.getOutputHeight(), convolution.getOutputWidth(), 2, 2);
+			Network n = new Network(SIZE * SIZE, 3);
+			n.configureLayer(1, convolution.getNodes());
+			n.configureLayer(2, pooling.getNodes());
+			n.configureLayer(3, InitializerHelper.newXavierLayer(1, pooling.getNodes().length, 1, 1));
+			n.trainAsynchronous(instances, labels, 5, threads[t]);
+			parameters[t] = n.getParameters();
+		}
+		// the max pooling nodes would race on several threads
+		assertArrayEquals(parameters[0], parameters[1], 0);
+	}
+
+	@Test(expected = NetworkLayerException.class)
+	public void testQuantizingMaxPooling() throws InputException {
+		Network n = new Network(4, 1);
+		n.configureLayer(1, PoolingLayer.max(1, 2, 2, 2, 2).getNodes());
+		QuantizedNetwork.quantize(n, new double[][] { new double[4] });
+	}
+
+	/*
+	 * images with one horizontal (label 0) or vertical (label 1) line
+	 */
+	private void createLineData(double[][] instances, double[][] labels) {
+		Random r = new Random(100);
+
+		for (int i = 0; i < instances.length; i++) {
+			instances[i] = new double[SIZE * SIZE];
+			boolean vertical = i % 2 == 0;
+			int line = r.nextInt(SIZE);
+			for (int p = 0; p < SIZE; p++)
+				instances[i][vertical ? p * SIZE + line : line * SIZE + p] = 1;
+			labels[i] = new double[] { vertical ? 1 : 0 };
+		}
+	}
+}
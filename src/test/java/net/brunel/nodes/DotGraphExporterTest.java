@@ -0,0 +1,106 @@
+package net.brunel.nodes;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.util.Locale;
+
+import org.junit.Test;
+
+import net.brunel.nodes.exceptions.InputException;
+
+public class DotGraphExporterTest {
+
+	private Network createNetwork() throws InputException {
+		Network n = new Network(3, 1);
+		n.configureLayer(1, new SigmoidNeuron[] { 
+				new SigmoidNeuron(3, InitializerHelper.newCircularInitializer(new double[] {0.5,-2,0.25,1})),
+				new SigmoidNeuron(3, InitializerHelper.newCircularInitializer(new double[] {-1.006,0.1,3,0})),
+				});
+		return n;
+	}
+
+	private int countEdges(String graph) {
+		return graph.split("->", -1).length - 1;
+	}
+
+	@Test
+	public void testAllEdges() throws InputException, IOException {
+		StringWriter out = new StringWriter();
+		new DotGraphExporter(createNetwork()).export(out);
+		String graph = out.toString();
+
+		assertTrue(graph.startsWith("digraph ANN {"));
+		assertTrue(graph.endsWith("}"));
+		assertEquals(6, countEdges(graph));
+		assertTrue(graph.contains("nl0n1->nl1n0 [label=\"-2.00\"];"));
+		assertTrue(graph.contains("nl0n0->nl1n1 [label=\"-1.01\"];"));
+		assertTrue(graph.contains("nl1n0 [label=\"bias=1.0\"];"));
+	}
+
+	@Test
+	public void testEdgeOrder() throws InputException, IOException {
+		DotGraphExporter exporter = new DotGraphExporter(createNetwork());
+		StringWriter out = new StringWriter();
+		exporter.export(out);
+		// by source and then by target
+		assertTrue(out.toString().contains("nl0n0->nl1n0 [label=\"0.50\"];nl0n0->nl1n1 [label=\"-1.01\"];nl0n1->nl1n0"));
+
+		exporter.setTopK(2);
+		out = new StringWriter();
+		exporter.export(out);
+		assertTrue(out.toString().contains("nl0n0->nl1n1 [label=\"-1.01\"];nl0n1->nl1n0 [label=\"-2.00\"];nl0n2->nl1n1 [label=\"3.00\"];}"));
+	}
+
+	@Test
+	public void testWeightLabels() throws InputException, IOException {
+		double[] weights = { 1.005, -0.001, 0.125 };
+		Network n = new Network(3, 1);
+		n.configureLayer(1, new SigmoidNeuron[] { 
+				new SigmoidNeuron(3, InitializerHelper.newCircularInitializer(new double[] { weights[0], weights[1], weights[2], 0 })),
+				});
+		StringWriter out = new StringWriter();
+		new DotGraphExporter(n).export(out);
+		for (double weight : weights)
+			assertTrue(out.toString().contains("[label=\"" + String.format(Locale.ENGLISH, "%.2f", weight) + "\"]"));
+	}
+
+	@Test
+	public void testTopKAndThreshold() throws InputException, IOException {
+		DotGraphExporter exporter = new DotGraphExporter(createNetwork());
+		exporter.setTopK(1);
+		StringWriter out = new StringWriter();
+		exporter.export(out);
+		assertEquals(2, countEdges(out.toString()));
+		assertTrue(out.toString().contains("nl0n1->nl1n0"));
+		assertTrue(out.toString().contains("nl0n2->nl1n1"));
+
+		exporter.setTopK(0);
+		exporter.setWeightThreshold(0.3);
+		out = new StringWriter();
+		exporter.export(out);
+		assertEquals(4, countEdges(out.toString()));
+	}
+
+	@Test
+	public void testAggregateLayers() throws InputException, IOException {
+		DotGraphExporter exporter = new DotGraphExporter(createNetwork());
+		exporter.setAggregateLayers(true);
+		StringWriter out = new StringWriter();
+		exporter.export(out);
+		assertEquals(1, countEdges(out.toString()));
+		assertTrue(out.toString().contains("l0->l1 [label=\"6 edges, mean |w|=1.14, max |w|=3.00\"];"));
+	}
+
+	@Test
+	public void testDumpDotGraph() throws InputException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		PrintStream out = new PrintStream(bytes);
+		createNetwork().dumpDotGraph(new double[] { 0, 0, 0 }, out);
+		out.flush();
+		assertTrue(bytes.toString().contains("nl1n1 [label=\"bias=0.0, output=0.5\"];"));
+	}
+}
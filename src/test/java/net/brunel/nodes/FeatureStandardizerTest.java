@@ -0,0 +1,117 @@
+package net.brunel.nodes;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.brunel.nodes.exceptions.InputDimensionMismatchException;
+import net.brunel.nodes.exceptions.InputException;
+
+public class FeatureStandardizerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testFit() throws InputException {
+		FeatureStandardizer standardizer = FeatureStandardizer.fit(new double[][] {
+			new double[] { 1e9 + 1, 3 },
+			new double[] { 1e9 + 2, 3 },
+			new double[] { 1e9 + 3, 3 },
+		});
+		assertArrayEquals(new double[] { 1e9 + 2, 3 }, standardizer.getMeans(), 1e-6);
+		assertArrayEquals(new double[] { Math.sqrt(2.0 / 3), 0 }, standardizer.getStandardDeviations(), 1e-9);
+		assertArrayEquals(new double[] { -Math.sqrt(1.5), 0 }, standardizer.standardize(new double[] { 1e9 + 1, 3 }), 1e-6);
+	}
+
+	@Test
+	public void testParallelFit() throws InputException {
+		double[][] instances = new double[20000][];
+		Random r = new Random(100);
+		for (int i = 0; i < instances.length; i++)
+			instances[i] = new double[] { 1000 + 20 * r.nextGaussian(), r.nextDouble() };
+
+		FeatureStandardizer sequential = FeatureStandardizer.fit(instances);
+		FeatureStandardizer parallel = FeatureStandardizer.fitParallel(instances);
+		assertArrayEquals(sequential.getMeans(), parallel.getMeans(), 1e-9);
+		assertArrayEquals(sequential.getStandardDeviations(), parallel.getStandardDeviations(), 1e-9);
+		assertEquals(20, parallel.getStandardDeviations()[0], 0.5);
+	}
+
+	@Test
+	public void testTrainingOnUnscaledInputs() throws InputException {
+		double[][] instances = new double[100][];
+		double[][] labels = new double[100][];
+		createShiftedDiagonalData(instances, labels);
+
+		Network plain = createNetwork();
+		plain.trainBatch(instances, labels, 100);
+
+		Network standardized = createNetwork();
+		standardized.setFeatureStandardizer(FeatureStandardizer.fit(instances));
+		standardized.trainBatch(instances, labels, 100);
+
+		double standardizedError = standardized.computeError(instances, labels);
+		assertTrue(standardizedError < plain.computeError(instances, labels));
+		assertTrue(standardizedError / instances.length < 0.1);
+		// snapshots and quantized copies standardize as well
+		assertArrayEquals(standardized.feedForward(instances[0]), standardized.publishSnapshot().feedForward(instances[0]), 1e-12);
+		assertEquals(0, QuantizedNetwork.quantize(standardized, instances).computeMeanAbsoluteDeviation(standardized, instances), 0.02);
+	}
+
+	@Test
+	public void testCheckpoint() throws InputException, IOException {
+		double[][] instances = new double[100][];
+		double[][] labels = new double[100][];
+		createShiftedDiagonalData(instances, labels);
+		Network n = createNetwork();
+		n.setFeatureStandardizer(FeatureStandardizer.fit(instances));
+		n.trainBatch(instances, labels, 10);
+
+		Path file = folder.getRoot().toPath().resolve("network.checkpoint");
+		Checkpoint.capture(n, 10).write(file);
+		Network restored = createNetwork();
+		Checkpoint.read(file).restore(restored);
+		assertArrayEquals(n.getFeatureStandardizer().getMeans(), restored.getFeatureStandardizer().getMeans(), 0);
+		assertArrayEquals(n.feedForward(instances[0]), restored.feedForward(instances[0]), 0);
+	}
+
+	@Test(expected = InputException.class)
+	public void testFitWithoutInstances() throws InputException {
+		FeatureStandardizer.fit(new double[0][]);
+	}
+
+	@Test(expected = InputException.class)
+	public void testParallelFitWithoutInstances() throws InputException {
+		FeatureStandardizer.fitParallel(new double[0][]);
+	}
+
+	@Test(expected = InputDimensionMismatchException.class)
+	public void testMismatchingDimensions() throws InputException {
+		createNetwork().setFeatureStandardizer(new FeatureStandardizer(new double[3], new double[3]));
+	}
+
+	private Network createNetwork() throws InputException {
+		Network n = new Network(2, 1);
+		n.configureLayer(1, new SigmoidNeuron[] { new SigmoidNeuron(2, InitializerHelper.newConstantInitializer(1)) });
+		n.setLearningRate(0.5);
+		return n;
+	}
+
+	private void createShiftedDiagonalData(double[][] instances, double[][] labels) {
+		Random r = new Random(100);
+
+		for (int i = 0; i < instances.length; i++) {
+			double x = r.nextGaussian();
+			double y = -1 * r.nextGaussian();
+			instances[i] = new double[] { 50 + 20 * x, 50 + 20 * y };
+			labels[i] = new double[] { x + y > 0 ? 1 : 0 };
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package net.brunel.nodes;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.brunel.nodes.HyperparameterSearch.Candidate;
+import net.brunel.nodes.exceptions.InputException;
+
+public class HyperparameterSearchTest {
+
+	@Test
+	public void testSuccessiveHalving() throws InputException, InterruptedException {
+		double[][] instances = new double[50][];
+		double[][] labels = new double[50][];
+		createDiagonalData(instances, labels);
+
+		HyperparameterSearch search = new HyperparameterSearch(2, 20, 2);
+		Candidate best = search.search(Arrays.asList(
+				new HyperparameterConfiguration(0.001, 0),
+				new HyperparameterConfiguration(0.01, 0.1, 2),
+				new HyperparameterConfiguration(10, 0),
+				new HyperparameterConfiguration(10, 0, 2)),
+				instances, labels, instances, labels);
+
+		assertEquals(10, best.getConfiguration().getLearningRate(), 0.001);
+		assertEquals(20 + 40 + 80, best.getIterations());
+		assertEquals(4, search.getCandidates().size());
+		for (Candidate candidate : search.getCandidates())
+			assertTrue(candidate.toString(), best.getError() <= candidate.getError());
+	}
+
+	private void createDiagonalData(double[][] instances, double[][] labels) {
+		Random r = new Random(100);
+
+		for (int i = 0; i < instances.length; i++) {
+			instances[i] = new double[] { r.nextGaussian(), -1 * r.nextGaussian() };
+			labels[i] = new double[] { instances[i][0] + instances[i][1] > 0 ? 1 : 0 };
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package net.brunel.nodes;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import net.brunel.nodes.exceptions.InputDimensionMismatchException;
+import net.brunel.nodes.exceptions.InputException;
+
+public class InferenceServiceTest {
+
+	private Network createNetwork() throws InputException {
+		Network n = new Network(2, 2);
+		n.configureLayer(1, new SigmoidNeuron[] { 
+				new SigmoidNeuron(2, InitializerHelper.newCircularInitializer(new double[] {1,-2,-1,2})),
+				new SigmoidNeuron(2, InitializerHelper.newCircularInitializer(new double[] {1,1,0,2})),
+				});
+		n.configureLayer(2, new SigmoidNeuron[] { 
+				new SigmoidNeuron(2, InitializerHelper.newCircularInitializer(new double[] {1,-2,-1,2})),
+				});
+		return n;
+	}
+
+	@Test
+	public void testBatchedPredictions() throws Exception {
+		Network n = createNetwork();
+		Network reference = createNetwork();
+
+		List<double[]> inputs = new ArrayList<>();
+		List<CompletableFuture<double[]>> results = new ArrayList<>();
+		try (InferenceService service = new InferenceService(n, 16, 50, TimeUnit.MILLISECONDS)) {
+			for (int i = 0; i < 100; i++) {
+				double[] input = new double[] { i / 10.0, -i / 20.0 };
+				inputs.add(input);
+				results.add(service.submit(input));
+			}
+			for (int i = 0; i < inputs.size(); i++)
+				assertArrayEquals(reference.feedForward(inputs.get(i)), results.get(i).get(), 1e-12);
+			assertArrayEquals(reference.feedForward(inputs.get(0)), service.predict(inputs.get(0)), 1e-12);
+
+			assertEquals(101, service.getNumberOfRequests());
+			assertTrue(service.getNumberOfBatches() < service.getNumberOfRequests());
+		}
+	}
+
+	@Test
+	public void testLayerwiseBatchPredictions() throws InputException {
+		Network n = new Network(20, 3);
+		n.configureLayer(1, InitializerHelper.newXavierLayer(16, 20, 8, 1));
+		n.configureLayer(2, InitializerHelper.newXavierLayer(8, 16, 3, 2));
+		n.configureLayer(3, InitializerHelper.newXavierLayer(3, 8, 1, 3));
+		double[][] instances = SyntheticData.diagonal(50, 20, 2).getInstances();
+		double[][] expected = n.makePredictions(instances);
+		double[][] actual = n.makeBatchPredictions(instances);
+		for (int i = 0; i < instances.length; i++)
+			assertArrayEquals(expected[i], actual[i], 1e-12);
+
+		n.setEvaluationThreads(4);
+		try {
+			actual = n.makeBatchPredictions(instances);
+		} finally {
+			n.setEvaluationThreads(1);
+		}
+		for (int i = 0; i < instances.length; i++)
+			assertArrayEquals(expected[i], actual[i], 1e-12);
+		assertEquals(0, n.makeBatchPredictions(new double[0][]).length);
+	}
+
+	@Test(expected=InputDimensionMismatchException.class)
+	public void testMismatchingInputDimensions() throws InputException, InterruptedException {
+		try (InferenceService service = new InferenceService(createNetwork(), 16, 1, TimeUnit.MILLISECONDS)) {
+			service.predict(new double[] { 1 });
+		}
+	}
+
+	@Test(expected=ExecutionException.class)
+	public void testClosed() throws Exception {
+		InferenceService service = new InferenceService(createNetwork(), 16, 1, TimeUnit.MILLISECONDS);
+		service.close();
+		service.submit(new double[] { 1, 2 }).get();
+	}
+
+	@Test
+	public void testSubmitRacingWithClose() throws Exception {
+		Network n = createNetwork();
+		for (int round = 0; round < 50; round++) {
+			InferenceService service = new InferenceService(n, 16, 1, TimeUnit.MILLISECONDS);
+			List<CompletableFuture<double[]>> results = Collections.synchronizedList(new ArrayList<>());
+			Thread[] submitters = new Thread[4];
+			for (int t = 0; t < submitters.length; t++) {
+				submitters[t] = new Thread(() -> {
+					for (int i = 0; i < 200; i++)
+						results.add(service.submit(new double[] { i, -i }));
+				});
+				submitters[t].start();
+			}
+			service.close();
+			for (Thread submitter : submitters)
+				submitter.join();
+
+			// every request is either answered or rejected, none is left behind
+			for (CompletableFuture<double[]> result : results) {
+				try {
+					result.get(5, TimeUnit.SECONDS);
+				} catch (ExecutionException e) {
+					assertTrue(e.getCause() instanceof IllegalStateException);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package net.brunel.nodes;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class InitializerHelperTest {
+
+	@Test
+	public void testXavierLayerIsReproducibleAndBounded() {
+		SigmoidNeuron[] first = InitializerHelper.newXavierLayer(64, 100, 10, 42);
+		SigmoidNeuron[] second = InitializerHelper.newXavierLayer(64, 100, 10, 42);
+		double limit = Math.sqrt(6.0 / (100 + 10));
+
+		for (int j = 0; j < first.length; j++) {
+			for (int k = 0; k < 100; k++) {
+				assertEquals(first[j].w(k), second[j].w(k), 0);
+				assertTrue(Math.abs(first[j].w(k)) <= limit);
+			}
+			assertEquals(first[j].b(), second[j].b(), 0);
+		}
+		assertNotEquals(first[0].w(0), first[1].w(0), 0);
+	}
+
+	@Test
+	public void testHeLayerVariance() {
+		SigmoidNeuron[] layer = InitializerHelper.newHeLayer(100, 200, 7);
+		double sum = 0;
+		double sumOfSquares = 0;
+		for (SigmoidNeuron neuron : layer) {
+			for (int k = 0; k < 200; k++) {
+				sum += neuron.w(k);
+				sumOfSquares += neuron.w(k) * neuron.w(k);
+			}
+		}
+		int n = 100 * 200;
+		assertEquals(0, sum / n, 0.01);
+		assertEquals(2.0 / 200, sumOfSquares / n - (sum / n) * (sum / n), 0.001);
+	}
+}
@@ -0,0 +1,56 @@
+package net.brunel.nodes;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.brunel.nodes.exceptions.InputException;
+
+public class KernelAutotunerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testKernelsAgree() {
+		Random r = new Random(100);
+		for (int length = 0; length < 20; length++) {
+			double[] a = new double[length];
+			double[] b = new double[length];
+			for (int i = 0; i < length; i++) {
+				a[i] = r.nextGaussian();
+				b[i] = r.nextGaussian();
+			}
+			double expected = MyMath.dotProduct(a, b);
+			for (DotProductKernel kernel : DotProductKernel.values())
+				assertEquals(kernel.name(), expected, kernel.dotProduct(a, b), 1e-12);
+		}
+	}
+
+	@Test
+	public void testTuneAndCache() throws InputException, IOException {
+		Path file = folder.getRoot().toPath().resolve("kernels.properties");
+		Network n = new Network(20, 2);
+		n.configureLayer(1, InitializerHelper.newXavierLayer(20, 20, 1, 1));
+		n.configureLayer(2, InitializerHelper.newXavierLayer(1, 20, 1, 2));
+
+		KernelAutotuner tuner = new KernelAutotuner(file);
+		tuner.tune(n);
+		// both layers have 20 inputs
+		assertEquals(1, tuner.getNumberOfBenchmarks());
+		assertTrue(Files.exists(file));
+		DotProductKernel chosen = ((SigmoidNeuron) n.getLayer(1)[0]).getKernel();
+		assertEquals(chosen, ((SigmoidNeuron) n.getLayer(2)[0]).getKernel());
+
+		KernelAutotuner restarted = new KernelAutotuner(file);
+		assertEquals(chosen, restarted.tune(20));
+		assertEquals(0, restarted.getNumberOfBenchmarks());
+	}
+}
@@ -0,0 +1,84 @@
+package net.brunel.nodes;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import net.brunel.nodes.exceptions.InputException;
+
+public class LayerFreezingTest {
+
+	private static final SyntheticData DATA = SyntheticData.gaussianBlobs(300, 6, 2, 0.5, 21);
+
+	private Network createNetwork() throws InputException {
+		Network n = new Network(6, 3);
+		n.configureLayer(1, InitializerHelper.newXavierLayer(8, 6, 5, 1));
+		n.configureLayer(2, InitializerHelper.newXavierLayer(5, 8, 2, 2));
+		n.configureLayer(3, InitializerHelper.newXavierLayer(2, 5, 1, 3));
+		n.setLearningRate(1);
+		return n;
+	}
+
+	private static double[] parametersOfLayer(Network n, int layer) {
+		double[] parameters = n.getParameters();
+		int from = 0;
+		for (int l = 1; l < layer; l++)
+			from += n.getLayer(l).length * (n.getLayer(l - 1).length + 1);
+		return Arrays.copyOfRange(parameters, from, from + n.getLayer(layer).length * (n.getLayer(layer - 1).length + 1));
+	}
+
+	@Test
+	public void testFrozenLayersKeepTheirWeights() throws InputException {
+		Network n = createNetwork();
+		double[] first = parametersOfLayer(n, 1);
+		double[] second = parametersOfLayer(n, 2);
+		double[] third = parametersOfLayer(n, 3);
+		n.setLayerTrainable(1, false);
+		n.setLayerTrainable(2, false);
+		assertFalse(n.isLayerTrainable(2));
+
+		double errorBefore = n.computeError(DATA.getInstances(), DATA.getLabels());
+		n.trainBatch(DATA.getInstances(), DATA.getLabels(), 20);
+		assertTrue(n.computeError(DATA.getInstances(), DATA.getLabels()) < errorBefore);
+
+		assertArrayEquals(first, parametersOfLayer(n, 1), 0);
+		assertArrayEquals(second, parametersOfLayer(n, 2), 0);
+		assertFalse(Arrays.equals(third, parametersOfLayer(n, 3)));
+	}
+
+	@Test
+	public void testCachingDoesNotChangeTraining() throws InputException {
+		Network uncached = createNetwork();
+		uncached.setLayerTrainable(1, false);
+		uncached.setIntelligentLearningRate(true);
+		uncached.trainBatch(DATA.getInstances(), DATA.getLabels(), 10);
+
+		Network cached = createNetwork();
+		cached.setLayerTrainable(1, false);
+		cached.setIntelligentLearningRate(true);
+		cached.setFrozenActivationCaching(true);
+		cached.setEvaluationThreads(2);
+		try {
+			cached.trainBatch(DATA.getInstances(), DATA.getLabels(), 10);
+		} finally {
+			cached.setEvaluationThreads(1);
+		}
+
+		assertArrayEquals(uncached.getParameters(), cached.getParameters(), 0);
+		assertEquals(uncached.computeError(DATA.getInstances(), DATA.getLabels()), cached.computeError(DATA.getInstances(), DATA.getLabels()), 0);
+
+		// unfreezing clears the cache, so the first layer is trained again
+		double[] first = parametersOfLayer(cached, 1);
+		cached.setLayerTrainable(1, true);
+		cached.trainBatch(DATA.getInstances(), DATA.getLabels(), 1);
+		assertFalse(Arrays.equals(first, parametersOfLayer(cached, 1)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInputLayerCannotBeFrozen() {
+		new Network(2, 1).setLayerTrainable(0, false);
+	}
+
+}
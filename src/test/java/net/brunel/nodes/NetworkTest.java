@@ -1,8 +1,11 @@
 package net.brunel.nodes;
 
 import static org.junit.Assert.*;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
 
 import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
 import java.util.Arrays;
 import java.util.Random;
 
@@ -10,6 +13,8 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.sun.management.ThreadMXBean;
+
 import net.brunel.nodes.exceptions.InputDimensionMismatchException;
 import net.brunel.nodes.exceptions.InputException;
 import net.brunel.nodes.exceptions.NetworkLayerException;
@@ -377,6 +382,98 @@ public class NetworkTest {
 		}
 	}
 
+	@Test
+	public void testAsynchronousTraining() throws InputException, InterruptedException {
+		Network n = new Network(2, 1); // 2 input dimensions, one layer
+		n.configureLayer(1, new SigmoidNeuron[] { 
+				new SigmoidNeuron(2, InitializerHelper.newCircularInitializer(new double[] {1,-1,0.5})),
+				});
+		n.setLearningRate(1);
+
+		double[][] instances = new double[200][];
+		double[][] labels = new double[200][];
+		createDiagonalData(instances, labels);
+		
+		n.trainAsynchronous(instances, labels, 100, 4);
+		
+		int correct = 0;
+		for (int j = 0; j < instances.length; j++) {
+			double[] classification = n.feedForward(instances[j]);
+			n.discretize(classification);
+			if (labels[j][0] == classification[0])
+				correct++;
+		}
+		assertTrue("only " + correct + " correct classifications", correct >= 0.95 * instances.length);
+	}
+
+	private interface Steps {
+		void run() throws InputException;
+	}
+
+	/*
+	 * asserts that the current thread allocates nothing in any of several windows 
+	 * of the steps, after a warm up which allocates all lazily created buffers 
+	 * and lets the code be compiled. trainIterationBatch is not such a step, it 
+	 * allocates the errors and predictions of every iteration. Skipped while the 
+	 * flight recorder events are enabled.
+	 */
+	private static void assertAllocationFree(Steps steps) throws InputException {
+		assumeTrue(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean);
+		ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+		assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+		assumeFalse("training events are recorded", TrainingEvents.isEnabled());
+		long threadId = Thread.currentThread().getId();
+
+		for (int i = 0; i < 20000; i++)
+			steps.run();
+
+		// the bytes which reading the allocated bytes allocates itself, between two reads
+		long before = threads.getThreadAllocatedBytes(threadId);
+		long measurementBytes = threads.getThreadAllocatedBytes(threadId) - before;
+		for (int window = 0; window < 5; window++) {
+			before = threads.getThreadAllocatedBytes(threadId);
+			for (int i = 0; i < 2000; i++)
+				steps.run();
+			long allocated = threads.getThreadAllocatedBytes(threadId) - before - measurementBytes;
+			assertEquals("bytes allocated in window " + window + " of the steady state", 0, allocated);
+		}
+	}
+
+	@Test
+	public void testSteadyStateAllocationFree() throws InputException {
+		Network n = new Network(2, 2);
+		n.configureLayer(1, new SigmoidNeuron[] { 
+				new SigmoidNeuron(2, InitializerHelper.newCircularInitializer(new double[] {1,-2,-1,2})),
+				new SigmoidNeuron(2, InitializerHelper.newCircularInitializer(new double[] {1,1,0,2})),
+				});
+		n.configureLayer(2, new SigmoidNeuron[] { 
+				new SigmoidNeuron(2, InitializerHelper.newCircularInitializer(new double[] {1,-2,-1,2})),
+				});
+		n.setLearningRate(0.1);
+		double[] instance = new double[]{ 1, 1 };
+		double[] label = new double[]{ 1 };
+
+		assertAllocationFree(() -> {
+			n.train(instance, label);
+			n.feedForward(instance);
+		});
+	}
+
+	@Test
+	public void testConfiguredUpdateAllocationFree() throws InputException {
+		SigmoidNeuron neuron = new SigmoidNeuron(2, InitializerHelper.newCircularInitializer(new double[] {1,-2,-1,2}));
+		neuron.updateW(0, 0.5);
+		neuron.updateB(-0.5);
+		// as while trainIterationBatch tries a learning rate
+		neuron.configureUpdate(0.1, 10);
+		double[] input = new double[]{ 1, 1 };
+
+		assertAllocationFree(() -> {
+			neuron.computeNodeOutput(input);
+			neuron.computeDerivativeValue(input);
+		});
+	}
+
 	private void createDiagonalData(double[][] instances, double[][] labels) {
 		Random r = new Random(100);
 		
@@ -448,5 +545,30 @@ public class NetworkTest {
 			assertArrayEquals(labels[j], classification, 0.05);
 		}
 	}
+
+	@Test
+	public void testParallelEvaluation() throws InputException, IterationException {
+		SyntheticData data = SyntheticData.gaussianBlobs(1001, 5, 3, 0.5, 7);
+		Network n = new Network(5, 2);
+		n.configureLayer(1, InitializerHelper.newXavierLayer(8, 5, 3, 1));
+		n.configureLayer(2, InitializerHelper.newXavierLayer(3, 8, 1, 2));
+		n.trainIterationBatch(data.getInstances(), data.getLabels());
+
+		double[][] serialPredictions = n.makePredictions(data.getInstances());
+		double serialError = n.computeError(data.getInstances(), data.getLabels());
+
+		n.setEvaluationThreads(4);
+		try {
+			assertEquals(4, n.getEvaluationThreads());
+			double[][] parallelPredictions = n.makePredictions(data.getInstances());
+			for (int i = 0; i < serialPredictions.length; i++)
+				assertArrayEquals(serialPredictions[i], parallelPredictions[i], 0);
+			// the loss is summed in the same order, so it is identical
+			assertEquals(serialError, n.computeError(data.getInstances(), data.getLabels()), 0);
+		} finally {
+			n.setEvaluationThreads(1);
+		}
+		assertEquals(serialError, n.computeError(data.getInstances(), data.getLabels()), 0);
+	}
 }
 
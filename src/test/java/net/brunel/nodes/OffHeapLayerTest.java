@@ -0,0 +1,116 @@
+package net.brunel.nodes;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.brunel.nodes.exceptions.InputException;
+
+public class OffHeapLayerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final double[] HIDDEN_WEIGHTS = new double[] {1,-2,-1,2,1,1,0,2};
+	private static final double[] OUTPUT_WEIGHTS = new double[] {1,-2,-1};
+
+	@Test
+	public void testSameAsSigmoidNeurons() throws InputException {
+		double[][] instances = new double[100][];
+		double[][] labels = new double[100][];
+		createDiagonalData(instances, labels);
+
+		Network onHeap = new Network(2, 2);
+		Initializer hiddenInitializer = InitializerHelper.newCircularInitializer(HIDDEN_WEIGHTS);
+		onHeap.configureLayer(1, new SigmoidNeuron[] { new SigmoidNeuron(2, hiddenInitializer), new SigmoidNeuron(2, hiddenInitializer) });
+		onHeap.configureLayer(2, new SigmoidNeuron[] { new SigmoidNeuron(2, InitializerHelper.newCircularInitializer(OUTPUT_WEIGHTS)) });
+		onHeap.setIntelligentLearningRate(true);
+
+		Network offHeap = createOffHeapNetwork();
+		offHeap.setIntelligentLearningRate(true);
+		assertArrayEquals(onHeap.getParameters(), offHeap.getParameters(), 0);
+
+		onHeap.trainBatch(instances, labels, 20);
+		offHeap.trainBatch(instances, labels, 20);
+		onHeap.train(instances[0], labels[0]);
+		offHeap.train(instances[0], labels[0]);
+
+		assertArrayEquals(onHeap.getParameters(), offHeap.getParameters(), 1e-12);
+	}
+
+	@Test
+	public void testSharedMapping() throws InputException, IOException {
+		Path file = folder.getRoot().toPath().resolve("layer.bin");
+		OffHeapLayer layer = OffHeapLayer.allocate(2, 2, InitializerHelper.newCircularInitializer(HIDDEN_WEIGHTS));
+		layer.write(file);
+
+		OffHeapLayer writable = OffHeapLayer.map(file, 2, 2, false);
+		OffHeapLayer readOnly = OffHeapLayer.map(file, 2, 2, true);
+		assertTrue(readOnly.isReadOnly());
+		assertEquals(2 * 3 * 8, readOnly.getParameterBytes());
+		assertEquals(-2, readOnly.getNodes()[0].getWeightFromInput(1), 0);
+
+		// both mappings share the same pages
+		writable.getNodes()[0].setW(1, 5);
+		assertEquals(5, readOnly.getNodes()[0].getWeightFromInput(1), 0);
+
+		Network n = new Network(2, 1);
+		n.configureLayer(1, readOnly.getNodes());
+		assertEquals(MyMath.sigmoid(1 + 5 - 1), n.feedForward(new double[] { 1, 1 })[0], 1e-12);
+		try {
+			n.train(new double[] { 1, 1 }, new double[] { 1, 0 });
+			fail("read only layers cannot be trained");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testOverwritingReadOnlyLayer() throws InputException, IOException {
+		Path file = folder.getRoot().toPath().resolve("layer.bin");
+		OffHeapLayer.allocate(1, 2, InitializerHelper.newCircularInitializer(OUTPUT_WEIGHTS)).write(file);
+
+		Network n = new Network(2, 2);
+		Initializer hiddenInitializer = InitializerHelper.newCircularInitializer(HIDDEN_WEIGHTS);
+		n.configureLayer(1, new SigmoidNeuron[] { new SigmoidNeuron(2, hiddenInitializer), new SigmoidNeuron(2, hiddenInitializer) });
+		n.configureLayer(2, OffHeapLayer.map(file, 1, 2, true).getNodes());
+		double[] parameters = n.getParameters();
+		try {
+			n.setParameters(new double[parameters.length]);
+			fail("read only layers cannot be overwritten");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("read only"));
+		}
+		// not even the writable layer before it has been changed
+		assertArrayEquals(parameters, n.getParameters(), 0);
+	}
+
+	@Test(expected = IOException.class)
+	public void testMappingMismatchingFile() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("layer.bin");
+		OffHeapLayer.allocate(2, 2, InitializerHelper.newConstantInitializer(1)).write(file);
+		OffHeapLayer.map(file, 3, 2, true);
+	}
+
+	private Network createOffHeapNetwork() throws InputException {
+		Network n = new Network(2, 2);
+		n.configureLayer(1, OffHeapLayer.allocate(2, 2, InitializerHelper.newCircularInitializer(HIDDEN_WEIGHTS)).getNodes());
+		n.configureLayer(2, OffHeapLayer.allocate(1, 2, InitializerHelper.newCircularInitializer(OUTPUT_WEIGHTS)).getNodes());
+		return n;
+	}
+
+	private void createDiagonalData(double[][] instances, double[][] labels) {
+		Random r = new Random(100);
+
+		for (int i = 0; i < instances.length; i++) {
+			instances[i] = new double[] { r.nextGaussian(), -1 * r.nextGaussian() };
+			labels[i] = new double[] { instances[i][0] + instances[i][1] > 0 ? 1 : 0 };
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package net.brunel.nodes;
+
+import static org.junit.Assert.*;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.SubmissionPublisher;
+
+import org.junit.Test;
+
+import net.brunel.nodes.exceptions.InputException;
+
+public class OnlineLearnerTest {
+
+	private Network createNetwork() throws InputException {
+		Network n = new Network(2, 1);
+		n.configureLayer(1, new SigmoidNeuron[] { 
+				new SigmoidNeuron(2, InitializerHelper.newCircularInitializer(new double[] {1,-1,0.5})),
+				});
+		n.setLearningRate(1);
+		return n;
+	}
+
+	private Iterator<LabelledInstance> createDiagonalStream(final int length) {
+		final Random r = new Random(100);
+		return new Iterator<LabelledInstance>() {
+			int i = 0;
+
+			@Override
+			public boolean hasNext() {
+				return i < length;
+			}
+
+			@Override
+			public LabelledInstance next() {
+				i++;
+				double[] instance = new double[] { r.nextGaussian(), -1 * r.nextGaussian() };
+				return new LabelledInstance(instance, new double[] { instance[0] + instance[1] > 0 ? 1 : 0 });
+			}
+		};
+	}
+
+	@Test
+	public void testRollingLossDecreases() throws InputException {
+		OnlineLearner learner = new OnlineLearner(createNetwork(), 0.99, 50, 2, 0);
+		learner.learn(createDiagonalStream(100));
+		double earlyLoss = learner.getRollingLoss();
+		learner.learn(createDiagonalStream(5000));
+
+		assertEquals(5100, learner.getNumberOfInstances());
+		assertTrue(learner.getRollingLoss() + " >= " + earlyLoss, learner.getRollingLoss() < earlyLoss);
+		assertTrue(learner.getRollingLoss() < 0.1);
+	}
+
+	@Test
+	public void testMatchesPerSampleTraining() throws InputException {
+		SyntheticData data = SyntheticData.xor(500, 8);
+		Network trained = new Network(2, 2);
+		trained.configureLayer(1, InitializerHelper.newXavierLayer(4, 2, 1, 1));
+		trained.configureLayer(2, InitializerHelper.newXavierLayer(1, 4, 1, 2));
+		trained.setLearningRate(0.5);
+		Network learned = new Network(2, 2);
+		learned.configureLayer(1, InitializerHelper.newXavierLayer(4, 2, 1, 1));
+		learned.configureLayer(2, InitializerHelper.newXavierLayer(1, 4, 1, 2));
+		learned.setLearningRate(0.5);
+
+		OnlineLearner learner = new OnlineLearner(learned, 0.99);
+		double expectedLoss = Double.NaN;
+		for (int i = 0; i < data.getNumberOfRows(); i++) {
+			double loss = trained.getLossFunction().computeLoss(new double[][] { data.getLabels()[i] },
+					new double[][] { trained.feedForward(data.getInstances()[i]) });
+			expectedLoss = i == 0 ? loss : 0.99 * expectedLoss + 0.01 * loss;
+			trained.train(data.getInstances()[i], data.getLabels()[i]);
+			learner.learn(new LabelledInstance(data.getInstances()[i], data.getLabels()[i]));
+		}
+		assertArrayEquals(trained.getParameters(), learned.getParameters(), 1e-12);
+		assertEquals(expectedLoss, learner.getRollingLoss(), 1e-12);
+	}
+
+	@Test
+	public void testSubscription() throws InputException, InterruptedException {
+		OnlineLearner learner = new OnlineLearner(createNetwork(), 0.99);
+		try (SubmissionPublisher<LabelledInstance> publisher = new SubmissionPublisher<>()) {
+			publisher.subscribe(learner);
+			Iterator<LabelledInstance> stream = createDiagonalStream(1000);
+			while (stream.hasNext())
+				publisher.submit(stream.next());
+		}
+		for (int i = 0; i < 500 && !learner.isCompleted(); i++)
+			Thread.sleep(10);
+
+		assertTrue(learner.isCompleted());
+		assertNull(learner.getError());
+		assertEquals(1000, learner.getNumberOfInstances());
+	}
+}
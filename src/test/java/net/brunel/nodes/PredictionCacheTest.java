@@ -0,0 +1,71 @@
+package net.brunel.nodes;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import net.brunel.nodes.exceptions.InputException;
+
+public class PredictionCacheTest {
+
+	@Test
+	public void testLeastRecentlyUsedEviction() {
+		PredictionCache cache = new PredictionCache(2);
+		cache.put(new double[] { 0, 1 }, new double[] { 1 });
+		cache.put(new double[] { 1, 0 }, new double[] { 2 });
+		assertArrayEquals(new double[] { 1 }, cache.get(new double[] { 0, 1 }), 0);
+		cache.put(new double[] { 1, 1 }, new double[] { 3 });
+
+		assertEquals(2, cache.size());
+		assertNull(cache.get(new double[] { 1, 0 }));
+		assertArrayEquals(new double[] { 1 }, cache.get(new double[] { 0, 1 }), 0);
+		assertArrayEquals(new double[] { 3 }, cache.get(new double[] { 1, 1 }), 0);
+		assertEquals(3, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void testInvalidationOnTraining() throws InputException {
+		Network n = new Network(2, 1);
+		n.configureLayer(1, new SigmoidNeuron[] { 
+				new SigmoidNeuron(2, InitializerHelper.newCircularInitializer(new double[] {1,-2,-1,2})),
+				});
+		n.setLearningRate(1);
+		n.setPredictionCache(new PredictionCache(10));
+		double[] instance = new double[] { 1, 1 };
+
+		double[] before = n.predict(instance);
+		assertArrayEquals(before, n.predict(instance), 0);
+		assertEquals(1, n.getPredictionCache().getHits());
+
+		n.train(instance, new double[] { 1 });
+		assertEquals(0, n.getPredictionCache().size());
+		double[] after = n.predict(instance);
+		assertTrue(after[0] > before[0]);
+		assertArrayEquals(n.feedForward(instance), after, 0);
+	}
+
+	@Test
+	public void testBulkClassification() throws InputException, IterationException {
+		Network n = new Network(2, 1);
+		n.configureLayer(1, new SigmoidNeuron[] { 
+				new SigmoidNeuron(2, InitializerHelper.newCircularInitializer(new double[] {1,-2,-1,2})),
+				});
+		n.setLearningRate(1);
+		n.setPredictionCache(new PredictionCache(10));
+		double[][] instances = new double[][] { { 1, 1 }, { 0, 1 }, { 1, 1 } };
+		double[][] labels = new double[][] { { 1 }, { 0 }, { 1 } };
+
+		double[][] predictions = n.makePredictions(instances);
+		assertEquals(1, n.getPredictionCache().getHits());
+		assertEquals(n.computeError(instances, labels), n.getLossFunction().computeLoss(labels, predictions), 0);
+		assertEquals(4, n.getPredictionCache().getHits());
+
+		// the tentative updates of the learning rate search are not cached
+		n.setIntelligentLearningRate(true);
+		n.trainIterationBatch(instances, labels);
+		assertEquals(0, n.getPredictionCache().size());
+		double[] expected = n.feedForward(instances[0]).clone();
+		assertArrayEquals(expected, n.makePredictions(instances)[0], 0);
+	}
+}
@@ -0,0 +1,101 @@
+package net.brunel.nodes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.brunel.nodes.exceptions.InputException;
+
+/**
+ * Compares the inference throughput of {@link QuantizedNetwork} with the one of
+ * {@link Network#makePredictions(double[][])} on synthetic datasets, and reports
+ * the size of the weights and the deviation of the predictions.
+ * <p>
+ * Usage: {@code QuantizedInferenceSuite [rows [millis]]}, where millis is the
+ * minimum time each network classifies the rows for (default 2000).
+ */
+public class QuantizedInferenceSuite {
+
+	static final class Scenario {
+		final String name;
+		final Network network;
+		final double[][] instances;
+
+		Scenario(String name, Network network, double[][] instances) {
+			this.name = name;
+			this.network = network;
+			this.instances = instances;
+		}
+	}
+
+	/*
+	 * a Xavier initialized hidden layer of the given width and one output neuron
+	 */
+	private static Network createDenseNetwork(int dimension, int width) throws InputException {
+		Network n = new Network(dimension, 2);
+		n.configureLayer(1, InitializerHelper.newXavierLayer(width, dimension, 1, 1));
+		n.configureLayer(2, InitializerHelper.newXavierLayer(1, width, 1, 2));
+		return n;
+	}
+
+	static List<Scenario> createScenarios(int rows) throws InputException {
+		List<Scenario> scenarios = new ArrayList<>();
+		SyntheticData diagonal = SyntheticData.diagonal(rows, 256, 1);
+		scenarios.add(new Scenario("diagonal", createDenseNetwork(256, 128), diagonal.getInstances()));
+		SyntheticData sparse = SyntheticData.sparse(rows, 1000, 0.01, 4);
+		scenarios.add(new Scenario("sparse", createDenseNetwork(1000, 32), sparse.getInstances()));
+
+		// 16x16 images, a convolution of 4 filters followed by average pooling
+		ConvolutionLayer convolution = new ConvolutionLayer(1, 16, 16, 4, 3, 1, InitializerHelper.newUniformInitializer(new Random(1)));
+		PoolingLayer pooling = PoolingLayer.average(4, 14, 14, 2, 2);
+		Network convolutional = new Network(256, 3);
+		convolutional.configureLayer(1, convolution.getNodes());
+		convolutional.configureLayer(2, pooling.getNodes());
+		convolutional.configureLayer(3, InitializerHelper.newXavierLayer(1, 4 * 7 * 7, 1, 3));
+		SyntheticData images = SyntheticData.diagonal(rows, 256, 5);
+		scenarios.add(new Scenario("convolution", convolutional, images.getInstances()));
+		return scenarios;
+	}
+
+	/*
+	 * the number of instances classified per second, repeating the classification
+	 * of all rows for at least the given time after a warm up of the same time
+	 */
+	private static double measure(Classifier classifier, double[][] instances, long millis) throws InputException {
+		repeat(classifier, instances, millis);
+		return repeat(classifier, instances, millis);
+	}
+
+	private static double repeat(Classifier classifier, double[][] instances, long millis) throws InputException {
+		long samples = 0;
+		long start = System.nanoTime();
+		long elapsed;
+		do {
+			classifier.makePredictions(instances);
+			samples += instances.length;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < millis * 1000000L);
+		return samples / (elapsed / 1e9);
+	}
+
+	private interface Classifier {
+		double[][] makePredictions(double[][] instances) throws InputException;
+	}
+
+	public static void main(String[] args) throws InputException {
+		int rows = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		long millis = args.length > 1 ? Long.parseLong(args[1]) : 2000;
+
+		for (Scenario scenario : createScenarios(rows)) {
+			Network network = scenario.network;
+			QuantizedNetwork quantized = QuantizedNetwork.quantize(network, scenario.instances);
+			double doubleSamplesPerSecond = measure(network::makePredictions, scenario.instances, millis);
+			double quantizedSamplesPerSecond = measure(quantized::makePredictions, scenario.instances, millis);
+			long doubleWeightBytes = 8L * network.getNumberOfParameters();
+			System.out.println(String.format("%-12s %12.0f samples/s double %12.0f samples/s int8 (x%.2f) %10d bytes double %10d bytes int8 %8.5f deviation",
+					scenario.name, doubleSamplesPerSecond, quantizedSamplesPerSecond, quantizedSamplesPerSecond / doubleSamplesPerSecond,
+					doubleWeightBytes, quantized.getWeightBytes(), quantized.computeMeanAbsoluteDeviation(network, scenario.instances)));
+		}
+	}
+
+}
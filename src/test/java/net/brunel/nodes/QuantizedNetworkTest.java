@@ -0,0 +1,75 @@
+package net.brunel.nodes;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.brunel.nodes.exceptions.InputDimensionMismatchException;
+import net.brunel.nodes.exceptions.InputException;
+
+public class QuantizedNetworkTest {
+
+	@Test
+	public void testQuantizedPredictionsMatch() throws InputException {
+		Network n = new Network(2, 2);
+		n.configureLayer(1, new SigmoidNeuron[] {
+				new SigmoidNeuron(2, InitializerHelper.newCircularInitializer(new double[] {1,-1,0.5})),
+				new SigmoidNeuron(2, InitializerHelper.newCircularInitializer(new double[] {-1,0.5,0})),
+				});
+		n.configureLayer(2, new SigmoidNeuron[] {
+				new SigmoidNeuron(2, InitializerHelper.newCircularInitializer(new double[] {0.3,0.7,0})),
+				});
+		n.setLearningRate(10);
+
+		double[][] instances = new double[50][];
+		double[][] labels = new double[50][];
+		createDiagonalData(instances, labels);
+		n.trainBatch(instances, labels, 500);
+
+		QuantizedNetwork q = QuantizedNetwork.quantize(n, instances);
+
+		assertEquals(2 * 2 + 2, q.getWeightBytes());
+		assertEquals(0, q.computeMeanAbsoluteDeviation(n, instances), 0.02);
+		assertEquals(0, q.computeAccuracyDelta(n, instances, labels), 0.05);
+	}
+
+	@Test
+	public void testLocallyConnectedLayers() throws InputException {
+		ConvolutionLayer convolution = new ConvolutionLayer(1, 6, 6, 2, 3, 1, InitializerHelper.newCircularInitializer(new double[] {0.5,-1,0.25,1,0,-0.5,0.75,0.1,-0.2,0.3,0.6}));
+		Network n = new Network(36, 3);
+		n.configureLayer(1, convolution.getNodes());
+		n.configureLayer(2, PoolingLayer.average(2, 4, 4, 2, 2).getNodes());
+		n.configureLayer(3, InitializerHelper.newXavierLayer(1, 8, 1, 1));
+
+		double[][] instances = new double[20][36];
+		for (int i = 0; i < instances.length; i++)
+			for (int k = 0; k < 36; k++)
+				instances[i][k] = ((i + k) % 7) / 7.0;
+		QuantizedNetwork q = QuantizedNetwork.quantize(n, instances);
+
+		// one kernel per filter, one window of the pooling and the dense layer
+		assertEquals(2 * 9 + 4 + 8, q.getWeightBytes());
+		assertEquals(0, q.computeMeanAbsoluteDeviation(n, instances), 0.02);
+	}
+
+	@Test(expected=InputDimensionMismatchException.class)
+	public void testMismatchingInputDimensions() throws InputException {
+		Network n = new Network(2, 1);
+		n.configureLayer(1, new SigmoidNeuron[] {
+				new SigmoidNeuron(2, InitializerHelper.newConstantInitializer(1)),
+				});
+		QuantizedNetwork q = QuantizedNetwork.quantize(n, new double[][] { new double[] { 1, 0 } });
+		q.feedForward(new double[] { 1 });
+	}
+
+	private void createDiagonalData(double[][] instances, double[][] labels) {
+		Random r = new Random(100);
+
+		for (int i = 0; i < instances.length; i++) {
+			instances[i] = new double[] { r.nextGaussian(), -1 * r.nextGaussian() };
+			labels[i] = new double[] { instances[i][0] + instances[i][1] > 0 ? 1 : 0 };
+		}
+	}
+}
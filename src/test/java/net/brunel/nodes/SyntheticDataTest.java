@@ -0,0 +1,56 @@
+package net.brunel.nodes;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import net.brunel.nodes.exceptions.InputException;
+
+public class SyntheticDataTest {
+
+	@Test
+	public void testDeterministic() {
+		// more than one chunk, generated in parallel
+		SyntheticData first = SyntheticData.diagonal(20000, 3, 1);
+		SyntheticData second = SyntheticData.diagonal(20000, 3, 1);
+		assertEquals(20000, first.getNumberOfRows());
+		assertEquals(3, first.getDimension());
+		for (int i = 0; i < first.getNumberOfRows(); i++) {
+			assertArrayEquals(first.getInstances()[i], second.getInstances()[i], 0);
+			assertArrayEquals(first.getLabels()[i], second.getLabels()[i], 0);
+		}
+	}
+
+	@Test
+	public void testLabels() {
+		SyntheticData xor = SyntheticData.xor(1000, 2);
+		for (int i = 0; i < xor.getNumberOfRows(); i++) {
+			double[] instance = xor.getInstances()[i];
+			assertEquals(instance[0] * instance[1] < 0 ? 1 : 0, xor.getLabels()[i][0], 0);
+		}
+
+		SyntheticData blobs = SyntheticData.gaussianBlobs(1000, 5, 3, 0.1, 3);
+		for (double[] label : blobs.getLabels()) {
+			assertEquals(3, label.length);
+			assertEquals(1, label[0] + label[1] + label[2], 0);
+		}
+
+		SyntheticData sparse = SyntheticData.sparse(1000, 500, 0.02, 4);
+		long ones = 0;
+		for (double[] instance : sparse.getInstances())
+			for (double d : instance)
+				ones += (long) d;
+		assertEquals(0.02, ones / (1000.0 * 500), 0.002);
+	}
+
+	@Test
+	public void testThroughputSuite() throws InputException, IterationException {
+		TrainingThroughputSuite.Scenario scenario = new TrainingThroughputSuite.Scenario("diagonal", SyntheticData.diagonal(2000, 2, 1),
+				new int[] { 2 }, 1, 100, 0.05, 10000);
+		TrainingThroughputSuite.Result result = TrainingThroughputSuite.run(scenario);
+		assertTrue(result.samplesPerSecond > 0);
+		assertTrue(result.toString(), result.millisToTarget >= 0);
+		assertTrue(result.loss <= 0.05);
+		assertTrue(result.peakHeapBytes > 0);
+	}
+}
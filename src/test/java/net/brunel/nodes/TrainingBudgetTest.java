@@ -0,0 +1,103 @@
+package net.brunel.nodes;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import net.brunel.nodes.exceptions.InputException;
+
+public class TrainingBudgetTest {
+
+	private static final SyntheticData DATA = SyntheticData.xor(400, 3);
+
+	private Network createNetwork() throws InputException {
+		Network n = new Network(2, 2);
+		n.configureLayer(1, InitializerHelper.newXavierLayer(4, 2, 1, 1));
+		n.configureLayer(2, InitializerHelper.newXavierLayer(1, 4, 1, 2));
+		n.setLearningRate(5);
+		return n;
+	}
+
+	@Test
+	public void testIterationLimitKeepsBestModel() throws InputException {
+		Network n = createNetwork();
+		TrainingBudget budget = new TrainingBudget(1, TimeUnit.HOURS);
+		budget.setMaximumIterations(30);
+		TrainingSummary summary = n.trainWithBudget(DATA.getInstances(), DATA.getLabels(), budget);
+
+		assertEquals(TrainingBudget.StopReason.ITERATIONS, summary.getStopReason());
+		assertEquals(30, summary.getIterations());
+		assertTrue(summary.getBestLoss() <= summary.getLastLoss());
+		assertEquals(summary.getBestLoss(), n.computeError(DATA.getInstances(), DATA.getLabels()), 1e-12);
+	}
+
+	@Test
+	public void testBestModelWithBatchNormalization() throws InputException {
+		Network n = new Network(2, 2);
+		n.configureLayer(1, BatchNormalizationNode.createLayer(2));
+		n.configureLayer(2, new SigmoidNeuron[] { new SigmoidNeuron(2, InitializerHelper.newConstantInitializer(1)) });
+		n.setLearningRate(0.5);
+		SyntheticData data = SyntheticData.diagonal(200, 2, 7);
+		// the training moves away from the inverted validation labels, the best model is an early one
+		double[][] invertedLabels = new double[data.getLabels().length][];
+		for (int i = 0; i < invertedLabels.length; i++)
+			invertedLabels[i] = new double[] { 1 - data.getLabels()[i][0] };
+		double[] initialStatistics = n.getNormalizationStatistics();
+		TrainingBudget budget = new TrainingBudget(1, TimeUnit.HOURS);
+		budget.setMaximumIterations(20);
+		TrainingSummary summary = n.trainWithBudget(data.getInstances(), data.getLabels(), data.getInstances(), invertedLabels, budget);
+
+		assertEquals(summary.toString(), 0, summary.getBestIteration());
+		assertEquals(summary.getBestLoss(), n.computeError(data.getInstances(), invertedLabels), 1e-12);
+		// the running statistics are restored with the parameters, which are relative to them
+		assertArrayEquals(initialStatistics, n.getNormalizationStatistics(), 1e-12);
+	}
+
+	@Test
+	public void testTimeLimit() throws InputException {
+		Network n = createNetwork();
+		TrainingSummary summary = n.trainWithBudget(DATA.getInstances(), DATA.getLabels(), new TrainingBudget(200, TimeUnit.MILLISECONDS));
+
+		assertEquals(TrainingBudget.StopReason.TIME, summary.getStopReason());
+		assertTrue(summary.getIterations() > 0);
+		assertTrue(summary.getElapsedNanos() >= TimeUnit.MILLISECONDS.toNanos(200));
+	}
+
+	@Test
+	public void testEvaluationInterval() throws InputException {
+		Network n = createNetwork();
+		TrainingBudget budget = new TrainingBudget(1, TimeUnit.HOURS);
+		budget.setMaximumIterations(30);
+		budget.setEvaluationInterval(7);
+		TrainingSummary summary = n.trainWithBudget(DATA.getInstances(), DATA.getLabels(), budget);
+
+		assertEquals(30, summary.getIterations());
+		// only every seventh iteration and the last one are candidates
+		assertTrue(summary.toString(), summary.getBestIteration() % 7 == 0 || summary.getBestIteration() == 30);
+		assertEquals(summary.getBestLoss(), n.computeError(DATA.getInstances(), DATA.getLabels()), 1e-12);
+	}
+
+	@Test
+	public void testCancellation() throws InputException, InterruptedException {
+		Network n = createNetwork();
+		TrainingBudget budget = new TrainingBudget(1, TimeUnit.HOURS);
+		Thread canceller = new Thread(() -> {
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				return;
+			}
+			budget.cancel();
+		});
+		canceller.start();
+		TrainingSummary summary = n.trainWithBudget(DATA.getInstances(), DATA.getLabels(), budget);
+		canceller.join();
+
+		assertEquals(TrainingBudget.StopReason.CANCELLED, summary.getStopReason());
+		assertTrue(budget.isCancelled());
+		assertTrue(summary.getElapsedNanos() < TimeUnit.SECONDS.toNanos(10));
+	}
+
+}
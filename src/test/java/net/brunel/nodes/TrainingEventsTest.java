@@ -0,0 +1,82 @@
+package net.brunel.nodes;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import net.brunel.nodes.exceptions.InputException;
+
+public class TrainingEventsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Network createNetwork() throws InputException {
+		Network n = new Network(2, 2);
+		n.configureLayer(1, new SigmoidNeuron[] { 
+				new SigmoidNeuron(2, InitializerHelper.newCircularInitializer(new double[] {1,-2,-1,2})),
+				new SigmoidNeuron(2, InitializerHelper.newCircularInitializer(new double[] {1,1,0,2})),
+				new SigmoidNeuron(2, InitializerHelper.newCircularInitializer(new double[] {0,1,0})),
+				});
+		n.configureLayer(2, new SigmoidNeuron[] { 
+				new SigmoidNeuron(3, InitializerHelper.newCircularInitializer(new double[] {1,-2,-1,2})),
+				});
+		return n;
+	}
+
+	@Test
+	public void testDisabled() {
+		assertNull(TrainingEvents.beginPhase(TrainingEvents.FEED_FORWARD, 1, 1));
+		assertNull(TrainingEvents.beginLayerPhase(TrainingEvents.FEED_FORWARD, 1, 1, 1, 1));
+	}
+
+	@Test
+	public void testRecording() throws InputException, IOException {
+		Network n = createNetwork();
+		Path file = folder.getRoot().toPath().resolve("training.jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("net.brunel.nodes.Phase");
+			recording.enable("net.brunel.nodes.LayerPhase");
+			recording.start();
+			n.train(new double[] { 1, 1 }, new double[] { 1 });
+			recording.stop();
+			recording.dump(file);
+		}
+
+		List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+		Set<String> phases = new HashSet<>();
+		Set<String> layerPhases = new HashSet<>();
+		for (RecordedEvent event : events) {
+			if (event.getEventType().getName().equals("net.brunel.nodes.Phase")) {
+				phases.add(event.getString("phase"));
+				assertEquals(3, event.getInt("layers"));
+			} else if (event.getEventType().getName().equals("net.brunel.nodes.LayerPhase")) {
+				layerPhases.add(event.getString("phase") + " " + event.getInt("layer"));
+				if (event.getInt("layer") == 2)
+					assertEquals(3, event.getInt("inputs"));
+				if (event.getInt("layer") == 1)
+					assertEquals(3, event.getInt("nodes"));
+			}
+		}
+		assertTrue(phases.contains(TrainingEvents.FEED_FORWARD));
+		assertTrue(phases.contains(TrainingEvents.COMPUTE_ERRORS_OF_LAST_LAYER));
+		assertTrue(phases.contains(TrainingEvents.BACKPROPAGATE_ERROR));
+		assertTrue(phases.contains(TrainingEvents.UPDATE_WEIGHTS));
+		assertTrue(phases.contains(TrainingEvents.COMMIT_UPDATE));
+		assertTrue(layerPhases.contains("feedForward 1"));
+		assertTrue(layerPhases.contains("feedForward 2"));
+		assertTrue(layerPhases.contains("backpropagateError 1"));
+		assertTrue(layerPhases.contains("updateWeights 2"));
+	}
+}
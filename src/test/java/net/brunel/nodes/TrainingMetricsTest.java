@@ -0,0 +1,68 @@
+package net.brunel.nodes;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import net.brunel.nodes.exceptions.InputException;
+
+public class TrainingMetricsTest {
+
+	private Network createNetwork() throws InputException {
+		Network n = new Network(2, 2);
+		n.configureLayer(1, new SigmoidNeuron[] { 
+				new SigmoidNeuron(2, InitializerHelper.newCircularInitializer(new double[] {1,0,1})),
+				new SigmoidNeuron(2, InitializerHelper.newCircularInitializer(new double[] {0,1,-1})),
+				});
+		n.configureLayer(2, new SigmoidNeuron[] { 
+				new SigmoidNeuron(2, InitializerHelper.newCircularInitializer(new double[] {0.3,0.7,0})),
+				});
+		n.setLearningRate(1);
+		return n;
+	}
+
+	@Test
+	public void testBatchMetrics() throws InputException, JMException {
+		Network n = createNetwork();
+		TrainingMetrics metrics = new TrainingMetrics();
+		n.setTrainingMetrics(metrics);
+		ObjectName name = metrics.register("testBatchMetrics");
+		try {
+			double[][] instances = new double[][] { new double[]{ 1, 0 }, new double[]{ 1, 1 }, new double[]{ 2, 1 } };
+			double[][] labels = new double[][]{ new double[]{ 1 }, new double[]{ 0 }, new double[]{ 1 } };
+			n.trainBatch(instances, labels, 20);
+
+			assertEquals(20, metrics.getIterations());
+			assertEquals(60, metrics.getSamplesProcessed());
+			assertTrue(metrics.getSamplesPerSecond() > 0);
+			assertTrue(metrics.getLoss() > 0);
+			assertEquals(2, metrics.getGradientNorms().length);
+			assertTrue(metrics.getGradientNorms()[1] > 0);
+			assertEquals(2, metrics.getWeightNorms().length);
+
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			assertEquals(20L, server.getAttribute(name, "Iterations"));
+			assertEquals(metrics.getLoss(), (Double) server.getAttribute(name, "Loss"), 0);
+		} finally {
+			metrics.unregister();
+		}
+	}
+
+	@Test
+	public void testSampleMetrics() throws InputException {
+		Network n = createNetwork();
+		TrainingMetrics metrics = new TrainingMetrics();
+		n.setTrainingMetrics(metrics);
+		for (int i = 0; i < 10; i++)
+			n.train(new double[] { 1, 1 }, new double[] { 1 });
+		assertEquals(10, metrics.getSamplesProcessed());
+		assertEquals(0, metrics.getIterations());
+		assertEquals(1, metrics.getLearningRate(), 0);
+	}
+}
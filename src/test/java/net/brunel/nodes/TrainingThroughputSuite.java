@@ -0,0 +1,197 @@
+package net.brunel.nodes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import net.brunel.nodes.exceptions.InputException;
+
+/**
+ * Trains networks end to end on synthetic datasets and reports the training
+ * throughput, the time to reach a target loss and the peak heap usage.
+ * <p>
+ * Usage: {@code TrainingThroughputSuite [rows [baseline.properties [tolerance]]]}.
+ * If the baseline file exists, the run fails if the throughput of any scenario
+ * dropped by more than the tolerance (default 0.2) below it; otherwise the
+ * results are written to it.
+ */
+public class TrainingThroughputSuite {
+
+	/**
+	 * the maximum number of instances used to evaluate the loss after every epoch
+	 */
+	private static final int EVALUATION_ROWS = 10000;
+
+	static final class Scenario {
+		final String name;
+		final SyntheticData data;
+		final int[] hiddenLayerWidths;
+		final double learningRate;
+		final int batchSize;
+		final double targetLoss;
+		final long maximumMillis;
+
+		/**
+		 * @param name
+		 * @param data
+		 * @param hiddenLayerWidths the widths of the layers before the output layer
+		 * @param learningRate
+		 * @param batchSize the number of instances per call of trainIterationBatch
+		 * @param targetLoss the mean loss per instance to reach
+		 * @param maximumMillis the time budget of the training
+		 */
+		Scenario(String name, SyntheticData data, int[] hiddenLayerWidths, double learningRate, int batchSize, double targetLoss,
+				long maximumMillis) {
+			this.name = name;
+			this.data = data;
+			this.hiddenLayerWidths = hiddenLayerWidths;
+			this.learningRate = learningRate;
+			this.batchSize = batchSize;
+			this.targetLoss = targetLoss;
+			this.maximumMillis = maximumMillis;
+		}
+	}
+
+	static final class Result {
+		final String name;
+		final double samplesPerSecond;
+
+		/**
+		 * the training time until the target loss was reached, or -1
+		 */
+		final long millisToTarget;
+		final double loss;
+		final long peakHeapBytes;
+
+		Result(String name, double samplesPerSecond, long millisToTarget, double loss, long peakHeapBytes) {
+			this.name = name;
+			this.samplesPerSecond = samplesPerSecond;
+			this.millisToTarget = millisToTarget;
+			this.loss = loss;
+			this.peakHeapBytes = peakHeapBytes;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%-10s %12.0f samples/s %10s ms to target %10.4f loss %8d MiB peak heap", name, samplesPerSecond,
+					millisToTarget < 0 ? "-" : Long.toString(millisToTarget), loss, peakHeapBytes >> 20);
+		}
+	}
+
+	static Network createNetwork(Scenario scenario) throws InputException {
+		int[] widths = Arrays.copyOf(scenario.hiddenLayerWidths, scenario.hiddenLayerWidths.length + 1);
+		widths[widths.length - 1] = scenario.data.getLabels()[0].length;
+		Network network = new Network(scenario.data.getDimension(), widths.length);
+		int numberOfInputs = scenario.data.getDimension();
+		for (int l = 0; l < widths.length; l++) {
+			int numberOfOutputs = l + 1 < widths.length ? widths[l + 1] : 1;
+			network.configureLayer(l + 1, InitializerHelper.newXavierLayer(widths[l], numberOfInputs, numberOfOutputs, l));
+			numberOfInputs = widths[l];
+		}
+		network.setLearningRate(scenario.learningRate);
+		return network;
+	}
+
+	static Result run(Scenario scenario) throws InputException, IterationException {
+		Network network = createNetwork(scenario);
+		double[][] instances = scenario.data.getInstances();
+		double[][] labels = scenario.data.getLabels();
+		int numberOfBatches = (instances.length + scenario.batchSize - 1) / scenario.batchSize;
+		double[][][] instanceBatches = new double[numberOfBatches][][];
+		double[][][] labelBatches = new double[numberOfBatches][][];
+		for (int b = 0; b < numberOfBatches; b++) {
+			int end = Math.min(instances.length, (b + 1) * scenario.batchSize);
+			instanceBatches[b] = Arrays.copyOfRange(instances, b * scenario.batchSize, end);
+			labelBatches[b] = Arrays.copyOfRange(labels, b * scenario.batchSize, end);
+		}
+		int evaluationRows = Math.min(EVALUATION_ROWS, instances.length);
+		double[][] evaluationInstances = Arrays.copyOf(instances, evaluationRows);
+		double[][] evaluationLabels = Arrays.copyOf(labels, evaluationRows);
+
+		List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+				heapPools.add(pool);
+			}
+		}
+
+		long trainingNanos = 0;
+		long samples = 0;
+		long millisToTarget = -1;
+		double loss = network.computeError(evaluationInstances, evaluationLabels) / evaluationRows;
+		while (trainingNanos < scenario.maximumMillis * 1000000L) {
+			long start = System.nanoTime();
+			for (int b = 0; b < numberOfBatches; b++)
+				network.trainIterationBatch(instanceBatches[b], labelBatches[b]);
+			trainingNanos += System.nanoTime() - start;
+			samples += instances.length;
+
+			loss = network.computeError(evaluationInstances, evaluationLabels) / evaluationRows;
+			if (loss <= scenario.targetLoss) {
+				millisToTarget = trainingNanos / 1000000L;
+				break;
+			}
+		}
+
+		long peakHeapBytes = 0;
+		for (MemoryPoolMXBean pool : heapPools)
+			peakHeapBytes += pool.getPeakUsage().getUsed();
+		return new Result(scenario.name, samples / (trainingNanos / 1e9), millisToTarget, loss, peakHeapBytes);
+	}
+
+	static List<Scenario> createScenarios(int rows) {
+		List<Scenario> scenarios = new ArrayList<>();
+		scenarios.add(new Scenario("diagonal", SyntheticData.diagonal(rows, 20, 1), new int[] { 10 }, 1, 100, 0.05, 30000));
+		scenarios.add(new Scenario("xor", SyntheticData.xor(rows, 2), new int[] { 8 }, 5, 100, 0.1, 30000));
+		scenarios.add(new Scenario("blobs", SyntheticData.gaussianBlobs(rows, 10, 4, 0.3, 3), new int[] { 16 }, 2, 100, 0.1, 30000));
+		scenarios.add(new Scenario("sparse", SyntheticData.sparse(rows, 1000, 0.01, 4), new int[] { 32 }, 1, 100, 0.1, 30000));
+		return scenarios;
+	}
+
+	public static void main(String[] args) throws InputException, IterationException, IOException {
+		int rows = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		Path baselineFile = args.length > 1 ? Paths.get(args[1]) : null;
+		double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : 0.2;
+
+		Properties baseline = new Properties();
+		boolean compare = baselineFile != null && Files.exists(baselineFile);
+		if (compare) {
+			try (InputStream in = Files.newInputStream(baselineFile)) {
+				baseline.load(in);
+			}
+		}
+
+		Properties results = new Properties();
+		boolean regression = false;
+		for (Scenario scenario : createScenarios(rows)) {
+			Result result = run(scenario);
+			System.out.println(result);
+			results.setProperty(scenario.name + ".samplesPerSecond", Double.toString(result.samplesPerSecond));
+			String expected = baseline.getProperty(scenario.name + ".samplesPerSecond");
+			if (compare && expected != null && result.samplesPerSecond < (1 - tolerance) * Double.parseDouble(expected)) {
+				System.out.println(scenario.name + ": throughput regressed from " + expected + " samples/s");
+				regression = true;
+			}
+		}
+
+		if (baselineFile != null && !compare) {
+			try (OutputStream out = Files.newOutputStream(baselineFile)) {
+				results.store(out, "training throughput with " + rows + " rows");
+			}
+		}
+		if (regression)
+			System.exit(1);
+	}
+
+}
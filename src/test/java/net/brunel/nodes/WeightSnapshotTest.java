@@ -0,0 +1,95 @@
+package net.brunel.nodes;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import net.brunel.nodes.exceptions.InputException;
+
+public class WeightSnapshotTest {
+
+	private Network createNetwork() throws InputException {
+		Network n = new Network(2, 2);
+		n.configureLayer(1, new SigmoidNeuron[] { 
+				new SigmoidNeuron(2, InitializerHelper.newCircularInitializer(new double[] {1,-2,-1,2})),
+				new SigmoidNeuron(2, InitializerHelper.newCircularInitializer(new double[] {1,1,0,2})),
+				});
+		n.configureLayer(2, new SigmoidNeuron[] { 
+				new SigmoidNeuron(2, InitializerHelper.newCircularInitializer(new double[] {1,-2,-1,2})),
+				});
+		n.setLearningRate(1);
+		return n;
+	}
+
+	@Test
+	public void testSnapshotInterval() throws InputException {
+		Network n = createNetwork();
+		double[] instance = new double[]{ 1, 1 };
+		double[] label = new double[]{ 1 };
+		n.setSnapshotInterval(10);
+		WeightSnapshot initial = n.getSnapshot();
+		assertArrayEquals(n.feedForward(instance), initial.feedForward(instance), 1e-12);
+
+		for (int i = 0; i < 9; i++)
+			n.train(instance, label);
+		assertSame(initial, n.getSnapshot());
+
+		n.train(instance, label);
+		WeightSnapshot next = n.getSnapshot();
+		assertEquals(initial.getVersion() + 1, next.getVersion());
+		assertArrayEquals(n.feedForward(instance), next.feedForward(instance), 1e-12);
+		assertTrue(next.feedForward(instance)[0] > initial.feedForward(instance)[0]);
+	}
+
+	@Test
+	public void testConcurrentReads() throws Exception {
+		final Network n = createNetwork();
+		final double[] instance = new double[]{ 1, 1 };
+		n.setSnapshotInterval(1);
+		final AtomicBoolean training = new AtomicBoolean(true);
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		Thread reader = new Thread(() -> {
+			try {
+				double previous = 0;
+				while (training.get()) {
+					double current = n.getSnapshot().feedForward(instance)[0];
+					// training towards 1 only ever increases the output
+					assertTrue(current >= previous);
+					previous = current;
+				}
+			} catch (Throwable t) {
+				failure.set(t);
+			}
+		});
+		reader.start();
+		for (int i = 0; i < 2000; i++)
+			n.train(instance, new double[]{ 1 });
+		training.set(false);
+		reader.join();
+		assertNull(failure.get());
+	}
+
+	@Test
+	public void testLocallyConnectedLayers() throws InputException {
+		ConvolutionLayer convolution = new ConvolutionLayer(1, 4, 4, 2, 2, 1, InitializerHelper.newCircularInitializer(new double[] {1,-1,0,2,-1,0.5}));
+		Network n = new Network(16, 3);
+		n.configureLayer(1, convolution.getNodes());
+		n.configureLayer(2, PoolingLayer.average(2, 3, 3, 3, 3).getNodes());
+		n.configureLayer(3, InitializerHelper.newXavierLayer(1, 2, 1, 1));
+		WeightSnapshot snapshot = n.publishSnapshot();
+
+		double[] instance = new double[16];
+		for (int i = 0; i < instance.length; i++)
+			instance[i] = (i % 5) / 4.0;
+		assertArrayEquals(n.feedForward(instance), snapshot.feedForward(instance), 1e-12);
+
+		// the snapshot keeps the kernels of its time
+		double[] parameters = n.getParameters();
+		parameters[0] = 5;
+		n.setParameters(parameters);
+		assertNotEquals(n.feedForward(instance)[0], snapshot.feedForward(instance)[0], 1e-6);
+	}
+}
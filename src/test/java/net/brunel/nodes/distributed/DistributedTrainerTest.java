@@ -0,0 +1,132 @@
+package net.brunel.nodes.distributed;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.brunel.nodes.Checkpoint;
+import net.brunel.nodes.InitializerHelper;
+import net.brunel.nodes.Network;
+import net.brunel.nodes.SigmoidNeuron;
+import net.brunel.nodes.SyntheticData;
+import net.brunel.nodes.exceptions.InputException;
+
+public class DistributedTrainerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final double[][] INSTANCES = new double[][] {
+		new double[]{ 1, 0 },
+		new double[]{ 1, 1 },
+		new double[]{ 2, 1 },
+		new double[]{ 0, 2 },
+	};
+	private static final double[][] LABELS = new double[][]{
+		new double[]{ 1 },
+		new double[]{ 0 },
+		new double[]{ 1 },
+		new double[]{ 0 },
+	};
+
+	private Network createNetwork() throws InputException {
+		Network n = new Network(2, 2);
+		n.configureLayer(1, new SigmoidNeuron[] { 
+				new SigmoidNeuron(2, InitializerHelper.newCircularInitializer(new double[] {1,0,1})),
+				new SigmoidNeuron(2, InitializerHelper.newCircularInitializer(new double[] {0,1,-1})),
+				});
+		n.configureLayer(2, new SigmoidNeuron[] { 
+				new SigmoidNeuron(2, InitializerHelper.newCircularInitializer(new double[] {0.3,0.7,0})),
+				});
+		n.setLearningRate(1);
+		n.setLearningRateMultiplier(100, 0.995);
+		return n;
+	}
+
+	@Test
+	public void testTwoWorkersMatchSingleProcess() throws Exception {
+		Network single = createNetwork();
+		single.trainBatch(INSTANCES, LABELS, 300);
+
+		Network[] replicas = new Network[] { createNetwork(), createNetwork() };
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try (ParameterServer server = new ParameterServer(0, replicas.length)) {
+			executor.submit(server);
+			Future<?>[] workers = new Future<?>[replicas.length];
+			for (int w = 0; w < replicas.length; w++) {
+				final int worker = w;
+				workers[w] = executor.submit(() -> {
+					try (DistributedTrainer trainer = new DistributedTrainer(replicas[worker], "localhost", server.getPort())) {
+						trainer.trainBatch(
+								Arrays.copyOfRange(INSTANCES, 2 * worker, 2 * worker + 2), 
+								Arrays.copyOfRange(LABELS, 2 * worker, 2 * worker + 2), 300, 1);
+					}
+					return null;
+				});
+			}
+			for (Future<?> worker : workers)
+				worker.get();
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertArrayEquals(single.getParameters(), replicas[0].getParameters(), 1e-9);
+		assertArrayEquals(single.getParameters(), replicas[1].getParameters(), 1e-9);
+	}
+
+	@Test
+	public void testWorkerProcesses() throws Exception {
+		SyntheticData data = SyntheticData.diagonal(40, 2, 9);
+		Path[] shards = new Path[2];
+		for (int w = 0; w < shards.length; w++) {
+			shards[w] = folder.getRoot().toPath().resolve("shard" + w + ".csv");
+			List<String> lines = new ArrayList<>();
+			for (int i = 20 * w; i < 20 * w + 20; i++)
+				lines.add(data.getInstances()[i][0] + "," + data.getInstances()[i][1] + "," + data.getLabels()[i][0]);
+			Files.write(shards[w], lines);
+		}
+
+		Network single = DistributedTrainer.newNetwork(2, new int[] { 3, 1 }, 4);
+		single.setLearningRate(2);
+		single.trainBatch(data.getInstances(), data.getLabels(), 50);
+
+		String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		Process[] workers = new Process[shards.length];
+		Path[] results = new Path[shards.length];
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try (ParameterServer server = new ParameterServer(0, shards.length)) {
+			executor.submit(server);
+			for (int w = 0; w < shards.length; w++) {
+				results[w] = folder.getRoot().toPath().resolve("worker" + w + ".checkpoint");
+				workers[w] = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), DistributedTrainer.class.getName(),
+						"localhost", Integer.toString(server.getPort()), shards[w].toString(), "2", "3,1", "50", "1", "2", "4",
+						results[w].toString()).inheritIO().start();
+			}
+			for (Process worker : workers) {
+				assertTrue("worker did not finish", worker.waitFor(60, TimeUnit.SECONDS));
+				assertEquals(0, worker.exitValue());
+			}
+		} finally {
+			for (Process worker : workers)
+				if (worker != null)
+					worker.destroyForcibly();
+			executor.shutdownNow();
+		}
+
+		for (Path result : results)
+			assertArrayEquals(single.getParameters(), Checkpoint.read(result).getParameters(), 1e-9);
+	}
+}